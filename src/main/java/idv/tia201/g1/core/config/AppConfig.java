@@ -2,6 +2,7 @@ package idv.tia201.g1.core.config;
 
 import io.lettuce.core.ReadFrom;
 import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
 import org.springframework.context.annotation.*;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -9,12 +10,15 @@ import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 
 @Configuration
+@EnableScheduling
 @EnableTransactionManagement
 public class AppConfig {
     @Bean
@@ -38,6 +42,13 @@ public class AppConfig {
         return new TransactionTemplate(transactionManager);
     }
 
+    // 排程執行緒池 (spring.task.scheduling.*)
+    // @EnableWebSocket 也會註冊 TaskScheduler, 自動配置會因此略過, 所以明確宣告; @Scheduled 依名稱 taskScheduler 使用此執行緒池
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
     // Redis配置
     @Bean
     LettuceClientConfigurationBuilderCustomizer clientConfigurationBuilderCustomizer () {
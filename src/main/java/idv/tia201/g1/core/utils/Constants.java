@@ -31,5 +31,27 @@ public class Constants {
     public static final Long TIMESTAMP_MAX_VALUE = 2147454847000L;
 
     public static final String CACHE_SEARCH_PREFIX = "search:";
-    public static final Long CACHE_SEARCH_TTL = 600L;
+    public static final Long CACHE_SEARCH_TTL = 1800L;
+    public static final String CACHE_SEARCH_INDEX = "search-idx:";
+    public static final String CACHE_SEARCH_DESTINATIONS = "search-dests";
+    public static final String CACHE_SEARCH_DESTINATION_PREFIX = "search-dest:";
+    public static final String CACHE_SEARCH_HOT = "search-hot";
+    public static final String CACHE_SEARCH_COMPANY_PREFIX = "search-company:";
+    public static final String CACHE_SEARCH_HLL = "search-hll:";
+    public static final String CACHE_SEARCH_CALENDAR_PREFIX = "search-calendar:";
+
+    public static final String INVENTORY_PREFIX = "inventory:";
+    public static final String INVENTORY_HOLD_PREFIX = "inventory-hold:";
+    public static final String INVENTORY_HOLD_EXPIRE = "inventory-hold-expire";
+    public static final String INVENTORY_PRODUCTS = "inventory-products";
+    public static final String INVENTORY_PRODUCT_KEYS = "inventory-keys:";
+    public static final String INVENTORY_STOCK = "inventory-stock";
+    public static final String INVENTORY_DRIFT = "inventory-drift";
+    public static final String LOCK_INVENTORY_RECONCILE = "lock:inventory-reconcile";
+
+    public static final String ORDER_EXPIRE_QUEUE = "order-expire";
+    public static final Long ORDER_EXPIRE_GRACE = 60000L;   // 過期後保留給進行中付款的時間 (毫秒)
+    public static final String ORDER_PAYING_PREFIX = "order-paying:";
+
+    public static final String QUOTE_SECRET_KEY = "quote-secret";
 }
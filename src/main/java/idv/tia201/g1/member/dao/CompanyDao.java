@@ -5,10 +5,14 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+
 
 public interface CompanyDao extends JpaRepository<Company, Integer> {
 
     Company findByCompanyId(Integer companyId);
+    List<Company> findByCompanyIdIn(Collection<Integer> companyIds);
     Company findByUsername(String username);
 
     //  TODO檢查這些是否有重複
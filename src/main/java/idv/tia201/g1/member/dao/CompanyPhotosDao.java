@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CompanyPhotosDao extends JpaRepository<CompanyPhotos, Integer> {
@@ -15,4 +16,12 @@ public interface CompanyPhotosDao extends JpaRepository<CompanyPhotos, Integer>
 
     @Query(value = "SELECT cp.photo_url FROM company_photos cp WHERE cp.company_id = :companyId ORDER BY cp.is_main DESC LIMIT 1", nativeQuery = true)
     String findMainPhotoByCompanyId(@Param("companyId") Integer companyId);
+
+    // 批次取得多個商家的主圖: 每個商家取 is_main 最大的第一張 (等同 findMainPhotoByCompanyId)
+    @Query(value = "SELECT ranked.company_id, ranked.photo_url FROM (" +
+            "   SELECT cp.company_id, cp.photo_url, " +
+            "          ROW_NUMBER() OVER (PARTITION BY cp.company_id ORDER BY cp.is_main DESC, cp.photo_id) AS rn " +
+            "   FROM company_photos cp WHERE cp.company_id IN :companyIds" +
+            ") ranked WHERE ranked.rn = 1", nativeQuery = true)
+    List<Object[]> findMainPhotosByCompanyIds(@Param("companyIds") Collection<Integer> companyIds);
 }
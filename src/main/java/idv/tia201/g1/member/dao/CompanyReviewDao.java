@@ -8,6 +8,9 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface CompanyReviewDao extends JpaRepository<CompanyReview, Integer> {
 
     @Query("SELECT new idv.tia201.g1.member.dto.CompanyReviewDTO(u.nickname, cr.starRank, cr.comment) " +
@@ -23,6 +26,9 @@ public interface CompanyReviewDao extends JpaRepository<CompanyReview, Integer>
 
     Integer countByCompanyId(Integer companyId);
 
+    @Query("SELECT cr.companyId, COUNT(cr) FROM CompanyReview cr WHERE cr.companyId IN :companyIds GROUP BY cr.companyId")
+    List<Object[]> countGroupByCompanyIds(@Param("companyIds") Collection<Integer> companyIds);
+
     @Query("SELECT AVG(cr.starRank) FROM CompanyReview cr WHERE cr.companyId = :companyId")
     Float avgStarRankByCompanyId(@Param("companyId") Integer companyId);
 }
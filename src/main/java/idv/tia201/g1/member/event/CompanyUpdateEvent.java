@@ -0,0 +1,22 @@
+package idv.tia201.g1.member.event;
+
+import idv.tia201.g1.member.entity.Company;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class CompanyUpdateEvent extends ApplicationEvent {
+    public enum Type {
+        SAVED,      // 註冊或修改 (名稱, 城市, 國家...)
+        DELETED
+    }
+
+    private final Type type;
+    private final Company company;
+
+    public CompanyUpdateEvent(Object source, Type type, Company company) {
+        super(source);
+        this.type = type;
+        this.company = company;
+    }
+}
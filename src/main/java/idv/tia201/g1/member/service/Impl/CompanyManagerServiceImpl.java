@@ -11,11 +11,13 @@ import idv.tia201.g1.member.dto.CompanyEditDetailResponse;
 import idv.tia201.g1.member.entity.Company;
 import idv.tia201.g1.member.entity.CompanyFacility;
 import idv.tia201.g1.member.entity.CompanyPhotos;
+import idv.tia201.g1.member.event.CompanyUpdateEvent;
 import idv.tia201.g1.member.service.CompanyManagerService;
 import idv.tia201.g1.product.dao.FacilityDao;
 import idv.tia201.g1.product.entity.Facility;
 import lombok.extern.apachecommons.CommonsLog;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -36,6 +38,8 @@ public class CompanyManagerServiceImpl implements CompanyManagerService {
     CompanyDao companyDao;
     @Autowired
     FacilityDao facilityDao;
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
 
 
 
@@ -45,6 +49,10 @@ public class CompanyManagerServiceImpl implements CompanyManagerService {
         CompanyPhotos photo = companyPhotosDao.findById(photoId)
                 .orElseThrow(() -> new IllegalArgumentException("照片不存在，ID: " + photoId));
         companyPhotosDao.delete(photo);
+        Company company = companyDao.findByCompanyId(photo.getCompanyId());
+        if (company != null) {
+            eventPublisher.publishEvent(new CompanyUpdateEvent(this, CompanyUpdateEvent.Type.SAVED, company));
+        }
         return photo;
     }
 
@@ -115,6 +123,9 @@ public class CompanyManagerServiceImpl implements CompanyManagerService {
             companyPhotosDao.saveAll(photos);
         }
 
+        // 通知推薦快照與搜尋緩存 (交易提交後才會執行)
+        eventPublisher.publishEvent(new CompanyUpdateEvent(this, CompanyUpdateEvent.Type.SAVED, company));
+
 //        // 存入圖片
 //        List<CompanyPhotos> photos = companyEditDetailRequest.getPhotos();
 //        if (photos != null && !photos.isEmpty()) {  // 確保列表不為空
@@ -153,7 +164,11 @@ public class CompanyManagerServiceImpl implements CompanyManagerService {
     public void deleteCompanyDetail(Integer companyId) {
         companyFacilityDao.deleteByCompanyId(companyId);
         companyPhotosDao.deleteAll(companyPhotosDao.findByCompanyId(companyId));
+        Company company = companyDao.findByCompanyId(companyId);
         companyDao.deleteById(companyId);
+        if (company != null) {
+            eventPublisher.publishEvent(new CompanyUpdateEvent(this, CompanyUpdateEvent.Type.DELETED, company));
+        }
     }
 
 
@@ -3,11 +3,13 @@ import idv.tia201.g1.chat.service.ChatService;
 import idv.tia201.g1.member.dto.*;
 import idv.tia201.g1.member.dao.CompanyDao;
 import idv.tia201.g1.member.entity.User;
+import idv.tia201.g1.member.event.CompanyUpdateEvent;
 import idv.tia201.g1.member.service.CompanyService;
 import idv.tia201.g1.member.entity.Company;
 import lombok.extern.apachecommons.CommonsLog;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -26,6 +28,8 @@ public class CompanyServiceImpl implements CompanyService {
     private CompanyDao companyDao;
     @Autowired
     private ChatService chatService;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
     public Company login(CompanyLoginRequest companyLoginRequest) {
@@ -69,6 +73,7 @@ public class CompanyServiceImpl implements CompanyService {
             newcompany.setScore(7); // 給預設值
             // 創建帳號
             companyDao.save(newcompany);
+            eventPublisher.publishEvent(new CompanyUpdateEvent(this, CompanyUpdateEvent.Type.SAVED, newcompany));
 
 
             chatService.initChatRoomWithAdmin(newcompany);
@@ -123,6 +128,7 @@ public class CompanyServiceImpl implements CompanyService {
         company.setLastModifiedDate(new Date());
 
         Company companysaved = companyDao.save(company);
+        eventPublisher.publishEvent(new CompanyUpdateEvent(this, CompanyUpdateEvent.Type.SAVED, companysaved));
         return companysaved;
     }
 
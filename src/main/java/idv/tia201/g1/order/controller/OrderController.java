@@ -10,12 +10,9 @@ import idv.tia201.g1.order.entity.Order;
 import idv.tia201.g1.order.service.OrderService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.web.bind.annotation.*;
 
+import java.sql.Timestamp;
 import java.util.Collections;
 import java.util.List;
 
@@ -41,7 +38,9 @@ public class OrderController {
     public Result getOrders(
             @RequestParam(defaultValue = "0") Integer page,
             @RequestParam(defaultValue = "20") Integer size,
-            @RequestParam(defaultValue = "createdDate") String orderBy
+            @RequestParam(defaultValue = "createdDate") String orderBy,
+            @RequestParam(required = false) Long cursorTime,
+            @RequestParam(required = false) Integer cursorId
     ) {
         //取得登入的使用者
         UserAuth loginUser = UserHolder.getUser();
@@ -49,31 +48,36 @@ public class OrderController {
             return Result.fail("使用者未登入!");
         }
 
-        Sort sortBy = Sort.by(Sort.Direction.DESC, "createdDate");
+        //依建立時間由新到舊排序
         //TODO: 未來也許可以根據orderBy增加新的排序規則
 
-        Pageable pageable = PageRequest.of(page, size, sortBy);
+        //下一頁: cursorTime, cursorId 傳入上一頁最後一筆的 createdDate (毫秒) 與 orderId
+        Timestamp cursor = cursorTime == null ? null : new Timestamp(cursorTime);
         try {
-            Page<Order> res = null;
+            Integer userId = null;
+            Integer companyId = null;
             switch (loginUser.getRole()) {
                 case ROLE_USER:
-                    res = orderService.getOrdersByUserId(loginUser.getId(), pageable);
+                    userId = loginUser.getId();
                     break;
                 case ROLE_COMPANY:
-                    res = orderService.getOrdersByCompanyId(loginUser.getId(), pageable);
+                    companyId = loginUser.getId();
                     break;
                 case ROLE_ADMIN:
-                    res = orderService.getValidOrders(pageable);
                     break;
                 default:
+                    return Result.ok(Collections.emptyList(), 0L);
             }
-            if (res == null || res.getContent().isEmpty()) {
-                return Result.ok(Collections.emptyList(), 0L);
+
+            List<Order> orders = orderService.getOrders(userId, companyId, cursor, cursorId, page, size);
+            long total = orderService.countOrders(userId, companyId);
+            if (orders.isEmpty()) {
+                return Result.ok(Collections.emptyList(), total);
             }
 
-            List<OrderDTO> orderDTOs = orderService.getOrderDTOs(res.getContent());
+            List<OrderDTO> orderDTOs = orderService.getOrderDTOs(orders);
 
-            return Result.ok(orderDTOs, res.getTotalElements());
+            return Result.ok(orderDTOs, total);
         } catch (Exception e) {
             return Result.fail(e.getMessage());
         }
@@ -2,9 +2,9 @@ package idv.tia201.g1.order.dao;
 
 import idv.tia201.g1.order.entity.Order;
 import idv.tia201.g1.statistics.dto.OrderStats;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -27,24 +27,12 @@ public interface OrderDao extends JpaRepository<Order, Integer> {
 
     Order findByOrderId(Integer orderId);
 
-    @Query("SELECT DISTINCT o FROM Order o " +
-            "JOIN OrderDetail od ON od.orderId = o.orderId " +
-            "WHERE o.userId = :userId AND " +
-            "(od.expiredTime > CURRENT_TIMESTAMP OR o.payStatus <> '未付款')")
-    Page<Order> findByUserId(@Param("userId")Integer userId, Pageable pageable);
-
-    @Query("SELECT o FROM Order o " +
-            "JOIN OrderDetail od ON od.orderId = o.orderId " +
-            "JOIN Product p ON p.productId = od.productId " +
-            "WHERE p.companyId = :companyId AND " +
-            "(od.expiredTime > CURRENT_TIMESTAMP OR o.payStatus <> '未付款')")
-    Page<Order> findByCompanyId(@Param("companyId") Integer companyId, Pageable pageable);
-
-    @Query("SELECT o FROM Order o " +
-            "JOIN OrderDetail od ON od.orderId = o.orderId " +
-            "JOIN Product p ON p.productId = od.productId " +
-            "WHERE od.expiredTime > CURRENT_TIMESTAMP OR o.payStatus <> '未付款'")
-    Page<Order> findValidOrders(Pageable pageable);
+    /**
+     * 過期排程 / 付款使用 : 鎖定訂單到交易結束, 付款與過期刪除不會同時進行
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.orderId = :orderId")
+    Order findByOrderIdForUpdate(@Param("orderId") Integer orderId);
 
     @Query("SELECT SUM(p.price * od.quantity) FROM Order o " +
             "JOIN OrderDetail od ON od.orderId = o.orderId " +
@@ -7,10 +7,12 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.sql.Date;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
-public interface OrderDetailDao extends JpaRepository<OrderDetail, Integer>{
+public interface OrderDetailDao extends JpaRepository<OrderDetail, Integer>, OrderDetailDaoCustom {
     @Modifying
     @Query("UPDATE OrderDetail od " +
             "SET od.expiredTime = :expiredTime " +
@@ -23,6 +25,21 @@ public interface OrderDetailDao extends JpaRepository<OrderDetail, Integer>{
             "WHERE od.orderId = :orderId ")
     List<OrderProductDTO> getOrderProductByOrderId(@Param("orderId") Integer orderId);
 
+    /**
+     * 批次版本 : (訂單編號, 商品編號, 商品名稱, 數量), 結果與 getOrderProductByOrderId 相同
+     */
+    @Query("SELECT DISTINCT od.orderId, od.productId, od.productName, od.quantity FROM OrderDetail od " +
+            "WHERE od.orderId IN :orderIds")
+    List<Object[]> getOrderProductsByOrderIds(@Param("orderIds") Collection<Integer> orderIds);
+
+    /**
+     * 批次版本 : (訂單編號, 商家編號), 結果與 CompanyDao.findByOrderId 相同
+     */
+    @Query("SELECT DISTINCT od.orderId, p.companyId FROM OrderDetail od " +
+            "JOIN Product p ON p.productId = od.productId " +
+            "WHERE od.orderId IN :orderIds")
+    List<Object[]> getCompanyIdsByOrderIds(@Param("orderIds") Collection<Integer> orderIds);
+
     @Query(value = "SELECT pm.max_occupancy, SUM(od.quantity) " +
             "FROM order_detail od " +
             "JOIN order_master om ON od.order_id = om.order_id " +
@@ -30,4 +47,53 @@ public interface OrderDetailDao extends JpaRepository<OrderDetail, Integer>{
             "WHERE om.pay_status <> '未付款' " +
             "GROUP BY pm.max_occupancy", nativeQuery = true)
     List<Object[]> findRoomTypeStats();
-}
\ No newline at end of file
+
+    List<OrderDetail> findByOrderId(Integer orderId);
+
+    /**
+     * 房況矩陣使用 : 統計已付款訂單 每個商品每一天的預訂數量
+     */
+    @Query(value = "SELECT od.product_id, od.booked_date, SUM(od.quantity) " +
+            "FROM order_detail od " +
+            "JOIN order_master om ON od.order_id = om.order_id " +
+            "WHERE om.pay_status <> '未付款' " +
+            "AND od.booked_date >= :fromDate " +
+            "GROUP BY od.product_id, od.booked_date", nativeQuery = true)
+    List<Object[]> sumPaidQuantityGroupByProductAndDate(@Param("fromDate") Date fromDate);
+
+    /**
+     * 房況矩陣使用 : 查詢未付款且尚未過期的臨時訂單明細
+     */
+    @Query("SELECT od FROM OrderDetail od " +
+            "JOIN Order o ON o.orderId = od.orderId " +
+            "WHERE o.payStatus = '未付款' " +
+            "AND od.expiredTime > CURRENT_TIMESTAMP " +
+            "AND od.bookedDate >= :fromDate")
+    List<OrderDetail> findPendingDetails(@Param("fromDate") Date fromDate);
+
+    /**
+     * 庫存保留使用 : 統計指定商品在日期區間內, 每一天仍佔用房間的數量 (已付款 + 未過期的臨時訂單)
+     * 臨時訂單在過期後的寬限期內保留仍然有效, expiredAfter 傳入 "現在 - 寬限期", 與保留的歸還時間一致
+     */
+    @Query(value = "SELECT od.product_id, od.booked_date, SUM(od.quantity) " +
+            "FROM order_detail od " +
+            "JOIN order_master om ON od.order_id = om.order_id " +
+            "WHERE od.product_id IN :productIds " +
+            "AND od.booked_date >= :fromDate AND od.booked_date <= :toDate " +
+            "AND (om.pay_status <> '未付款' OR od.expired_time > :expiredAfter) " +
+            "GROUP BY od.product_id, od.booked_date", nativeQuery = true)
+    List<Object[]> sumActiveQuantityGroupByProductAndDate(
+            @Param("productIds") Collection<Integer> productIds,
+            @Param("fromDate") Date fromDate,
+            @Param("toDate") Date toDate,
+            @Param("expiredAfter") Timestamp expiredAfter);
+
+    /**
+     * 過期排程使用 : 所有未付款訂單的過期時間 (訂單編號, 過期時間)
+     */
+    @Query("SELECT od.orderId, MAX(od.expiredTime) FROM OrderDetail od " +
+            "JOIN Order o ON od.orderId = o.orderId " +
+            "WHERE o.payStatus = '未付款' " +
+            "GROUP BY od.orderId")
+    List<Object[]> findUnpaidOrderExpiredTimes();
+}
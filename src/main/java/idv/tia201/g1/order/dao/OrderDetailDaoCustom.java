@@ -0,0 +1,12 @@
+package idv.tia201.g1.order.dao;
+
+import idv.tia201.g1.order.entity.OrderDetail;
+
+import java.util.List;
+
+public interface OrderDetailDaoCustom {
+    /**
+     * 以 JDBC batch 一次寫入多筆訂單明細 (寫入後回填 id)
+     */
+    void batchInsert(List<OrderDetail> orderDetails);
+}
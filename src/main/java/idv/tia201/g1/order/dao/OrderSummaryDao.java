@@ -0,0 +1,7 @@
+package idv.tia201.g1.order.dao;
+
+import idv.tia201.g1.order.entity.OrderSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OrderSummaryDao extends JpaRepository<OrderSummary, Integer>, OrderSummaryDaoCustom {
+}
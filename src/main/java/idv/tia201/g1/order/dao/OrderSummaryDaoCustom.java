@@ -0,0 +1,15 @@
+package idv.tia201.g1.order.dao;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+public interface OrderSummaryDaoCustom {
+    /**
+     * 依建立時間 (同時間依訂單編號) 由新到舊取得有效訂單的編號
+     * userId / companyId 為null時不限制
+     * cursorTime 不為null時使用 keyset 分頁 (上一頁最後一筆之後), 否則略過 offset 筆
+     */
+    List<Integer> findValidOrderIds(Integer userId, Integer companyId, Timestamp cursorTime, Integer cursorId, int offset, int size);
+
+    long countValidOrders(Integer userId, Integer companyId);
+}
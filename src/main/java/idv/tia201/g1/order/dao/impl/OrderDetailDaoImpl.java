@@ -0,0 +1,60 @@
+package idv.tia201.g1.order.dao.impl;
+
+import idv.tia201.g1.order.dao.OrderDetailDaoCustom;
+import idv.tia201.g1.order.entity.OrderDetail;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+@Repository
+public class OrderDetailDaoImpl implements OrderDetailDaoCustom {
+    // 批次寫入設計思路:
+    //      原本每一筆明細 (商品 x 晚數) 各自執行一次 INSERT, 兩週三種房型就是 42 次往返
+    //      改為 JDBC batch, 搭配連線參數 rewriteBatchedStatements=true 時驅動程式會改寫成多值 INSERT
+    //      使用 JdbcTemplate 時與 JPA 共用同一個交易與連線, 呼叫端的 @Transactional 仍然有效
+
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT_SQL = "INSERT INTO order_detail " +
+            "(order_id, product_id, product_name, quantity, booked_date, expired_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void batchInsert(List<OrderDetail> orderDetails) {
+        if (orderDetails.isEmpty()) return;
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (int from = 0; from < orderDetails.size(); from += BATCH_SIZE) {
+                    List<OrderDetail> batch = orderDetails.subList(from, Math.min(from + BATCH_SIZE, orderDetails.size()));
+                    for (OrderDetail orderDetail : batch) {
+                        ps.setInt(1, orderDetail.getOrderId());
+                        ps.setInt(2, orderDetail.getProductId());
+                        ps.setString(3, orderDetail.getProductName());
+                        ps.setInt(4, orderDetail.getQuantity());
+                        ps.setDate(5, orderDetail.getBookedDate());
+                        ps.setTimestamp(6, orderDetail.getExpiredTime());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+
+                    // 依寫入順序回填自動產生的 id
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        for (int i = 0; i < batch.size() && keys.next(); i++) {
+                            batch.get(i).setId(keys.getInt(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package idv.tia201.g1.order.dao.impl;
+
+import idv.tia201.g1.order.dao.OrderSummaryDaoCustom;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static idv.tia201.g1.core.utils.Constants.ORDER_EXPIRE_GRACE;
+
+@Repository
+public class OrderSummaryDaoImpl implements OrderSummaryDaoCustom {
+    // 有效訂單: 已付款, 或尚未過期的臨時訂單
+    // 與庫存保留 / 過期排程相同, 過期後 ORDER_EXPIRE_GRACE 內仍視為有效 (房間尚未歸還, 訂單尚未刪除)
+    private static final String VALID_CONDITION = "(s.payStatus <> '未付款' OR s.expiredTime > :expiredAfter)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Integer> findValidOrderIds(Integer userId, Integer companyId, Timestamp cursorTime, Integer cursorId, int offset, int size) {
+        StringBuilder queryStr = new StringBuilder("SELECT s.orderId FROM OrderSummary s WHERE ").append(VALID_CONDITION);
+        appendOwnerCondition(queryStr, userId, companyId);
+        if (cursorTime != null) {
+            queryStr.append(" AND (s.createdDate < :cursorTime OR (s.createdDate = :cursorTime AND s.orderId < :cursorId))");
+        }
+        queryStr.append(" ORDER BY s.createdDate DESC, s.orderId DESC");
+
+        TypedQuery<Integer> query = entityManager.createQuery(queryStr.toString(), Integer.class);
+        setValidParameters(query, userId, companyId);
+        if (cursorTime != null) {
+            query.setParameter("cursorTime", cursorTime);
+            query.setParameter("cursorId", cursorId == null ? Integer.MAX_VALUE : cursorId);
+        } else {
+            query.setFirstResult(offset);
+        }
+        query.setMaxResults(size);
+        return query.getResultList();
+    }
+
+    @Override
+    public long countValidOrders(Integer userId, Integer companyId) {
+        StringBuilder queryStr = new StringBuilder("SELECT COUNT(s) FROM OrderSummary s WHERE ").append(VALID_CONDITION);
+        appendOwnerCondition(queryStr, userId, companyId);
+
+        TypedQuery<Long> query = entityManager.createQuery(queryStr.toString(), Long.class);
+        setValidParameters(query, userId, companyId);
+        return query.getSingleResult();
+    }
+
+    private static void appendOwnerCondition(StringBuilder queryStr, Integer userId, Integer companyId) {
+        if (userId != null) queryStr.append(" AND s.userId = :userId");
+        if (companyId != null) queryStr.append(" AND s.companyId = :companyId");
+    }
+
+    private static void setValidParameters(TypedQuery<?> query, Integer userId, Integer companyId) {
+        query.setParameter("expiredAfter", new Timestamp(System.currentTimeMillis() - ORDER_EXPIRE_GRACE));
+        if (userId != null) query.setParameter("userId", userId);
+        if (companyId != null) query.setParameter("companyId", companyId);
+    }
+}
@@ -24,6 +24,8 @@ public class CreateOrderRequest {
     private Integer companyId;
     //哪一間房型
     private List <Product> productList;
+    //搜尋時取得的報價 (PricingEngine 簽章), 沒有時重新計算
+    private String quoteToken;
 
     @Data
     public static class Product {
@@ -0,0 +1,49 @@
+package idv.tia201.g1.order.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+
+/**
+ * 訂單列表使用的摘要 (每張訂單一筆), 由建立訂單 / 付款 / 刪除 / 過期時同步維護
+ * 建表語法: resources/sql/order_summary.sql
+ */
+@Data
+@Entity
+@Table(name = "order_summary")
+public class OrderSummary {
+
+    @Id
+    @Column(name = "order_id")
+    private Integer orderId;
+
+    @Column(name = "company_id")
+    private Integer companyId;
+
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Column(name = "guest_count")
+    private Integer guestCount;
+
+    @Column(name = "pay_status")
+    private String payStatus;
+
+    @Column(name = "start_date")
+    private Date startDate;
+
+    @Column(name = "end_date")
+    private Date endDate;
+
+    @Column(name = "actual_price")
+    private Integer actualPrice;
+
+    @Column(name = "created_date")
+    private Timestamp createdDate;
+
+    //臨時訂單的過期時間 (已付款時為退房日)
+    @Column(name = "expired_time")
+    private Timestamp expiredTime;
+}
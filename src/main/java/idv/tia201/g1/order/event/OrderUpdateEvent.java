@@ -0,0 +1,30 @@
+package idv.tia201.g1.order.event;
+
+import idv.tia201.g1.order.entity.OrderDetail;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.List;
+
+@Getter
+public class OrderUpdateEvent extends ApplicationEvent {
+    public enum Type {
+        CREATED,    // 建立臨時訂單 (未付款, 佔用房間到過期時間為止)
+        PAID,       // 付款完成 (佔用房間轉為正式預訂)
+        EXPIRED,    // 臨時訂單過期
+        DELETED     // 訂單被刪除
+    }
+
+    private final Type type;
+    private final Integer orderId;
+    private final String payStatus;
+    private final List<OrderDetail> details;
+
+    public OrderUpdateEvent(Object source, Type type, Integer orderId, String payStatus, List<OrderDetail> details) {
+        super(source);
+        this.type = type;
+        this.orderId = orderId;
+        this.payStatus = payStatus;
+        this.details = details;
+    }
+}
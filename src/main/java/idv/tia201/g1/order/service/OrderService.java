@@ -5,10 +5,9 @@ import idv.tia201.g1.order.dto.OrderDTO;
 import idv.tia201.g1.order.dto.UpdateOrderRequest;
 import idv.tia201.g1.order.entity.Order;
 import org.hibernate.sql.Update;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.util.List;
 
 public interface OrderService {
@@ -20,14 +19,11 @@ public interface OrderService {
     //確定客房資訊
     Order updateOrder(Integer orderId, UpdateOrderRequest updateOrderRequest);
 
-    //根據UserId取得訂單列表
-    Page<Order> getOrdersByUserId(Integer userId, Pageable pageable);
+    //取得有效訂單列表 (依建立時間由新到舊), userId / companyId 為null時不限制
+    //cursorTime, cursorId 為上一頁最後一筆的建立時間與訂單編號 (keyset 分頁), 沒有時使用 page
+    List<Order> getOrders(Integer userId, Integer companyId, Timestamp cursorTime, Integer cursorId, Integer page, Integer size);
 
-    //根據CompanyId取得訂單列表
-    Page<Order> getOrdersByCompanyId(Integer companyId, Pageable pageable);
-
-    //Admin取得所有訂單列表
-    Page<Order> getValidOrders(Pageable pageable);
+    long countOrders(Integer userId, Integer companyId);
 
     //正式結帳訂單 , 將此會員以通過的課程訂單狀態改為已結帳
 
@@ -37,5 +33,10 @@ public interface OrderService {
    //傳入我們找到的訂單 把訂單細節補完
    List<OrderDTO> getOrderDTOs(List<Order> orderList);
 
+   @Transactional
    void deleteByOrderId(Integer orderId);
+
+    //排程使用: 刪除已過期的臨時訂單, 回傳是否有刪除
+    @Transactional
+    boolean expireOrder(Integer orderId);
 }
@@ -2,16 +2,15 @@ package idv.tia201.g1.order.service;
 
 import idv.tia201.g1.order.dto.PaymentRequest;
 import idv.tia201.g1.order.dto.PaymentResponse;
-import org.springframework.transaction.annotation.Transactional;
 
 public interface PaymentService {
     /**
      * 支付處理流程
+     * 檢查訂單與更新付款結果各自在短交易中完成, 呼叫支付網站時不持有資料庫連線與訂單的鎖
      *
      * @param orderId 訂單編號
      * @param paymentRequest 支付請求物件
      * @return 支付回應物件
      */
-    @Transactional
     PaymentResponse processPayment(Integer orderId, PaymentRequest paymentRequest);
 }
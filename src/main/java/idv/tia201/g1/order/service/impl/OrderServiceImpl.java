@@ -9,6 +9,7 @@ import idv.tia201.g1.member.entity.User;
 import idv.tia201.g1.order.dao.OrderDao;
 import idv.tia201.g1.order.dao.OrderDetailDao;
 import idv.tia201.g1.order.dao.OrderResidentsDao;
+import idv.tia201.g1.order.dao.OrderSummaryDao;
 import idv.tia201.g1.order.dto.CreateOrderRequest;
 import idv.tia201.g1.order.dto.OrderDTO;
 import idv.tia201.g1.order.dto.OrderProductDTO;
@@ -16,31 +17,31 @@ import idv.tia201.g1.order.dto.UpdateOrderRequest;
 import idv.tia201.g1.order.entity.Order;
 import idv.tia201.g1.order.entity.OrderDetail;
 import idv.tia201.g1.order.entity.OrderResidents;
+import idv.tia201.g1.order.entity.OrderSummary;
+import idv.tia201.g1.order.event.OrderUpdateEvent;
 import idv.tia201.g1.order.service.OrderService;
+import idv.tia201.g1.order.uitls.InventoryHoldEngine;
 import idv.tia201.g1.order.uitls.OrderUtil;
 import idv.tia201.g1.product.dao.FacilityDao;
 import idv.tia201.g1.product.dao.ProductDao;
+import idv.tia201.g1.product.dto.PriceQuote;
 import idv.tia201.g1.product.entity.Facility;
+import idv.tia201.g1.product.utils.PricingEngine;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.sql.Date;
 import java.sql.Timestamp;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 
 import static idv.tia201.g1.core.utils.Constants.*;
 
 @Service
 public class OrderServiceImpl implements OrderService {
 
-    private static final double SERVICE_FEE_PERCENT = 0.10; // 5%
-    private static final double TAX_PERCENT = 0.05; // 10%
-
     @Autowired
     private OrderDao orderDao;
     @Autowired
@@ -48,6 +49,8 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private OrderResidentsDao orderResidentsDao;
     @Autowired
+    private OrderSummaryDao orderSummaryDao;
+    @Autowired
     private CompanyDao companyDao;
     @Autowired
     private ProductDao productDao;
@@ -59,6 +62,14 @@ public class OrderServiceImpl implements OrderService {
     private CompanyReviewDao companyReviewDao;
     @Autowired
     private CompanyPhotosDao companyPhotosDao;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private PricingEngine pricingEngine;
+    @Autowired
+    private InventoryHoldEngine inventoryHoldEngine;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
 
     @Override
     public Order createOrder(CreateOrderRequest createOrderRequest) {
@@ -89,51 +100,83 @@ public class OrderServiceImpl implements OrderService {
         Timestamp expiredTime = new Timestamp(System.currentTimeMillis() + thirtyMinutesInMillis);
 
         List<CreateOrderRequest.Product> requestProductList = createOrderRequest.getProductList();
+        List<Date> datesBetween = OrderUtil.getDatesBetween(order.getStartDate(), order.getEndDate());
+
+        // 房型 -> 每晚的數量
+        if (requestProductList == null || requestProductList.isEmpty()) {
+            throw new IllegalArgumentException("請選擇房型");
+        }
+        Map<Integer, Integer> productCounts = new HashMap<>();
         for (CreateOrderRequest.Product requestProduct : requestProductList) {
+            if (requestProduct == null || requestProduct.getProductId() == null) {
+                throw new IllegalArgumentException("房型不可為空");
+            }
+            if (requestProduct.getCount() == null || requestProduct.getCount() <= 0) {
+                throw new IllegalArgumentException("房間數量不正確");
+            }
+            productCounts.merge(requestProduct.getProductId(), requestProduct.getCount(), Integer::sum);
+        }
 
-            Integer productId = requestProduct.getProductId();
-            String productName = productDao.getProductNameByProductId(productId);
-            Integer count = requestProduct.getCount();
+        // 計算價格: 帶入搜尋時的報價且條件相同時直接沿用, 否則重新計算 (商品不屬於該商家時失敗)
+        Integer companyId = createOrderRequest.getCompanyId();
+        PriceQuote quote = pricingEngine.verify(createOrderRequest.getQuoteToken());
+        if (!isSameQuote(quote, companyId, save, productCounts)) {
+            quote = pricingEngine.quote(companyId, productCounts, save.getStartDate(), save.getEndDate());
+        }
+
+        // 在 Redis 保留所有商品每一晚的房間 (全部成功或全部失敗), 房間不足時不建立訂單
+        // 交易回滾時 (包含之後寫入明細失敗) 由 InventoryHoldEngine 歸還
+        inventoryHoldEngine.hold(orderId, productCounts, datesBetween, expiredTime);
 
-            List<Date> datesBetween = OrderUtil.getDatesBetween(order.getStartDate(), order.getEndDate());
+        // 商品名稱一次查詢, 明細以 JDBC batch 一次寫入
+        Map<Integer, String> productNames = new HashMap<>();
+        for (Object[] row : productDao.getProductNamesByProductIds(productCounts.keySet())) {
+            productNames.put((Integer) row[0], (String) row[1]);
+        }
+
+        List<OrderDetail> orderDetails = new ArrayList<>(requestProductList.size() * datesBetween.size());
+        for (CreateOrderRequest.Product requestProduct : requestProductList) {
+            Integer productId = requestProduct.getProductId();
             for (Date date : datesBetween) {
                 OrderDetail orderDetail = new OrderDetail();
                 orderDetail.setOrderId(orderId);
                 orderDetail.setProductId(productId);
-                orderDetail.setProductName(productName);
-                orderDetail.setQuantity(count);
+                orderDetail.setProductName(productNames.get(productId));
+                orderDetail.setQuantity(requestProduct.getCount());
                 orderDetail.setBookedDate(date);
                 orderDetail.setExpiredTime(expiredTime);
-                orderDetailDao.save(orderDetail);
+                orderDetails.add(orderDetail);
             }
         }
+        orderDetailDao.batchInsert(orderDetails);
 
-        // TODO: 處理優惠券 以及 金額
-
-        // 計算價格 => 根據日期以及商品編號計算總金額 稅金 服務費...等
-        // 更新訂單資訊
-        Integer companyId = createOrderRequest.getCompanyId();
-
-        // 計算全價
-        Integer fullPrice = orderDao.calculateTotalPrice(orderId);
-        List<Double> discount = OrderUtil.getDiscountByCompanyIdBetweenStartDateAnEndDate(orderDao, companyId, save.getStartDate(), save.getEndDate());
-
-        // 計算折扣價
-        int discountedPrice = OrderUtil.calculateTotalDiscountedPrice(fullPrice / discount.size(), discount);
-
-        // 計算稅金與服務費
-        int serviceFee = (int) Math.round(discountedPrice * SERVICE_FEE_PERCENT);
-        int tax = (int) Math.round(discountedPrice * TAX_PERCENT);
+        // 通知房況矩陣: 新增臨時佔用
+        eventPublisher.publishEvent(new OrderUpdateEvent(this, OrderUpdateEvent.Type.CREATED, orderId, save.getPayStatus(), orderDetails));
 
-        // 計算實際價格
-        int actualPrice = discountedPrice + serviceFee + tax;
+        // TODO: 處理優惠券
 
-        save.setFullPrice(fullPrice);
-        save.setServiceFee(serviceFee);
-        save.setTax(tax);
-        save.setDiscount(fullPrice - discountedPrice);
+        // 更新訂單資訊
+        int actualPrice = quote.getActualPrice();
+        save.setFullPrice(quote.getFullPrice());
+        save.setServiceFee(quote.getServiceFee());
+        save.setTax(quote.getTax());
+        save.setDiscount(quote.getDiscount());
         save.setActualPrice(actualPrice);
 
+        // 訂單列表摘要 (報價時已確認所有房型都屬於該商家)
+        OrderSummary summary = new OrderSummary();
+        summary.setOrderId(orderId);
+        summary.setCompanyId(companyId);
+        summary.setUserId(save.getUserId());
+        summary.setGuestCount(save.getGuestCount());
+        summary.setPayStatus(save.getPayStatus());
+        summary.setStartDate(save.getStartDate());
+        summary.setEndDate(save.getEndDate());
+        summary.setActualPrice(actualPrice);
+        summary.setCreatedDate(save.getCreatedDate());
+        summary.setExpiredTime(expiredTime);
+        orderSummaryDao.save(summary);
+
         return save;
 
     }
@@ -173,6 +216,15 @@ public class OrderServiceImpl implements OrderService {
         return save;
     }
 
+    // 報價的商家, 日期, 房型與數量都與訂單相同
+    private static boolean isSameQuote(PriceQuote quote, Integer companyId, Order order, Map<Integer, Integer> productCounts) {
+        return quote != null
+                && Objects.equals(quote.getCompanyId(), companyId)
+                && quote.getStartDate().toLocalDate().equals(order.getStartDate().toLocalDate())
+                && quote.getEndDate().toLocalDate().equals(order.getEndDate().toLocalDate())
+                && quote.getProducts().equals(productCounts);
+    }
+
     private static void validateUpdateOrderRequest(UpdateOrderRequest request) {
         if (request.getFirstName() == null || request.getFirstName().trim().isEmpty()) {
             throw new IllegalArgumentException("First name cannot be empty");
@@ -189,18 +241,26 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
-    public Page<Order> getOrdersByUserId(Integer userId, Pageable pageable) {
-        return orderDao.findByUserId(userId, pageable);
-    }
-
-    @Override
-    public Page<Order> getOrdersByCompanyId(Integer companyId, Pageable pageable) {
-        return orderDao.findByCompanyId(companyId, pageable);
+    public List<Order> getOrders(Integer userId, Integer companyId, Timestamp cursorTime, Integer cursorId, Integer page, Integer size) {
+        List<Integer> orderIds = orderSummaryDao.findValidOrderIds(userId, companyId, cursorTime, cursorId, page * size, size);
+        if (orderIds.isEmpty()) return new ArrayList<>();
+
+        // 依摘要的順序排列
+        Map<Integer, Order> orderMap = new HashMap<>();
+        for (Order order : orderDao.findAllById(orderIds)) {
+            orderMap.put(order.getOrderId(), order);
+        }
+        List<Order> result = new ArrayList<>(orderIds.size());
+        for (Integer orderId : orderIds) {
+            Order order = orderMap.get(orderId);
+            if (order != null) result.add(order);
+        }
+        return result;
     }
 
     @Override
-    public Page<Order> getValidOrders(Pageable pageable) {
-        return orderDao.findValidOrders(pageable);
+    public long countOrders(Integer userId, Integer companyId) {
+        return orderSummaryDao.countValidOrders(userId, companyId);
     }
 
     @Override
@@ -217,26 +277,13 @@ public class OrderServiceImpl implements OrderService {
         if (ROLE_USER.equals(UserHolder.getRole()) && !Objects.equals(UserHolder.getId(), userId)) {
             throw new IllegalStateException("該訂單不屬於你!!!");
         }
-        OrderDTO orderDTO = new OrderDTO();
-        BeanUtils.copyProperties(order, orderDTO);
+        OrderDTO orderDTO = assembleOrderDTOs(List.of(order)).get(0);
+        Integer companyId = orderDTO.getCompanyId();
 
-        List<OrderProductDTO> details = orderDetailDao.getOrderProductByOrderId(order.getOrderId());
-        orderDTO.setProducts(details);
-
-        User user = userDao.findByUserId(userId);
-
-        Company company = companyDao.findByOrderId(orderId);
-        orderDTO.setSubscriber(user.getFirstName()+user.getLastName());
-        orderDTO.setCompanyId(company.getCompanyId());
-        orderDTO.setHotelName(company.getCompanyName());
-        orderDTO.setHotelAddress(company.getAddress());
-        orderDTO.setHotelScore(company.getScore());
-        orderDTO.setCity(company.getCity());
-
-        List<Facility> facilities = facilityDao.findByCompanyId(company.getCompanyId());
+        List<Facility> facilities = facilityDao.findByCompanyId(companyId);
         List<String> list = facilities.stream().map(Facility::getFacilityName).toList();
         orderDTO.setHotelFacilities(list);
-        Integer count = companyReviewDao.countByCompanyId(company.getCompanyId());
+        Integer count = companyReviewDao.countByCompanyId(companyId);
         orderDTO.setRateCount(count);
 
         List<OrderResidents> residents = orderResidentsDao.findByOrderId(orderId);
@@ -249,32 +296,7 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public List<OrderDTO> getOrderDTOs(List<Order> orderList) {
-        //宣告一個List名字叫result,這個List的類型是OrderDTO
-        List<OrderDTO> result = new ArrayList<>();
-
-        for (Order order : orderList) {
-            OrderDTO orderDTO = new OrderDTO();
-            BeanUtils.copyProperties(order, orderDTO);
-
-            Integer userId = order.getUserId( );
-            User user = userDao.findByUserId(userId);
-            orderDTO.setSubscriber(user.getFirstName()+user.getLastName());
-            orderDTO.setSubscriberId(userId);
-
-            List<OrderProductDTO> details = orderDetailDao.getOrderProductByOrderId(order.getOrderId());
-            orderDTO.setProducts(details);
-
-            Company company = companyDao.findByOrderId(order.getOrderId());
-            orderDTO.setCompanyId(company.getCompanyId());
-            orderDTO.setHotelName(company.getCompanyName());
-            orderDTO.setHotelAddress(company.getAddress());
-            orderDTO.setHotelScore(company.getScore());
-            orderDTO.setCity(company.getCity());
-            String photo = companyPhotosDao.findMainPhotoByCompanyId(company.getCompanyId());
-            orderDTO.setPhoto(BASE_URL + photo);
-            result.add(orderDTO);
-        }
-        return result;
+        return assembleOrderDTOs(orderList);
     }
 
     @Override
@@ -285,13 +307,111 @@ public class OrderServiceImpl implements OrderService {
         UserAuth loginUser = UserHolder.getUser();
         if (ROLE_ADMIN.equals(loginUser.getRole())) {
             // 管理者有權限刪除所有訂單
-            orderDao.delete(order);
+            deleteOrder(order);
         } else if (ROLE_USER.equals(loginUser.getRole())
                 && order.getUserId().equals(loginUser.getId())
                 && order.getPayStatus().equals("未付款")) {
             // 顧客只有權限刪除自己未付款的臨時訂單
-            orderDao.delete(order);
+            deleteOrder(order);
         }
         // 其他情況都沒有權限刪除 不做任何事情
     }
+
+    @Override
+    public boolean expireOrder(Integer orderId) {
+        // 鎖定後重新確認, 付款已完成或尚未過期時不處理
+        Order order = orderDao.findByOrderIdForUpdate(orderId);
+        if (order == null || !"未付款".equals(order.getPayStatus())) return false;
+
+        // 付款進行中 (支付網站尚未回應): 由排程稍後重試
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(ORDER_PAYING_PREFIX + orderId))) {
+            throw new IllegalStateException("訂單付款處理中, 稍後重新檢查");
+        }
+
+        List<OrderDetail> details = orderDetailDao.findByOrderId(orderId);
+        long now = System.currentTimeMillis();
+        for (OrderDetail detail : details) {
+            if (detail.getExpiredTime() != null && detail.getExpiredTime().getTime() > now) return false;
+        }
+
+        orderDao.delete(order);
+        orderSummaryDao.deleteById(orderId);
+        // 通知房況矩陣 / 庫存保留 / 搜尋緩存: 釋放臨時佔用
+        eventPublisher.publishEvent(new OrderUpdateEvent(this, OrderUpdateEvent.Type.EXPIRED, orderId, order.getPayStatus(), details));
+        return true;
+    }
+
+    // 批次組合 OrderDTO: 訂購人, 房型, 商家, 商家主圖 各以一次 IN 查詢取得後在記憶體中組合 (原本每張訂單各查詢一次)
+    private List<OrderDTO> assembleOrderDTOs(List<Order> orderList) {
+        if (orderList.isEmpty()) return new ArrayList<>();
+
+        Set<Integer> orderIds = new HashSet<>();
+        Set<Integer> userIds = new HashSet<>();
+        for (Order order : orderList) {
+            orderIds.add(order.getOrderId());
+            userIds.add(order.getUserId());
+        }
+
+        Map<Integer, User> userMap = new HashMap<>();
+        for (User user : userDao.findAllById(userIds)) {
+            userMap.put(user.getUserId(), user);
+        }
+
+        Map<Integer, List<OrderProductDTO>> productMap = new HashMap<>();
+        for (Object[] row : orderDetailDao.getOrderProductsByOrderIds(orderIds)) {
+            productMap.computeIfAbsent((Integer) row[0], k -> new ArrayList<>())
+                    .add(new OrderProductDTO((Integer) row[1], (String) row[2], (Integer) row[3]));
+        }
+
+        // 一張訂單只會屬於一個商家
+        Map<Integer, Integer> orderCompanyMap = new HashMap<>();
+        for (Object[] row : orderDetailDao.getCompanyIdsByOrderIds(orderIds)) {
+            orderCompanyMap.put((Integer) row[0], (Integer) row[1]);
+        }
+
+        Map<Integer, Company> companyMap = new HashMap<>();
+        Map<Integer, String> photoMap = new HashMap<>();
+        if (!orderCompanyMap.isEmpty()) {
+            Set<Integer> companyIds = new HashSet<>(orderCompanyMap.values());
+            for (Company company : companyDao.findByCompanyIdIn(companyIds)) {
+                companyMap.put(company.getCompanyId(), company);
+            }
+            for (Object[] row : companyPhotosDao.findMainPhotosByCompanyIds(companyIds)) {
+                photoMap.put(((Number) row[0]).intValue(), (String) row[1]);
+            }
+        }
+
+        List<OrderDTO> result = new ArrayList<>(orderList.size());
+        for (Order order : orderList) {
+            OrderDTO orderDTO = new OrderDTO();
+            BeanUtils.copyProperties(order, orderDTO);
+
+            User user = userMap.get(order.getUserId());
+            if (user != null) {
+                orderDTO.setSubscriber(user.getFirstName() + user.getLastName());
+            }
+            orderDTO.setSubscriberId(order.getUserId());
+            orderDTO.setProducts(productMap.getOrDefault(order.getOrderId(), new ArrayList<>()));
+
+            Company company = companyMap.get(orderCompanyMap.get(order.getOrderId()));
+            if (company != null) {
+                orderDTO.setCompanyId(company.getCompanyId());
+                orderDTO.setHotelName(company.getCompanyName());
+                orderDTO.setHotelAddress(company.getAddress());
+                orderDTO.setHotelScore(company.getScore());
+                orderDTO.setCity(company.getCity());
+                orderDTO.setPhoto(BASE_URL + photoMap.get(company.getCompanyId()));
+            }
+            result.add(orderDTO);
+        }
+        return result;
+    }
+
+    private void deleteOrder(Order order) {
+        // 刪除前先取得訂單明細, 讓房況矩陣可以扣回佔用的數量
+        List<OrderDetail> details = orderDetailDao.findByOrderId(order.getOrderId());
+        orderDao.delete(order);
+        orderSummaryDao.deleteById(order.getOrderId());
+        eventPublisher.publishEvent(new OrderUpdateEvent(this, OrderUpdateEvent.Type.DELETED, order.getOrderId(), order.getPayStatus(), details));
+    }
 }
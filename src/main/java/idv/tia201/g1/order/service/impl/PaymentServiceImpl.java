@@ -8,17 +8,24 @@ import idv.tia201.g1.core.entity.UserAuth;
 import idv.tia201.g1.core.utils.UserHolder;
 import idv.tia201.g1.order.dao.OrderDao;
 import idv.tia201.g1.order.dao.OrderDetailDao;
+import idv.tia201.g1.order.dao.OrderSummaryDao;
 import idv.tia201.g1.order.dto.OrderDTO;
 import idv.tia201.g1.order.dto.OrderProductDTO;
 import idv.tia201.g1.order.dto.PaymentRequest;
 import idv.tia201.g1.order.dto.PaymentResponse;
 import idv.tia201.g1.order.entity.Order;
+import idv.tia201.g1.order.entity.OrderDetail;
+import idv.tia201.g1.order.event.OrderUpdateEvent;
 import idv.tia201.g1.order.service.OrderService;
 import idv.tia201.g1.order.service.PaymentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.*;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
@@ -27,16 +34,32 @@ import org.springframework.web.client.RestTemplate;
 import java.sql.Date;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
-import static idv.tia201.g1.core.utils.Constants.ROLE_USER;
-import static idv.tia201.g1.core.utils.Constants.WEB_ORDER_PREFIX;
+import static idv.tia201.g1.core.utils.Constants.*;
 
 @Service
 public class PaymentServiceImpl implements PaymentService {
+    // 付款流程設計思路:
+    //      原本整個付款在同一個交易中, 訂單的鎖與資料庫連線一路持有到支付網站回應, 支付網站緩慢時會佔用連線池並卡住過期排程
+    //      1. 短交易: 鎖定訂單, 確認未付款且尚未過期, 在 Redis 標記 "付款中" (order-paying:{訂單編號})
+    //      2. 交易外呼叫支付網站 (連線 / 讀取皆有逾時)
+    //      3. 短交易: 再次鎖定訂單, 寫入付款結果; 結束後移除付款中標記
+    // 與過期排程:
+    //      過期排程鎖定訂單後看到付款中標記時不刪除, 稍後重試
+    //      付款只能在過期前開始, 逾時 (5 + 30 秒) 小於 ORDER_EXPIRE_GRACE, 付款一定在保留被歸還前結束
+    //      付款中標記的有效時間同為 ORDER_EXPIRE_GRACE, 程式中斷時自動失效
+    // 付款中標記不使用 pay_status: 現有查詢都以 pay_status <> '未付款' 判斷為已付款
+
     private static final String PAY_URL = "https://sandbox.tappaysdk.com/tpc/payment/pay-by-prime";
     private static final int PAY_STATE_SUCCESS = 0;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+
+    private final RestTemplate restTemplate = createRestTemplate();
 
     @Value("${payment.partner-key}")
     private String PARTNER_KEY;
@@ -47,6 +70,8 @@ public class PaymentServiceImpl implements PaymentService {
     @Autowired
     private OrderDetailDao orderDetailDao;
     @Autowired
+    private OrderSummaryDao orderSummaryDao;
+    @Autowired
     private ChatService chatService;
     @Autowired
     private ChatParticipantDao chatParticipantDao;
@@ -54,6 +79,12 @@ public class PaymentServiceImpl implements PaymentService {
     private CacheService cacheService;
     @Autowired
     private OrderService orderService;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     @Override
     public PaymentResponse processPayment(Integer orderId, PaymentRequest paymentRequest) {
@@ -66,24 +97,55 @@ public class PaymentServiceImpl implements PaymentService {
         // 驗證前端傳遞的格式是否符合
         validatePaymentRequest(paymentRequest);
 
-        // 取得訂單物件
-        Order order = orderDao.findByOrderId(orderId);
+        // 1. 檢查訂單並標記付款中 (短交易)
+        Order order = transactionTemplate.execute(status -> startPayment(orderId, loginUser.getId()));
 
-        // 驗證訂單是否存在 與 訂單所有人與登入者是否相符
-        if (order == null || !Objects.equals(order.getUserId(), loginUser.getId())) {
-            throw new IllegalStateException("訂單狀態異常：訂單不存在或不屬於該客戶");
+        try {
+            // 將訂單細節與編號補充填入請求物件
+            populatePaymentRequest(paymentRequest, order);
+
+            // 2. 將請求物件傳遞到支付網站 (不在交易中)
+            PaymentResponse response = callPaymentService(paymentRequest);
+
+            // 3. 根據支付網站回傳的結果進行訂單操作 (改寫訂單狀態... etc)
+            transactionTemplate.executeWithoutResult(status -> processPaymentResponse(orderId, response));
+
+            return response;
+        } finally {
+            stringRedisTemplate.delete(ORDER_PAYING_PREFIX + orderId);
         }
+    }
 
-        // 將訂單細節與編號補充填入請求物件
-        populatePaymentRequest(paymentRequest, order);
+    /**
+     * 鎖定並檢查訂單, 只有尚未過期的臨時訂單可以付款; 通過後標記付款中
+     *
+     * @return 訂單物件
+     */
+    private Order startPayment(Integer orderId, Integer userId) {
+        Order order = orderDao.findByOrderIdForUpdate(orderId);
 
-        // 將請求物件傳遞到支付網站
-        PaymentResponse response = callPaymentService(paymentRequest);
+        // 驗證訂單是否存在 與 訂單所有人與登入者是否相符
+        if (order == null || !Objects.equals(order.getUserId(), userId)) {
+            throw new IllegalStateException("訂單狀態異常：訂單不存在或不屬於該客戶");
+        }
 
-        // 根據支付網站回傳的結果進行訂單操作 (改寫訂單狀態... etc)
-        processPaymentResponse(order, response);
+        if (!"未付款".equals(order.getPayStatus())) {
+            throw new IllegalStateException("訂單狀態異常：訂單已付款");
+        }
+        long now = System.currentTimeMillis();
+        for (OrderDetail detail : orderDetailDao.findByOrderId(orderId)) {
+            if (detail.getExpiredTime() == null || detail.getExpiredTime().getTime() <= now) {
+                throw new IllegalStateException("訂單狀態異常：訂單已過期，請重新預訂");
+            }
+        }
 
-        return response;
+        // 同一張訂單同時只能有一個付款
+        Boolean marked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(ORDER_PAYING_PREFIX + orderId, String.valueOf(now), ORDER_EXPIRE_GRACE, TimeUnit.MILLISECONDS);
+        if (!Boolean.TRUE.equals(marked)) {
+            throw new IllegalStateException("訂單狀態異常：訂單付款處理中");
+        }
+        return order;
     }
 
     /**
@@ -93,8 +155,6 @@ public class PaymentServiceImpl implements PaymentService {
      * @return 支付網站的回應物件
      */
     private PaymentResponse callPaymentService(PaymentRequest paymentRequest) {
-        RestTemplate restTemplate = new RestTemplate();
-
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.set("x-api-key", PARTNER_KEY);
@@ -115,13 +175,20 @@ public class PaymentServiceImpl implements PaymentService {
         }
     }
 
+    private static RestTemplate createRestTemplate() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(CONNECT_TIMEOUT);
+        requestFactory.setReadTimeout(READ_TIMEOUT);
+        return new RestTemplate(requestFactory);
+    }
+
     /**
      * 根據回應處理訂單
      *
-     * @param order           訂單物件
+     * @param orderId         訂單編號
      * @param paymentResponse 支付網站的回應物件
      */
-    private void processPaymentResponse(Order order, PaymentResponse paymentResponse) {
+    private void processPaymentResponse(Integer orderId, PaymentResponse paymentResponse) {
         if (paymentResponse == null) {
             throw new IllegalStateException("支付異常: 支付網站服務異常，如已扣款請聯繫客服或支付平台處理。");
         }
@@ -131,11 +198,30 @@ public class PaymentServiceImpl implements PaymentService {
             throw new IllegalStateException("支付失敗: 請稍後重試。");
         }
 
+        // 重新鎖定訂單 (付款中標記存在時過期排程不會刪除訂單)
+        Order order = orderDao.findByOrderIdForUpdate(orderId);
+        if (order == null || !"未付款".equals(order.getPayStatus())) {
+            throw new IllegalStateException("支付異常: 訂單狀態已變更，如已扣款請聯繫客服或支付平台處理。");
+        }
+
         Date endDate = order.getEndDate();
         Timestamp endTimestamp = new Timestamp(endDate.getTime());
         order.setPayStatus(paymentResponse.getRec_trade_id());
         orderDetailDao.updateExpiredTimeByOrderId(order.getOrderId(),endTimestamp);
         Order saved = orderDao.save(order);
+        orderSummaryDao.findById(saved.getOrderId()).ifPresent(summary -> {
+            summary.setPayStatus(saved.getPayStatus());
+            summary.setExpiredTime(endTimestamp);
+            orderSummaryDao.save(summary);
+        });
+
+        // 臨時佔用轉為正式預訂
+        eventPublisher.publishEvent(new OrderUpdateEvent(
+                this,
+                OrderUpdateEvent.Type.PAID,
+                saved.getOrderId(),
+                saved.getPayStatus(),
+                orderDetailDao.findByOrderId(saved.getOrderId())));
 
         // 付款完成: 發送系統提示訊息
         sendOrderSysMessage(saved.getOrderId());
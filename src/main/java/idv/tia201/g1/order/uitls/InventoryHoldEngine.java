@@ -0,0 +1,425 @@
+package idv.tia201.g1.order.uitls;
+
+import idv.tia201.g1.order.dao.OrderDetailDao;
+import idv.tia201.g1.order.entity.OrderDetail;
+import idv.tia201.g1.order.event.OrderUpdateEvent;
+import idv.tia201.g1.product.dao.ProductDao;
+import idv.tia201.g1.product.entity.Product;
+import idv.tia201.g1.product.event.ProductUpdateEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static idv.tia201.g1.core.utils.Constants.*;
+
+@Slf4j
+@Component
+public class InventoryHoldEngine {
+    // 庫存保留設計思路:
+    //      原本建立訂單時直接寫入 order_detail, 沒有檢查剩餘房間, 同時結帳最後一間房時兩筆都會成功
+    //      改為在 Redis 保存每個 "商品 x 日期" 的剩餘房間數 (inventory:{productId}:{date}),
+    //      建立訂單時以一次 Lua 腳本檢查並扣除所有晚上 (全部成功或全部失敗), 搶購時也不需要資料庫鎖
+    // 保留紀錄:
+    //      每張訂單一個 hash (inventory-hold:{orderId}) 記錄扣除的內容, 過期 / 刪除時依此歸還, 付款時移除紀錄 (房間維持扣除)
+    //      過期時間記錄在 zset (inventory-hold-expire), 定期歸還已過期的保留, 所有腳本都可以重複執行
+    // 初始值:
+    //      房況key不存在時, 由資料庫計算 (庫存 - 已付款 - 寬限期內的臨時訂單) 後在腳本中初始化, 日期過後自動過期
+    //      計算時間記錄在商品的房況索引 (inventory-keys:{productId}), 在這之前到期的保留已經不算在初始值內, 歸還時略過
+    // 修改庫存:
+    //      不刪除房況key (仍有保留紀錄參照), 以初始化時使用的庫存 (inventory-stock) 計算差異後調整
+    // 對帳:
+    //      定期以資料庫重新計算所有房況key, 連續兩次看到相同的差異才修正 (避免把尚未寫入資料庫的保留當成差異),
+    //      修正時只在值沒有改變的情況下寫入
+    //      以 Redis 鎖確保同時只有一個節點執行, 依商品 (inventory-products) 分批讀取房況索引與查詢資料庫,
+    //      差異記錄在 Redis (inventory-drift), 下一次由哪個節點執行都能比對
+
+    private static final DefaultRedisScript<Long> HOLD_SCRIPT = loadScript("lua/holdInventory.lua");
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = loadScript("lua/releaseInventory.lua");
+    private static final DefaultRedisScript<Long> CONFIRM_SCRIPT = loadScript("lua/confirmInventory.lua");
+    private static final DefaultRedisScript<Long> RECONCILE_SCRIPT = loadScript("lua/reconcileInventory.lua");
+    private static final DefaultRedisScript<Long> ADJUST_STOCK_SCRIPT = loadScript("lua/adjustInventoryStock.lua");
+    private static final DefaultRedisScript<Long> EXPIRE_PRODUCTS_SCRIPT = loadScript("lua/expireInventoryProducts.lua");
+
+    private static final int SWEEP_BATCH_SIZE = 100;
+    private static final int RECONCILE_BATCH_SIZE = 50;     // 每批對帳的商品數量
+    private static final long RECONCILE_LOCK_TTL = 240L;    // 秒, 小於對帳間隔
+    private static final long DRIFT_TTL = 15L;              // 分鐘, 超過兩次對帳間隔後舊的差異不再比對
+    private static final String UNPAID = "未付款";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ProductDao productDao;
+    private final OrderDetailDao orderDetailDao;
+
+    public InventoryHoldEngine(StringRedisTemplate stringRedisTemplate, ProductDao productDao, OrderDetailDao orderDetailDao) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.productDao = productDao;
+        this.orderDetailDao = orderDetailDao;
+    }
+
+    /**
+     * 保留訂單的房間 (所有商品的所有晚上一次完成)
+     *
+     * @param orderId       訂單編號
+     * @param productCounts 商品編號 -> 每晚的數量
+     * @param nights        住宿的每一晚
+     * @param expiredTime   保留的過期時間
+     * @throws IllegalStateException 任何一晚的房間不足時 (不會扣除任何房間)
+     * 在交易中呼叫時, 交易回滾後自動歸還
+     */
+    public void hold(Integer orderId, Map<Integer, Integer> productCounts, List<Date> nights, Timestamp expiredTime) {
+        List<String> counterKeys = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : new TreeMap<>(productCounts).entrySet()) {
+            for (Date night : nights) {
+                counterKeys.add(toCounterKey(entry.getKey(), night));
+                quantities.add(entry.getValue());
+            }
+        }
+        if (counterKeys.isEmpty()) return;
+
+        // 只有房況key不存在時才需要查詢資料庫計算初始值
+        Remaining initial = getInitialValues(counterKeys, productCounts.keySet(), nights);
+
+        List<String> keys = new ArrayList<>(counterKeys.size() + 4);
+        keys.add(INVENTORY_HOLD_PREFIX + orderId);
+        keys.add(INVENTORY_HOLD_EXPIRE);
+        keys.add(INVENTORY_PRODUCTS);
+        keys.add(INVENTORY_STOCK);
+        keys.addAll(counterKeys);
+
+        List<String> args = new ArrayList<>(counterKeys.size() * 5 + 4);
+        args.add(orderId.toString());
+        args.add(String.valueOf(expiredTime.getTime() + ORDER_EXPIRE_GRACE));  // 過期前開始的付款完成前不歸還
+        args.add(String.valueOf(initial.computedAt));
+        args.add(INVENTORY_PRODUCT_KEYS);
+        for (int i = 0; i < counterKeys.size(); i++) {
+            String counterKey = counterKeys.get(i);
+            Integer productId = toProductId(counterKey);
+            args.add(quantities.get(i).toString());
+            args.add(initial.values.getOrDefault(counterKey, 0).toString());
+            args.add(String.valueOf(toExpireAt(counterKey)));
+            args.add(productId.toString());
+            args.add(initial.stocks.getOrDefault(productId, 0).toString());
+        }
+
+        Long result = stringRedisTemplate.execute(HOLD_SCRIPT, keys, args.toArray());
+        if (result == null) {
+            throw new IllegalStateException("房間保留失敗, 請稍後再試");
+        }
+        if (result < 0) {
+            String soldOut = counterKeys.get((int) (-result - 1));
+            throw new IllegalStateException("房間已售完: " + soldOut.substring(soldOut.lastIndexOf(':') + 1));
+        }
+
+        // 在交易中保留時, 交易沒有成功提交 (訂單沒有建立) 就歸還
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) release(orderId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 歸還訂單保留的房間 (保留不存在時不做任何事)
+     */
+    public void release(Integer orderId) {
+        release(orderId, Collections.emptyList());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleOrderUpdateEvent(OrderUpdateEvent event) {
+        Integer orderId = event.getOrderId();
+        List<OrderDetail> details = event.getDetails() == null ? Collections.emptyList() : event.getDetails();
+        try {
+            switch (event.getType()) {
+                case PAID:
+                    confirm(orderId, details);
+                    break;
+                case EXPIRED:
+                    release(orderId);
+                    break;
+                case DELETED:
+                    // 已付款的訂單沒有保留紀錄, 直接歸還訂單的房間
+                    release(orderId, UNPAID.equals(event.getPayStatus()) ? Collections.emptyList() : details);
+                    break;
+                default:
+            }
+        } catch (Exception e) {
+            // 由對帳修正
+            log.warn("inventory update failed: order {} {}", orderId, event.getType(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleProductUpdateEvent(ProductUpdateEvent event) {
+        Product product = event.getProduct();
+        String productId = product.getProductId().toString();
+        String indexKey = INVENTORY_PRODUCT_KEYS + productId;
+        try {
+            if (event.getType() == ProductUpdateEvent.Type.SAVED) {
+                // 庫存數量可能改變, 以差異調整已存在的房況key
+                stringRedisTemplate.execute(ADJUST_STOCK_SCRIPT, List.of(INVENTORY_STOCK, indexKey),
+                        productId, String.valueOf(product.getStock()), INVENTORY_PREFIX + productId + ":");
+                return;
+            }
+
+            // 商品已刪除, 不會再有新的保留 (歸還時房況key不存在就略過)
+            Set<Object> dates = stringRedisTemplate.opsForHash().keys(indexKey);
+            List<String> counterKeys = dates.stream().map(date -> INVENTORY_PREFIX + productId + ":" + date).toList();
+            if (!counterKeys.isEmpty()) {
+                stringRedisTemplate.delete(counterKeys);
+            }
+            stringRedisTemplate.delete(indexKey);
+            stringRedisTemplate.opsForZSet().remove(INVENTORY_PRODUCTS, productId);
+            stringRedisTemplate.opsForHash().delete(INVENTORY_STOCK, productId);
+        } catch (Exception e) {
+            log.warn("inventory stock update failed: product {}", productId, e);
+        }
+    }
+
+    /**
+     * 歸還已過期的保留 (所有節點都會執行, 腳本可以重複執行)
+     */
+    @Scheduled(fixedDelay = 10, timeUnit = TimeUnit.SECONDS)
+    public void releaseExpiredHolds() {
+        try {
+            Set<String> orderIds = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(INVENTORY_HOLD_EXPIRE, 0, System.currentTimeMillis(), 0, SWEEP_BATCH_SIZE);
+            if (orderIds == null) return;
+            for (String orderId : orderIds) {
+                release(Integer.valueOf(orderId));
+            }
+        } catch (Exception e) {
+            log.error("inventory hold sweep failed", e);
+        }
+    }
+
+    /**
+     * 以資料庫對帳 (連續兩次相同的差異才修正, 同時只有一個節點執行)
+     */
+    @Scheduled(initialDelay = 5, fixedDelay = 5, timeUnit = TimeUnit.MINUTES)
+    public void reconcile() {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(LOCK_INVENTORY_RECONCILE, token, RECONCILE_LOCK_TTL, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) return;
+
+        try {
+            // 日期已過的房況key會自己過期, 這裡只移除索引
+            stringRedisTemplate.execute(EXPIRE_PRODUCTS_SCRIPT, List.of(INVENTORY_PRODUCTS),
+                    String.valueOf(System.currentTimeMillis() / 1000), INVENTORY_PRODUCT_KEYS);
+
+            int drifted = 0;
+            long corrected = 0;
+            for (long offset = 0; ; offset += RECONCILE_BATCH_SIZE) {
+                Set<String> productIds = stringRedisTemplate.opsForZSet()
+                        .range(INVENTORY_PRODUCTS, offset, offset + RECONCILE_BATCH_SIZE - 1);
+                if (productIds == null || productIds.isEmpty()) break;
+
+                long[] result = reconcileBatch(productIds);
+                drifted += (int) result[0];
+                corrected += result[1];
+                if (productIds.size() < RECONCILE_BATCH_SIZE) break;
+            }
+            stringRedisTemplate.expire(INVENTORY_DRIFT, DRIFT_TTL, TimeUnit.MINUTES);
+
+            if (drifted > 0) {
+                log.warn("inventory reconciled: {} drifted, {} corrected", drifted, corrected);
+            }
+        } catch (Exception e) {
+            log.error("inventory reconcile failed", e);
+        } finally {
+            if (token.equals(stringRedisTemplate.opsForValue().get(LOCK_INVENTORY_RECONCILE))) {
+                stringRedisTemplate.delete(LOCK_INVENTORY_RECONCILE);
+            }
+        }
+    }
+
+    // 對帳一批商品, 回傳 {持續的差異數量, 修正的數量}
+    private long[] reconcileBatch(Set<String> productIds) {
+        LocalDate today = LocalDate.now();
+        List<String> keys = new ArrayList<>();
+        LocalDate minDate = null;
+        LocalDate maxDate = null;
+        for (String productId : productIds) {
+            String indexKey = INVENTORY_PRODUCT_KEYS + productId;
+            List<Object> pastDates = new ArrayList<>();
+            for (Object field : stringRedisTemplate.opsForHash().keys(indexKey)) {
+                LocalDate date = LocalDate.parse(field.toString());
+                // 房況key在該晚的隔天結束時過期
+                if (date.plusDays(1).isBefore(today)) {
+                    pastDates.add(field);
+                    continue;
+                }
+                keys.add(INVENTORY_PREFIX + productId + ":" + date);
+                if (minDate == null || date.isBefore(minDate)) minDate = date;
+                if (maxDate == null || date.isAfter(maxDate)) maxDate = date;
+            }
+            if (!pastDates.isEmpty()) {
+                stringRedisTemplate.opsForHash().delete(indexKey, pastDates.toArray());
+            }
+        }
+        if (keys.isEmpty()) return new long[]{0, 0};
+
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        if (values == null) return new long[]{0, 0};
+
+        // 以資料庫計算正確的剩餘房間
+        Set<Integer> ids = new HashSet<>();
+        for (String productId : productIds) {
+            ids.add(Integer.valueOf(productId));
+        }
+        Remaining truths = computeRemaining(ids, minDate, maxDate);
+
+        HashOperations<String, String, String> driftOps = stringRedisTemplate.opsForHash();
+        List<String> lastDrifts = driftOps.multiGet(INVENTORY_DRIFT, keys);
+        Map<String, String> drifts = new HashMap<>();
+        List<Object> resolved = new ArrayList<>();
+        List<String> correctKeys = new ArrayList<>();
+        List<String> correctArgs = new ArrayList<>();
+        correctArgs.add(String.valueOf(truths.computedAt));
+        correctArgs.add(INVENTORY_PRODUCT_KEYS);
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            String value = values.get(i);
+            Integer truth = truths.values.get(key);
+            if (value == null || truth == null || Integer.parseInt(value) == truth) {
+                if (lastDrifts.get(i) != null) resolved.add(key);
+                continue;
+            }
+
+            String drift = value + "/" + truth;
+            drifts.put(key, drift);
+            if (drift.equals(lastDrifts.get(i))) {
+                correctKeys.add(key);
+                correctArgs.add(value);
+                correctArgs.add(truth.toString());
+            }
+        }
+        if (!resolved.isEmpty()) driftOps.delete(INVENTORY_DRIFT, resolved.toArray());
+        if (!drifts.isEmpty()) driftOps.putAll(INVENTORY_DRIFT, drifts);
+
+        if (correctKeys.isEmpty()) return new long[]{0, 0};
+        Long corrected = stringRedisTemplate.execute(RECONCILE_SCRIPT, correctKeys, correctArgs.toArray());
+        return new long[]{correctKeys.size(), corrected == null ? 0 : corrected};
+    }
+
+    private void confirm(Integer orderId, List<OrderDetail> details) {
+        List<String> keys = new ArrayList<>(details.size() + 2);
+        keys.add(INVENTORY_HOLD_PREFIX + orderId);
+        keys.add(INVENTORY_HOLD_EXPIRE);
+        List<String> args = new ArrayList<>(details.size() + 1);
+        args.add(orderId.toString());
+        for (OrderDetail detail : details) {
+            keys.add(toCounterKey(detail.getProductId(), detail.getBookedDate()));
+            args.add(detail.getQuantity().toString());
+        }
+        stringRedisTemplate.execute(CONFIRM_SCRIPT, keys, args.toArray());
+    }
+
+    private void release(Integer orderId, List<OrderDetail> details) {
+        List<String> keys = new ArrayList<>(details.size() + 2);
+        keys.add(INVENTORY_HOLD_PREFIX + orderId);
+        keys.add(INVENTORY_HOLD_EXPIRE);
+        List<String> args = new ArrayList<>(details.size() + 2);
+        args.add(orderId.toString());
+        args.add(INVENTORY_PRODUCT_KEYS);
+        for (OrderDetail detail : details) {
+            keys.add(toCounterKey(detail.getProductId(), detail.getBookedDate()));
+            args.add(detail.getQuantity().toString());
+        }
+        stringRedisTemplate.execute(RELEASE_SCRIPT, keys, args.toArray());
+    }
+
+    private Remaining getInitialValues(List<String> counterKeys, Collection<Integer> productIds, List<Date> nights) {
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(counterKeys);
+        if (values != null && !values.contains(null)) return Remaining.EMPTY;
+
+        LocalDate from = nights.get(0).toLocalDate();
+        LocalDate to = nights.get(nights.size() - 1).toLocalDate();
+        return computeRemaining(productIds, from, to);
+    }
+
+    // 房況key -> 庫存 - 已付款 - 寬限期內的臨時訂單 (區間內每個商品的每一天)
+    private Remaining computeRemaining(Collection<Integer> productIds, LocalDate from, LocalDate to) {
+        Map<Integer, Integer> stocks = new HashMap<>();
+        for (Product product : productDao.findAllById(productIds)) {
+            stocks.put(product.getProductId(), product.getStock());
+        }
+
+        // 與保留的歸還時間 (過期時間 + 寬限期) 使用同一個基準
+        long computedAt = System.currentTimeMillis();
+        Timestamp expiredAfter = new Timestamp(computedAt - ORDER_EXPIRE_GRACE);
+        Map<String, Integer> booked = new HashMap<>();
+        for (Object[] row : orderDetailDao.sumActiveQuantityGroupByProductAndDate(
+                productIds, Date.valueOf(from), Date.valueOf(to), expiredAfter)) {
+            booked.put(INVENTORY_PREFIX + ((Number) row[0]).intValue() + ":" + toLocalDate(row[1]), ((Number) row[2]).intValue());
+        }
+
+        Map<String, Integer> res = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : stocks.entrySet()) {
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                String key = INVENTORY_PREFIX + entry.getKey() + ":" + date;
+                res.put(key, entry.getValue() - booked.getOrDefault(key, 0));
+            }
+        }
+        return new Remaining(computedAt, stocks, res);
+    }
+
+    private static String toCounterKey(Integer productId, Date night) {
+        return INVENTORY_PREFIX + productId + ":" + night;
+    }
+
+    private static Integer toProductId(String counterKey) {
+        return Integer.valueOf(counterKey.substring(INVENTORY_PREFIX.length(), counterKey.lastIndexOf(':')));
+    }
+
+    // 房況key在該晚的隔天結束時過期 (unix time, 秒)
+    private static long toExpireAt(String counterKey) {
+        LocalDate night = LocalDate.parse(counterKey.substring(counterKey.lastIndexOf(':') + 1));
+        return night.plusDays(2).atStartOfDay(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate localDate) return localDate;
+        return ((Date) value).toLocalDate();
+    }
+
+    private static DefaultRedisScript<Long> loadScript(String location) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(location));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    private static class Remaining {
+        static final Remaining EMPTY = new Remaining(0L, Collections.emptyMap(), Collections.emptyMap());
+
+        final long computedAt;                  // 計算時間 (毫秒), 在這之前到期的保留不包含在內
+        final Map<Integer, Integer> stocks;     // 商品編號 -> 計算時使用的庫存
+        final Map<String, Integer> values;      // 房況key -> 剩餘房間數
+
+        Remaining(long computedAt, Map<Integer, Integer> stocks, Map<String, Integer> values) {
+            this.computedAt = computedAt;
+            this.stocks = stocks;
+            this.values = values;
+        }
+    }
+}
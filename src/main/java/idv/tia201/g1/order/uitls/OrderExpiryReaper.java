@@ -0,0 +1,138 @@
+package idv.tia201.g1.order.uitls;
+
+import idv.tia201.g1.order.dao.OrderDetailDao;
+import idv.tia201.g1.order.entity.OrderDetail;
+import idv.tia201.g1.order.event.OrderUpdateEvent;
+import idv.tia201.g1.order.service.OrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static idv.tia201.g1.core.utils.Constants.ORDER_EXPIRE_GRACE;
+import static idv.tia201.g1.core.utils.Constants.ORDER_EXPIRE_QUEUE;
+
+@Slf4j
+@Component
+public class OrderExpiryReaper {
+    // 臨時訂單過期設計思路:
+    //      原本過期的臨時訂單不會被刪除, 只靠查詢條件 expired_time > NOW() 排除, 資料持續累積
+    //      以 Redis zset 作為延遲佇列 (order-expire: 訂單編號 -> 過期時間), 每秒取出已到期的訂單, 小批次逐筆刪除
+    //      刪除後發送 EXPIRED 事件, 由房況矩陣 / 庫存保留 / 搜尋緩存各自釋放
+    // 多台機器:
+    //      取出後先 ZREM, 只有移除成功的機器負責處理; 處理失敗時延後重新加入佇列
+    //      刪除前鎖定訂單並重新確認未付款且已過期; 付款開始時同樣鎖定訂單並拒絕已過期的訂單
+    //      付款呼叫支付網站期間在 Redis 標記付款中, 刪除時看到標記則延後重試, 兩者不會同時進行
+    //      佇列時間為過期時間再加上 ORDER_EXPIRE_GRACE, 過期前開始的付款通常在此之前就已完成
+    // 重新啟動:
+    //      佇列保存在 Redis, 重新部署後仍然存在
+    //      另外定期由資料庫補回所有未付款訂單 (ZADD 可重複執行), 涵蓋 Redis 資料遺失與功能上線前的舊訂單
+
+    private static final int BATCH_SIZE = 50;
+    private static final int MAX_BATCHES_PER_RUN = 10;
+    private static final long RETRY_DELAY_MILLIS = 30 * 1000;
+
+    @Lazy
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private OrderDetailDao orderDetailDao;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 刪除已到期的臨時訂單
+     */
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.SECONDS)
+    public void reap() {
+        try {
+            for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+                Set<String> orderIds = stringRedisTemplate.opsForZSet()
+                        .rangeByScore(ORDER_EXPIRE_QUEUE, 0, System.currentTimeMillis(), 0, BATCH_SIZE);
+                if (orderIds == null || orderIds.isEmpty()) return;
+
+                for (String orderId : orderIds) {
+                    // 其他機器已經取走
+                    Long removed = stringRedisTemplate.opsForZSet().remove(ORDER_EXPIRE_QUEUE, orderId);
+                    if (removed == null || removed == 0) continue;
+                    expire(orderId);
+                }
+                if (orderIds.size() < BATCH_SIZE) return;
+            }
+        } catch (Exception e) {
+            log.error("order expiry reap failed", e);
+        }
+    }
+
+    /**
+     * 由資料庫補回所有未付款訂單 (啟動時執行, 之後定期執行)
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void backfill() {
+        try {
+            Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+            for (Object[] row : orderDetailDao.findUnpaidOrderExpiredTimes()) {
+                if (row[1] == null) continue;
+                tuples.add(ZSetOperations.TypedTuple.of(row[0].toString(), (double) (((Timestamp) row[1]).getTime() + ORDER_EXPIRE_GRACE)));
+            }
+            if (tuples.isEmpty()) return;
+            stringRedisTemplate.opsForZSet().add(ORDER_EXPIRE_QUEUE, tuples);
+            log.debug("OrderExpiryReaper backfilled {} unpaid orders", tuples.size());
+        } catch (Exception e) {
+            log.error("order expiry backfill failed", e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleOrderUpdateEvent(OrderUpdateEvent event) {
+        String orderId = event.getOrderId().toString();
+        try {
+            switch (event.getType()) {
+                case CREATED:
+                    Timestamp expiredTime = getExpiredTime(event.getDetails());
+                    if (expiredTime != null) {
+                        stringRedisTemplate.opsForZSet().add(ORDER_EXPIRE_QUEUE, orderId, expiredTime.getTime() + ORDER_EXPIRE_GRACE);
+                    }
+                    break;
+                case PAID:
+                case DELETED:
+                    stringRedisTemplate.opsForZSet().remove(ORDER_EXPIRE_QUEUE, orderId);
+                    break;
+                default:
+            }
+        } catch (Exception e) {
+            // 由定期補回修正
+            log.warn("order expiry queue update failed: order {} {}", orderId, event.getType(), e);
+        }
+    }
+
+    private void expire(String orderId) {
+        try {
+            orderService.expireOrder(Integer.valueOf(orderId));
+        } catch (Exception e) {
+            log.warn("order expiry failed, retry later: order {}", orderId, e);
+            stringRedisTemplate.opsForZSet().add(ORDER_EXPIRE_QUEUE, orderId, System.currentTimeMillis() + RETRY_DELAY_MILLIS);
+        }
+    }
+
+    private static Timestamp getExpiredTime(List<OrderDetail> details) {
+        if (details == null) return null;
+        Timestamp res = null;
+        for (OrderDetail detail : details) {
+            if (detail.getExpiredTime() != null && (res == null || detail.getExpiredTime().after(res))) {
+                res = detail.getExpiredTime();
+            }
+        }
+        return res;
+    }
+}
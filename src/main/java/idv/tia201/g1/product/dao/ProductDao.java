@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +15,7 @@ public interface ProductDao extends JpaRepository<Product, Integer> {
 
     @Query("SELECT p.productName FROM Product p WHERE p.productId = :productId")
     String getProductNameByProductId(@Param("productId") Integer productId);
+
+    @Query("SELECT p.productId, p.productName FROM Product p WHERE p.productId IN :productIds")
+    List<Object[]> getProductNamesByProductIds(@Param("productIds") Collection<Integer> productIds);
 }
@@ -5,9 +5,15 @@ import idv.tia201.g1.product.entity.ProductDiscount;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductDiscountDao extends JpaRepository<ProductDiscount, Integer> {
     List<ProductDiscount> findByCompanyId(Integer companyId);
+
+    List<ProductDiscount> findByCompanyIdIn(Collection<Integer> companyIds);
+
+    List<ProductDiscount> findByEndDateTimeGreaterThanEqual(Timestamp endDateTime);
 }
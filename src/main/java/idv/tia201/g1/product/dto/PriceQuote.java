@@ -0,0 +1,24 @@
+package idv.tia201.g1.product.dto;
+
+import lombok.Data;
+
+import java.sql.Date;
+import java.util.Map;
+
+@Data
+public class PriceQuote {
+    private Integer companyId;
+    private Date startDate;
+    private Date endDate;
+    private Integer nights;
+    private Map<Integer, Integer> products;     // 商品編號 -> 每晚的數量
+
+    private Integer fullPrice;      // 原價
+    private Integer discount;       // 折扣金額
+    private Integer serviceFee;     // 服務費
+    private Integer tax;            // 稅金
+    private Integer actualPrice;    // 實際金額
+
+    private Long expiresAt;         // 報價有效期限 (毫秒)
+    private String token;           // 簽章後的報價, 結帳時帶入即可沿用此報價
+}
@@ -0,0 +1,14 @@
+package idv.tia201.g1.product.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class DiscountUpdateEvent extends ApplicationEvent {
+    private final Integer companyId;    // 折扣有異動的商家
+
+    public DiscountUpdateEvent(Object source, Integer companyId) {
+        super(source);
+        this.companyId = companyId;
+    }
+}
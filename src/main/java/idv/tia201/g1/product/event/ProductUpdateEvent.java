@@ -0,0 +1,22 @@
+package idv.tia201.g1.product.event;
+
+import idv.tia201.g1.product.entity.Product;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+@Getter
+public class ProductUpdateEvent extends ApplicationEvent {
+    public enum Type {
+        SAVED,      // 新增或修改 (價格, 庫存, 入住人數...)
+        DELETED
+    }
+
+    private final Type type;
+    private final Product product;
+
+    public ProductUpdateEvent(Object source, Type type, Product product) {
+        super(source);
+        this.type = type;
+        this.product = product;
+    }
+}
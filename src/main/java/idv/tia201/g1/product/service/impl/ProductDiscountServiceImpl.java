@@ -4,9 +4,11 @@ import idv.tia201.g1.core.entity.UserAuth;
 import idv.tia201.g1.core.utils.UserHolder;
 import idv.tia201.g1.product.dao.ProductDiscountDao;
 import idv.tia201.g1.product.entity.ProductDiscount;
+import idv.tia201.g1.product.event.DiscountUpdateEvent;
 import idv.tia201.g1.product.exception.ResourceNotFoundException;
 import idv.tia201.g1.product.service.ProductDiscountService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -18,10 +20,12 @@ import static idv.tia201.g1.core.utils.Constants.ROLE_COMPANY;
 public class ProductDiscountServiceImpl implements ProductDiscountService {
 
     private final ProductDiscountDao productDiscountDao;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public ProductDiscountServiceImpl(ProductDiscountDao productDiscountDao) {
+    public ProductDiscountServiceImpl(ProductDiscountDao productDiscountDao, ApplicationEventPublisher eventPublisher) {
         this.productDiscountDao = productDiscountDao;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -48,7 +52,9 @@ public class ProductDiscountServiceImpl implements ProductDiscountService {
         productDiscount.setCompanyId(loginUser.getId());
         productDiscount.setChangeId(loginUser.getId());
 
-        return productDiscountDao.save(productDiscount);
+        ProductDiscount saved = productDiscountDao.save(productDiscount);
+        eventPublisher.publishEvent(new DiscountUpdateEvent(this, saved.getCompanyId()));
+        return saved;
     }
 
     @Override
@@ -82,7 +88,9 @@ public class ProductDiscountServiceImpl implements ProductDiscountService {
             discount.setEndDateTime(productDiscount.getEndDateTime());
         }
 
-        return productDiscountDao.save(discount);
+        ProductDiscount saved = productDiscountDao.save(discount);
+        eventPublisher.publishEvent(new DiscountUpdateEvent(this, saved.getCompanyId()));
+        return saved;
     }
 
     @Override
@@ -95,5 +103,6 @@ public class ProductDiscountServiceImpl implements ProductDiscountService {
                 .orElseThrow(() -> new ResourceNotFoundException("未找到相關優惠！"));
 
         productDiscountDao.delete(discount);
+        eventPublisher.publishEvent(new DiscountUpdateEvent(this, discount.getCompanyId()));
     }
 }
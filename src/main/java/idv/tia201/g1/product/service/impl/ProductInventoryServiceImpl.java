@@ -7,12 +7,14 @@ import idv.tia201.g1.product.dao.ProductDao;
 import idv.tia201.g1.product.dao.ProductInventoryDao;
 import idv.tia201.g1.product.dto.ProductRequest;
 import idv.tia201.g1.product.entity.Product;
+import idv.tia201.g1.product.event.ProductUpdateEvent;
 import idv.tia201.g1.product.exception.ResourceNotFoundException;
 import idv.tia201.g1.product.service.ProductInventoryService;
 import idv.tia201.g1.search.dto.ProductCalculation;
 import io.micrometer.common.util.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.sql.Date;
@@ -30,6 +32,8 @@ public class ProductInventoryServiceImpl implements ProductInventoryService {
 
     @Autowired
     protected ProductInventoryDao productInventoryDao;
+    @Autowired
+    protected ApplicationEventPublisher eventPublisher;
     protected ProductDao productDao;
 
     // 使用構造函數注入
@@ -92,6 +96,7 @@ public class ProductInventoryServiceImpl implements ProductInventoryService {
         }
 
         productInventoryDao.save(existingProduct);  // Corrected instance method call
+        eventPublisher.publishEvent(new ProductUpdateEvent(this, ProductUpdateEvent.Type.SAVED, existingProduct));
 
         return existingProduct;
     }
@@ -118,6 +123,7 @@ public class ProductInventoryServiceImpl implements ProductInventoryService {
         }
 
         productInventoryDao.deleteById(id);  // Corrected instance method call
+        eventPublisher.publishEvent(new ProductUpdateEvent(this, ProductUpdateEvent.Type.DELETED, theProduct.get()));
     }
 
     @Override
@@ -178,6 +184,7 @@ public class ProductInventoryServiceImpl implements ProductInventoryService {
 
         // 保存商品
         Product savedProduct = productDao.save(newProduct);
+        eventPublisher.publishEvent(new ProductUpdateEvent(this, ProductUpdateEvent.Type.SAVED, savedProduct));
 
         // 打印保存的產品資料
         System.out.println("保存的產品: " + savedProduct);
@@ -7,12 +7,14 @@ import idv.tia201.g1.image.service.ImageService;
 import idv.tia201.g1.product.dao.*;
 import idv.tia201.g1.product.dto.ProductRequest;
 import idv.tia201.g1.product.entity.*;
+import idv.tia201.g1.product.event.ProductUpdateEvent;
 import idv.tia201.g1.product.exception.ResourceNotFoundException;
 import idv.tia201.g1.product.service.ProductService;
 import io.micrometer.common.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -37,6 +39,8 @@ public class ProductServiceImpl implements ProductService {
     ImageService imageService;
     @Autowired
     Product product;
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
 
 
     @Override
@@ -93,6 +97,7 @@ public class ProductServiceImpl implements ProductService {
 
         // 保存更新后的产品信息
         productDao.save(product);
+        eventPublisher.publishEvent(new ProductUpdateEvent(this, ProductUpdateEvent.Type.SAVED, product));
 
         ProductDetails productDetails = request.getProductDetails();
         if (productDetails != null) {
@@ -198,6 +203,7 @@ public class ProductServiceImpl implements ProductService {
 
         // 保存商品
         Product savedProduct = productDao.save(newProduct);
+        eventPublisher.publishEvent(new ProductUpdateEvent(this, ProductUpdateEvent.Type.SAVED, savedProduct));
 
         // 打印保存的產品資料
         System.out.println("保存的產品: " + savedProduct);
@@ -336,5 +342,6 @@ public class ProductServiceImpl implements ProductService {
 
         // 執行刪除操作
         productDao.deleteById(Math.toIntExact(productId));
+        eventPublisher.publishEvent(new ProductUpdateEvent(this, ProductUpdateEvent.Type.DELETED, theProduct.get()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,191 @@
+package idv.tia201.g1.product.utils;
+
+import idv.tia201.g1.product.dao.ProductDiscountDao;
+import idv.tia201.g1.product.entity.ProductDiscount;
+import idv.tia201.g1.product.event.DiscountUpdateEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+public class DiscountCalendar {
+    // 折扣日曆設計思路:
+    //      原本每個商家每一晚都要查詢一次 MIN(discount_rate), 搜尋時 商家數 x 晚數 次查詢
+    //      改為在記憶體中保存每個商家的折扣區間 (以 epoch day 表示涵蓋的晚數), 一次呼叫算出整段住宿每晚的最低折扣
+    // 區間換算:
+    //      原本的條件是 start_date_time <= 當晚 00:00 <= end_date_time
+    //      => 開始時間不是剛好午夜時從隔天開始算, 結束時間當天一定涵蓋
+    // 一致性:
+    //      折扣新增 / 修改 / 刪除時透過事件重新載入該商家, 其他節點的異動由定期重建修正
+    //      尚未載入完成 (啟動中或載入失敗) 時只查詢需要的商家, 不在請求中重新載入全部折扣, 等待定期重建成功
+
+    private static final Interval[] EMPTY = new Interval[0];
+
+    private final ProductDiscountDao productDiscountDao;
+
+    private volatile Map<Integer, Interval[]> companyIntervals = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+
+    public DiscountCalendar(ProductDiscountDao productDiscountDao) {
+        this.productDiscountDao = productDiscountDao;
+    }
+
+    /**
+     * 從資料庫重新載入所有尚未結束的折扣 (啟動時執行, 之後定期校正)
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 30, timeUnit = TimeUnit.MINUTES)
+    public synchronized void reload() {
+        try {
+            Timestamp from = Timestamp.valueOf(LocalDate.now().minusDays(1).atStartOfDay());
+            List<ProductDiscount> discounts = productDiscountDao.findByEndDateTimeGreaterThanEqual(from);
+
+            Map<Integer, List<ProductDiscount>> grouped = new HashMap<>();
+            for (ProductDiscount discount : discounts) {
+                grouped.computeIfAbsent(discount.getCompanyId(), k -> new ArrayList<>()).add(discount);
+            }
+
+            Map<Integer, Interval[]> newCompanyIntervals = new ConcurrentHashMap<>();
+            grouped.forEach((companyId, list) -> newCompanyIntervals.put(companyId, toIntervals(list)));
+
+            companyIntervals = newCompanyIntervals;
+            ready = true;
+            log.debug("DiscountCalendar reloaded: {} companies, {} discounts", newCompanyIntervals.size(), discounts.size());
+        } catch (Exception e) {
+            log.error("DiscountCalendar reload failed", e);
+        }
+    }
+
+    /**
+     * 取得商家在 [startDate, endDate) 每一晚的最低折扣 (沒有折扣時為1.0)
+     * 結果與 OrderUtil.getDiscountByCompanyIdBetweenStartDateAnEndDate 相同
+     */
+    public List<Double> getDiscounts(Integer companyId, Date startDate, Date endDate) {
+        if (!ready) {
+            return getDiscounts(toIntervals(productDiscountDao.findByCompanyId(companyId)), startDate, endDate);
+        }
+        return getDiscounts(companyIntervals.getOrDefault(companyId, EMPTY), startDate, endDate);
+    }
+
+    /**
+     * 批次版本: 商家編號 -> 每一晚的最低折扣
+     */
+    public Map<Integer, List<Double>> getDiscounts(Collection<Integer> companyIds, Date startDate, Date endDate) {
+        Map<Integer, Interval[]> snapshot = ready ? companyIntervals : loadIntervals(companyIds);
+        Map<Integer, List<Double>> res = new HashMap<>();
+        for (Integer companyId : companyIds) {
+            res.put(companyId, getDiscounts(snapshot.getOrDefault(companyId, EMPTY), startDate, endDate));
+        }
+        return res;
+    }
+
+    /**
+     * 指定日期當晚有折扣的商家, 依最低折扣由低到高排序
+     * 結果與 SearchDao.getDiscountCompanyIds 相同 (不限筆數)
+     *
+     * @return 商家編號; 尚未載入完成時回傳null (呼叫端需退回資料庫查詢)
+     */
+    public List<Integer> getDiscountCompanyIds(Date date) {
+        if (!ready) return null;
+        long day = date.toLocalDate().toEpochDay();
+
+        Map<Integer, Double> minRates = new HashMap<>();
+        companyIntervals.forEach((companyId, intervals) -> {
+            for (Interval interval : intervals) {
+                if (interval.firstDay > day) break;
+                if (interval.lastDay < day) continue;
+                minRates.merge(companyId, interval.rate, Math::min);
+            }
+        });
+
+        List<Integer> companyIds = new ArrayList<>(minRates.keySet());
+        companyIds.sort(Comparator.comparingDouble((Integer companyId) -> minRates.get(companyId)).thenComparing(companyId -> companyId));
+        return companyIds;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void handleDiscountUpdateEvent(DiscountUpdateEvent event) {
+        if (!ready || event.getCompanyId() == null) return;
+
+        Interval[] intervals = toIntervals(productDiscountDao.findByCompanyId(event.getCompanyId()));
+        if (intervals.length == 0) {
+            companyIntervals.remove(event.getCompanyId());
+        } else {
+            companyIntervals.put(event.getCompanyId(), intervals);
+        }
+    }
+
+    // 尚未載入完成時, 只查詢這次需要的商家
+    private Map<Integer, Interval[]> loadIntervals(Collection<Integer> companyIds) {
+        if (companyIds.isEmpty()) return Collections.emptyMap();
+        Map<Integer, List<ProductDiscount>> grouped = new HashMap<>();
+        for (ProductDiscount discount : productDiscountDao.findByCompanyIdIn(companyIds)) {
+            grouped.computeIfAbsent(discount.getCompanyId(), k -> new ArrayList<>()).add(discount);
+        }
+        Map<Integer, Interval[]> res = new HashMap<>();
+        grouped.forEach((companyId, list) -> res.put(companyId, toIntervals(list)));
+        return res;
+    }
+
+    private static List<Double> getDiscounts(Interval[] intervals, Date startDate, Date endDate) {
+        long startDay = startDate.toLocalDate().toEpochDay();
+        int nights = (int) Math.max(endDate.toLocalDate().toEpochDay() - startDay, 0);
+
+        double[] rates = new double[nights];
+        Arrays.fill(rates, Double.NaN);
+        for (Interval interval : intervals) {
+            if (interval.firstDay >= startDay + nights) break;     // 依開始日排序, 之後的區間都不會重疊
+            int from = (int) Math.max(interval.firstDay - startDay, 0);
+            int to = (int) Math.min(interval.lastDay - startDay, nights - 1L);
+            for (int i = from; i <= to; i++) {
+                if (Double.isNaN(rates[i]) || interval.rate < rates[i]) rates[i] = interval.rate;
+            }
+        }
+
+        List<Double> res = new ArrayList<>(nights);
+        for (double rate : rates) {
+            res.add(Double.isNaN(rate) ? 1.0 : rate);
+        }
+        return res;
+    }
+
+    private static Interval[] toIntervals(List<ProductDiscount> discounts) {
+        List<Interval> intervals = new ArrayList<>(discounts.size());
+        for (ProductDiscount discount : discounts) {
+            if (discount.getStartDateTime() == null || discount.getEndDateTime() == null || discount.getDiscountRate() == null) {
+                continue;
+            }
+            LocalDateTime start = discount.getStartDateTime().toLocalDateTime();
+            LocalDateTime end = discount.getEndDateTime().toLocalDateTime();
+            long firstDay = start.toLocalDate().toEpochDay();
+            if (!start.toLocalTime().equals(LocalTime.MIDNIGHT)) firstDay++;
+            long lastDay = end.toLocalDate().toEpochDay();
+            if (firstDay > lastDay) continue;
+            intervals.add(new Interval(firstDay, lastDay, discount.getDiscountRate()));
+        }
+        intervals.sort(Comparator.comparingLong((Interval interval) -> interval.firstDay));
+        return intervals.toArray(EMPTY);
+    }
+
+    private static class Interval {
+        final long firstDay;    // 第一個涵蓋的晚上 (epoch day)
+        final long lastDay;     // 最後一個涵蓋的晚上 (epoch day)
+        final double rate;
+
+        Interval(long firstDay, long lastDay, double rate) {
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+            this.rate = rate;
+        }
+    }
+}
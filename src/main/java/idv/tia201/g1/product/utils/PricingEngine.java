@@ -0,0 +1,310 @@
+package idv.tia201.g1.product.utils;
+
+import idv.tia201.g1.product.dao.ProductDao;
+import idv.tia201.g1.product.dto.PriceQuote;
+import idv.tia201.g1.product.entity.Product;
+import idv.tia201.g1.product.event.ProductUpdateEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.Date;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static idv.tia201.g1.core.utils.Constants.QUOTE_SECRET_KEY;
+
+@Slf4j
+@Component
+public class PricingEngine {
+    // 計價設計思路:
+    //      原本價格有三種算法: 建立訂單 (SQL 加總 + 每晚折扣), 搜尋結果 (最低組合 x 折扣), 商家頁面 (覆寫 ProductCalculation.price),
+    //      捨去方式不同, 搜尋看到的價格與結帳金額可能差 1 元
+    //      統一由此計算: 商品價格保存在記憶體 (定期重建, 商品異動時透過事件更新), 折扣來自 DiscountCalendar, 不需要查詢資料庫
+    // 計算規則 (與原本建立訂單相同):
+    //      每晚原價 = sum(商品價格 x 數量), 折扣後 = round(每晚原價 x sum(當晚折扣)),
+    //      折扣總和先取到小數點後 6 位再以整數運算四捨五入, 逐晚加總與搜尋的前綴和相減結果一致 (不受浮點誤差影響)
+    //      服務費 = round(折扣後 x 10%), 稅金 = round(折扣後 x 5%), 實際金額 = 折扣後 + 服務費 + 稅金
+    // 報價簽章:
+    //      報價內容以 HMAC-SHA256 簽章成 token (內容.簽章), 結帳時驗證通過且條件相同即沿用, 不需要重新計算
+    //      token 不需要保存在伺服器, 可以隨搜尋結果一起緩存; 金鑰未設定時由所有節點共用 Redis 中隨機產生的金鑰
+
+    private static final double SERVICE_FEE_PERCENT = 0.10;
+    private static final double TAX_PERCENT = 0.05;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final long RATE_SCALE = 1_000_000L;      // 折扣總和的精確度 (小數點後 6 位)
+    private static final DefaultRedisScript<String> INIT_SECRET_SCRIPT = new DefaultRedisScript<>();
+
+    static {
+        INIT_SECRET_SCRIPT.setLocation(new ClassPathResource("lua/initQuoteSecret.lua"));
+        INIT_SECRET_SCRIPT.setResultType(String.class);
+    }
+
+    private final ProductDao productDao;
+    private final DiscountCalendar discountCalendar;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${pricing.quote.ttl:900}")
+    private long quoteTtl;
+    @Value("${pricing.quote.secret:}")
+    private String configuredSecret;
+
+    private volatile Map<Integer, ProductPrice> priceMap = new ConcurrentHashMap<>();
+    private volatile SecretKeySpec secretKey = null;
+
+    public PricingEngine(ProductDao productDao, DiscountCalendar discountCalendar, StringRedisTemplate stringRedisTemplate) {
+        this.productDao = productDao;
+        this.discountCalendar = discountCalendar;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 從資料庫重新載入所有商品的價格 (啟動時執行, 之後定期校正)
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 5, timeUnit = TimeUnit.MINUTES)
+    public void reload() {
+        try {
+            Map<Integer, ProductPrice> newPriceMap = new ConcurrentHashMap<>();
+            for (Product product : productDao.findAll()) {
+                newPriceMap.put(product.getProductId(), new ProductPrice(product));
+            }
+            priceMap = newPriceMap;
+            log.debug("PricingEngine reloaded: {} products", newPriceMap.size());
+        } catch (Exception e) {
+            // 載入失敗時保留舊資料 (找不到的商品會個別查詢資料庫)
+            log.error("PricingEngine reload failed", e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleProductUpdateEvent(ProductUpdateEvent event) {
+        Product product = event.getProduct();
+        if (product.getProductId() == null) return;
+        if (event.getType() == ProductUpdateEvent.Type.DELETED) {
+            priceMap.remove(product.getProductId());
+        } else {
+            priceMap.put(product.getProductId(), new ProductPrice(product));
+        }
+    }
+
+    /**
+     * 每晚價格乘上當晚折扣後的總價 (四捨五入)
+     * 搜尋結果, 商家頁面, 結帳共用的計算方式
+     */
+    public int discountedTotal(int nightlyPrice, List<Double> discounts) {
+        double rateSum = 0.0;
+        for (Double discount : discounts) {
+            rateSum += discount;
+        }
+        return discountedTotal(nightlyPrice, rateSum);
+    }
+
+    /**
+     * 每晚價格乘上折扣總和 (入住期間每晚折扣的加總) 後四捨五入
+     * 與 discountedTotal(nightlyPrice, discounts) 相同, 供已經算好折扣總和的呼叫端 (前綴和) 使用
+     */
+    public int discountedTotal(int nightlyPrice, double rateSum) {
+        long scaledRate = Math.round(rateSum * RATE_SCALE);
+        long scaledTotal = nightlyPrice * scaledRate;
+        return (int) Math.floorDiv(scaledTotal + RATE_SCALE / 2, RATE_SCALE);
+    }
+
+    /**
+     * 計算完整報價並簽章
+     *
+     * @param companyId     商家編號
+     * @param productCounts 商品編號 -> 每晚的數量
+     * @throws IllegalArgumentException 日期或商品不正確時 (商品不存在或不屬於該商家)
+     */
+    public PriceQuote quote(Integer companyId, Map<Integer, Integer> productCounts, Date startDate, Date endDate) {
+        if (companyId == null || startDate == null || endDate == null) {
+            throw new IllegalArgumentException("商家與入住日期不可為空");
+        }
+        int nights = (int) (endDate.toLocalDate().toEpochDay() - startDate.toLocalDate().toEpochDay());
+        if (nights <= 0) {
+            throw new IllegalArgumentException("退房日期需晚於入住日期");
+        }
+        if (productCounts == null || productCounts.isEmpty()) {
+            throw new IllegalArgumentException("請選擇房型");
+        }
+
+        Map<Integer, ProductPrice> prices = getPrices(productCounts.keySet());
+        int nightlyPrice = 0;
+        for (Map.Entry<Integer, Integer> entry : productCounts.entrySet()) {
+            ProductPrice price = prices.get(entry.getKey());
+            if (price == null || !companyId.equals(price.companyId)) {
+                throw new IllegalArgumentException("房型不存在: " + entry.getKey());
+            }
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalArgumentException("房間數量不正確: " + entry.getKey());
+            }
+            nightlyPrice += price.price * entry.getValue();
+        }
+
+        List<Double> discounts = discountCalendar.getDiscounts(companyId, startDate, endDate);
+        int fullPrice = nightlyPrice * nights;
+        int discountedPrice = discountedTotal(nightlyPrice, discounts);
+        int serviceFee = (int) Math.round(discountedPrice * SERVICE_FEE_PERCENT);
+        int tax = (int) Math.round(discountedPrice * TAX_PERCENT);
+
+        PriceQuote quote = new PriceQuote();
+        quote.setCompanyId(companyId);
+        quote.setStartDate(startDate);
+        quote.setEndDate(endDate);
+        quote.setNights(nights);
+        quote.setProducts(new TreeMap<>(productCounts));
+        quote.setFullPrice(fullPrice);
+        quote.setDiscount(fullPrice - discountedPrice);
+        quote.setServiceFee(serviceFee);
+        quote.setTax(tax);
+        quote.setActualPrice(discountedPrice + serviceFee + tax);
+        quote.setExpiresAt(System.currentTimeMillis() + quoteTtl * 1000);
+        quote.setToken(sign(quote));
+        return quote;
+    }
+
+    /**
+     * 驗證報價 token
+     *
+     * @return 簽章正確且尚未過期時回傳報價內容, 否則回傳null
+     */
+    public PriceQuote verify(String token) {
+        if (token == null) return null;
+        int dot = token.indexOf('.');
+        if (dot < 0) return null;
+
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, dot));
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(hmac(payload), signature)) return null;
+
+            PriceQuote quote = parse(new String(payload, StandardCharsets.UTF_8));
+            if (quote.getExpiresAt() < System.currentTimeMillis()) return null;
+            quote.setToken(token);
+            return quote;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private Map<Integer, ProductPrice> getPrices(Collection<Integer> productIds) {
+        Map<Integer, ProductPrice> snapshot = priceMap;
+        Map<Integer, ProductPrice> res = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer productId : productIds) {
+            ProductPrice price = snapshot.get(productId);
+            if (price != null) res.put(productId, price);
+            else missing.add(productId);
+        }
+
+        // 其他節點新增的商品, 在下次重建前個別查詢
+        if (!missing.isEmpty()) {
+            for (Product product : productDao.findAllById(missing)) {
+                ProductPrice price = new ProductPrice(product);
+                snapshot.put(product.getProductId(), price);
+                res.put(product.getProductId(), price);
+            }
+        }
+        return res;
+    }
+
+    // 簽章內容: 商家|入住|退房|商品:數量,...|原價|折扣|服務費|稅金|實際金額|有效期限
+    private String sign(PriceQuote quote) {
+        StringJoiner products = new StringJoiner(",");
+        quote.getProducts().forEach((productId, count) -> products.add(productId + ":" + count));
+
+        String payload = String.join("|",
+                quote.getCompanyId().toString(),
+                quote.getStartDate().toString(),
+                quote.getEndDate().toString(),
+                products.toString(),
+                quote.getFullPrice().toString(),
+                quote.getDiscount().toString(),
+                quote.getServiceFee().toString(),
+                quote.getTax().toString(),
+                quote.getActualPrice().toString(),
+                quote.getExpiresAt().toString());
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(bytes) + "." + encoder.encodeToString(hmac(bytes));
+    }
+
+    private static PriceQuote parse(String payload) {
+        String[] parts = payload.split("\\|", -1);
+        if (parts.length != 10) throw new IllegalArgumentException("報價格式錯誤");
+
+        Map<Integer, Integer> products = new TreeMap<>();
+        for (String item : parts[3].split(",")) {
+            String[] pair = item.split(":");
+            if (pair.length != 2) throw new IllegalArgumentException("報價格式錯誤");
+            products.put(Integer.valueOf(pair[0]), Integer.valueOf(pair[1]));
+        }
+
+        PriceQuote quote = new PriceQuote();
+        quote.setCompanyId(Integer.valueOf(parts[0]));
+        quote.setStartDate(Date.valueOf(parts[1]));
+        quote.setEndDate(Date.valueOf(parts[2]));
+        quote.setNights((int) (quote.getEndDate().toLocalDate().toEpochDay() - quote.getStartDate().toLocalDate().toEpochDay()));
+        quote.setProducts(products);
+        quote.setFullPrice(Integer.valueOf(parts[4]));
+        quote.setDiscount(Integer.valueOf(parts[5]));
+        quote.setServiceFee(Integer.valueOf(parts[6]));
+        quote.setTax(Integer.valueOf(parts[7]));
+        quote.setActualPrice(Integer.valueOf(parts[8]));
+        quote.setExpiresAt(Long.valueOf(parts[9]));
+        return quote;
+    }
+
+    private byte[] hmac(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(getSecretKey());
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("報價簽章失敗", e);
+        }
+    }
+
+    // 設定檔沒有金鑰時, 使用 Redis 中所有節點共用的隨機金鑰 (第一個節點產生)
+    // 讀取與寫入在同一個腳本中完成: 連線設定優先讀取副本, 分開 SETNX / GET 可能讀到尚未同步的副本而取得空值
+    private SecretKeySpec getSecretKey() {
+        SecretKeySpec key = secretKey;
+        if (key != null) return key;
+
+        synchronized (this) {
+            if (secretKey != null) return secretKey;
+            String secret = configuredSecret;
+            if (secret == null || secret.isBlank()) {
+                byte[] random = new byte[32];
+                new SecureRandom().nextBytes(random);
+                secret = stringRedisTemplate.execute(INIT_SECRET_SCRIPT, List.of(QUOTE_SECRET_KEY), Base64.getEncoder().encodeToString(random));
+                if (secret == null) throw new IllegalStateException("無法取得報價金鑰");
+            }
+            secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+            return secretKey;
+        }
+    }
+
+    private static class ProductPrice {
+        final Integer companyId;
+        final int price;
+
+        ProductPrice(Product product) {
+            this.companyId = product.getCompanyId();
+            this.price = product.getPrice() == null ? 0 : product.getPrice();
+        }
+    }
+}
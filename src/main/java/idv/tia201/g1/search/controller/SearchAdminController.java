@@ -0,0 +1,29 @@
+package idv.tia201.g1.search.controller;
+
+import idv.tia201.g1.core.dto.Result;
+import idv.tia201.g1.search.utils.SearchAnalytics;
+import idv.tia201.g1.search.utils.SearchMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/search")
+public class SearchAdminController {
+    @Autowired
+    private SearchMetrics searchMetrics;
+    @Autowired
+    private SearchAnalytics searchAnalytics;
+
+    @GetMapping("metrics")
+    public Result getMetrics() {
+        return Result.ok(searchMetrics.snapshot());
+    }
+
+    @GetMapping("analytics")
+    public Result getAnalytics(@RequestParam(defaultValue = "20") Integer top) {
+        return Result.ok(searchAnalytics.snapshot(top));
+    }
+}
@@ -1,21 +1,39 @@
 package idv.tia201.g1.search.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import idv.tia201.g1.core.dto.Result;
+import idv.tia201.g1.order.dto.CreateOrderRequest;
+import idv.tia201.g1.product.dto.PriceQuote;
+import idv.tia201.g1.search.dto.FlexibleSearchRequest;
+import idv.tia201.g1.search.dto.FlexibleSearchResponse;
+import idv.tia201.g1.search.dto.PriceCalendarResponse;
 import idv.tia201.g1.search.dto.SearchProductResponse;
 import idv.tia201.g1.search.dto.SearchRequest;
 import idv.tia201.g1.search.dto.SearchResponse;
+import idv.tia201.g1.search.dto.SearchStreamFrame;
+import idv.tia201.g1.search.dto.SearchStreamSummary;
+import idv.tia201.g1.search.dto.SuggestResponse;
 import idv.tia201.g1.search.service.SearchService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/search")
 public class SearchController {
     @Autowired
     private SearchService searchService;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @GetMapping
     public Result search(SearchRequest searchRequest) {
@@ -23,15 +41,84 @@ public class SearchController {
         return Result.ok(search.getContent(), search.getTotalElements());
     }
 
+    /**
+     * 串流搜尋 (NDJSON): 每計算完一個商家就送出一行 result, 最後送出 summary (總筆數與排序後的商家編號)
+     * 不套用篩選條件, 篩選請使用一般搜尋
+     */
+    @GetMapping(value = "stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSearch(SearchRequest searchRequest) {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                SearchStreamSummary summary = searchService.streamSearch(searchRequest, response -> {
+                    try {
+                        writeFrame(outputStream, SearchStreamFrame.result(response));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writeFrame(outputStream, SearchStreamFrame.summary(summary));
+            } catch (IllegalArgumentException e) {
+                writeFrame(outputStream, SearchStreamFrame.error(e.getMessage()));
+            } catch (UncheckedIOException e) {
+                // 用戶端中斷連線
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping("flexible")
+    public Result flexibleSearch(FlexibleSearchRequest flexibleSearchRequest) {
+        Page<FlexibleSearchResponse> search = searchService.flexibleSearch(flexibleSearchRequest);
+        return Result.ok(search.getContent(), search.getTotalElements());
+    }
+
+    @GetMapping("suggest")
+    public Result suggest(@RequestParam String keyword, @RequestParam(required = false) Integer size) {
+        List<SuggestResponse> suggestions = searchService.suggest(keyword, size);
+        return Result.ok(suggestions);
+    }
+
+    @GetMapping("facets")
+    public Result getFacets(SearchRequest searchRequest) {
+        Map<String, Integer> facets = searchService.getFacets(searchRequest);
+        return Result.ok(facets);
+    }
+
     @GetMapping("{companyId}")
     public Result getProductList(@PathVariable Integer companyId, SearchRequest searchRequest) {
         List<SearchProductResponse> productResponses = searchService.searchProductListByCompanyId(companyId, searchRequest);
         return Result.ok(productResponses);
     }
 
+    @GetMapping("{companyId}/calendar")
+    public Result getPriceCalendar(@PathVariable Integer companyId, @RequestParam String month) {
+        PriceCalendarResponse calendar = searchService.getPriceCalendar(companyId, month);
+        return Result.ok(calendar);
+    }
+
+    @PostMapping("quote")
+    public Result getQuote(@RequestBody CreateOrderRequest quoteRequest) {
+        try {
+            PriceQuote quote = searchService.getQuote(quoteRequest);
+            return Result.ok(quote);
+        } catch (IllegalArgumentException e) {
+            return Result.fail(e.getMessage());
+        }
+    }
+
     @DeleteMapping("delete-cache")
     public Result deleteCache(@RequestBody SearchRequest searchRequest) {
         searchService.deleteSearchCache(searchRequest);
         return Result.ok();
     }
+
+    // 每個 frame 一行, 寫完立即送出
+    private void writeFrame(OutputStream outputStream, SearchStreamFrame frame) throws IOException {
+        outputStream.write(objectMapper.writeValueAsBytes(frame));
+        outputStream.write('\n');
+        outputStream.flush();
+    }
 }
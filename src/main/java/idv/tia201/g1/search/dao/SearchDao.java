@@ -15,6 +15,8 @@ public interface SearchDao {
 
     SearchResponse getDetailsByProductIds(List<Integer> productIds);
 
+    Map<Integer, SearchResponse> getDetailsByCompanyProductIds(Map<Integer, List<Integer>> companyProductIds);
+
     List<Integer> getHotCompanyIds(Integer size);
 
     List<Integer> getRandCompanyIds(Integer size);
@@ -12,8 +12,10 @@ import java.math.BigDecimal;
 import java.sql.Date;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Repository
 public class SearchDaoImpl implements SearchDao {
@@ -115,6 +117,63 @@ public class SearchDaoImpl implements SearchDao {
         return response;
     }
 
+    @Override
+    public Map<Integer, SearchResponse> getDetailsByCompanyProductIds(Map<Integer, List<Integer>> companyProductIds) {
+        Map<Integer, SearchResponse> responseMap = new HashMap<>();
+        if (companyProductIds.isEmpty()) return responseMap;
+
+        // 一次查出所有商家選中房型的詳細資訊, 再依商家分組計算 (結果等同每個商家各自呼叫 getDetailsByProductIds)
+        Set<Integer> productIds = new HashSet<>();
+        companyProductIds.values().forEach(productIds::addAll);
+
+        String queryStr = "SELECT " +
+                "   pd.product_id, " +
+                "   pd.includes_breakfast, " +
+                "   pd.allow_date_changes, " +
+                "   pd.allow_free_cancellation, " +
+                "   pd.is_refundable " +
+                "FROM product_details pd " +
+                "WHERE pd.product_id IN :productIds";
+
+        Query query = entityManager.createNativeQuery(queryStr);
+        query.setParameter("productIds", productIds);
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> results = query.getResultList();
+
+        Map<Integer, Object[]> detailMap = new HashMap<>();
+        for (Object[] row : results) {
+            detailMap.put(((Number) row[0]).intValue(), row);
+        }
+
+        for (Map.Entry<Integer, List<Integer>> entry : companyProductIds.entrySet()) {
+            // MIN(...) 只計算有詳細資訊的房型, 全部都沒有時為 false
+            boolean found = false;
+            boolean includesBreakfast = true;
+            boolean allowDateChanges = true;
+            boolean allowFreeCancellation = true;
+            boolean isRefundable = true;
+            for (Integer productId : entry.getValue()) {
+                Object[] row = detailMap.get(productId);
+                if (row == null) continue;
+                found = true;
+                includesBreakfast &= toBoolean(row[1]);
+                allowDateChanges &= toBoolean(row[2]);
+                allowFreeCancellation &= toBoolean(row[3]);
+                isRefundable &= toBoolean(row[4]);
+            }
+
+            SearchResponse response = new SearchResponse();
+            response.setIncludesBreakfast(found && includesBreakfast);
+            response.setAllowDateChanges(found && allowDateChanges);
+            response.setAllowFreeCancellation(found && allowFreeCancellation);
+            response.setIsRefundable(found && isRefundable);
+            responseMap.put(entry.getKey(), response);
+        }
+
+        return responseMap;
+    }
+
     @Override
     public List<Integer> getHotCompanyIds(Integer size) {
         String queryStr = "SELECT cm.company_id " +
@@ -180,6 +239,11 @@ public class SearchDaoImpl implements SearchDao {
         return companyIds;
     }
 
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Boolean bool) return bool;
+        return value != null && ((Number) value).intValue() == 1;
+    }
+
     // 封裝轉換用回傳格式
     private static ProductCalculation getProductCalculation(Object[] res) {
         Integer productId = (Integer) res[1];
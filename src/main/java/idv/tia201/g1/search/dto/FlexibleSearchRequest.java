@@ -0,0 +1,18 @@
+package idv.tia201.g1.search.dto;
+
+import lombok.Data;
+
+import java.sql.Date;
+
+@Data
+public class FlexibleSearchRequest {
+    private Integer adultCount;
+    private Integer roomCount;
+    private String destination;
+    private Integer nights;     // 入住晚數
+    private Date fromDate;      // 可入住的最早日期 (預設為今天)
+    private Date toDate;        // 最晚的退房日期 (預設為最早日期加30天)
+
+    private Integer page = 0;
+    private Integer size = 20;
+}
@@ -0,0 +1,14 @@
+package idv.tia201.g1.search.dto;
+
+import lombok.Data;
+
+import java.sql.Date;
+
+@Data
+public class PriceCalendarDay {
+    private Date date;
+    private Integer minPrice;           // 當晚有空房的商品中最低的折扣後價格 (沒有空房時為null)
+    private Double discount;            // 當晚的折扣 (1.0 表示沒有折扣)
+    private int[] remainingRooms;       // 每個商品的剩餘房間數 (與 products 的順序相同)
+    private int[] prices;               // 每個商品的折扣後價格 (與 products 的順序相同)
+}
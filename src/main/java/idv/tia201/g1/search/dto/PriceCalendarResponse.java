@@ -0,0 +1,13 @@
+package idv.tia201.g1.search.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class PriceCalendarResponse {
+    private Integer companyId;
+    private String month;                           // yyyy-MM
+    private List<ProductCalculation> products;      // 商品 (price 為原價, remainingRooms 不使用)
+    private List<PriceCalendarDay> days;            // 每一天 (已過去的日期沒有資料)
+}
@@ -0,0 +1,16 @@
+package idv.tia201.g1.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductAvailability {
+    private Integer productId;          // 商品編號
+    private String productName;
+    private Integer maxOccupancy;       // 幾人房
+    private Integer price;              // 價格 (原價)
+    private int[] remainingRooms;       // 每一晚的剩餘房間數量 (從查詢的開始日期算起)
+}
@@ -0,0 +1,58 @@
+package idv.tia201.g1.search.dto;
+
+import lombok.Getter;
+
+import java.util.function.Predicate;
+
+/**
+ * 搜尋結果的篩選條件 (在緩存中以 bitset 記錄每一筆是否符合)
+ */
+@Getter
+public enum SearchFacet {
+    BREAKFAST("includesBreakfast", r -> Boolean.TRUE.equals(r.getIncludesBreakfast())),
+    FREE_CANCELLATION("allowFreeCancellation", r -> Boolean.TRUE.equals(r.getAllowFreeCancellation())),
+    REFUNDABLE("isRefundable", r -> Boolean.TRUE.equals(r.getIsRefundable())),
+    DATE_CHANGES("allowDateChanges", r -> Boolean.TRUE.equals(r.getAllowDateChanges())),
+    PROMOTION("isPromotion", r -> Boolean.TRUE.equals(r.getIsPromotion())),
+
+    // 價格區間 (整段住宿的總價), 對應 SearchRequest.priceBands 的 0 ~ 4
+    PRICE_BAND_0("priceBand0", r -> price(r) < 2000),
+    PRICE_BAND_1("priceBand1", r -> price(r) >= 2000 && price(r) < 4000),
+    PRICE_BAND_2("priceBand2", r -> price(r) >= 4000 && price(r) < 6000),
+    PRICE_BAND_3("priceBand3", r -> price(r) >= 6000 && price(r) < 10000),
+    PRICE_BAND_4("priceBand4", r -> price(r) >= 10000),
+
+    // 評分門檻 (累計), 對應 SearchRequest.minScore 的 6 ~ 9
+    SCORE_6("score6", r -> score(r) >= 6),
+    SCORE_7("score7", r -> score(r) >= 7),
+    SCORE_8("score8", r -> score(r) >= 8),
+    SCORE_9("score9", r -> score(r) >= 9);
+
+    public static final int PRICE_BAND_COUNT = 5;
+    public static final int MIN_SCORE_FLOOR = 6;
+    public static final int MIN_SCORE_CEIL = 9;
+
+    private final String key;
+    private final Predicate<SearchResponse> predicate;
+
+    SearchFacet(String key, Predicate<SearchResponse> predicate) {
+        this.key = key;
+        this.predicate = predicate;
+    }
+
+    public static SearchFacet priceBand(int band) {
+        return values()[PRICE_BAND_0.ordinal() + band];
+    }
+
+    public static SearchFacet minScore(int score) {
+        return values()[SCORE_6.ordinal() + score - MIN_SCORE_FLOOR];
+    }
+
+    private static int price(SearchResponse response) {
+        return response.getPrice() == null ? 0 : response.getPrice();
+    }
+
+    private static float score(SearchResponse response) {
+        return response.getScore() == null ? 0 : response.getScore();
+    }
+}
@@ -3,6 +3,7 @@ package idv.tia201.g1.search.dto;
 import lombok.Data;
 
 import java.sql.Date;
+import java.util.List;
 
 @Data
 public class SearchRequest {
@@ -17,4 +18,13 @@ public class SearchRequest {
     private Integer size = 20;
     private String orderBy;
     private Boolean isDesc = false;
+
+    // 篩選條件 (只套用在緩存的搜尋結果上, 不影響緩存)
+    private Boolean includesBreakfast;      // 只顯示包含早餐
+    private Boolean allowFreeCancellation;  // 只顯示免費取消
+    private Boolean isRefundable;           // 只顯示可退款
+    private Boolean allowDateChanges;       // 只顯示可修改日期
+    private Boolean isPromotion;            // 只顯示促銷中
+    private List<Integer> priceBands;       // 價格區間 (0 ~ 4, 可複選)
+    private Integer minScore;               // 最低評分 (6 ~ 9)
 }
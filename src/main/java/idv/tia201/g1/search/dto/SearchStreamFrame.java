@@ -0,0 +1,30 @@
+package idv.tia201.g1.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchStreamFrame {
+    public static final String TYPE_RESULT = "result";
+    public static final String TYPE_SUMMARY = "summary";
+    public static final String TYPE_ERROR = "error";
+
+    private String type;        // result / summary / error
+    private Object data;
+    private String errorMsg;
+
+    public static SearchStreamFrame result(SearchResponse response) {
+        return new SearchStreamFrame(TYPE_RESULT, response, null);
+    }
+
+    public static SearchStreamFrame summary(SearchStreamSummary summary) {
+        return new SearchStreamFrame(TYPE_SUMMARY, summary, null);
+    }
+
+    public static SearchStreamFrame error(String errorMsg) {
+        return new SearchStreamFrame(TYPE_ERROR, null, errorMsg);
+    }
+}
@@ -0,0 +1,18 @@
+package idv.tia201.g1.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchStreamSummary {
+    private Integer total;              // 總筆數
+    private String orderBy;             // 排序欄位
+    private Boolean isDesc;             // 是否反向排序
+    private List<Integer> companyIds;   // 依排序方式排列的商家編號 (前端依此重新排列已收到的結果)
+    private Boolean cached;             // 是否來自緩存 (來自緩存時已依排序方式傳送)
+}
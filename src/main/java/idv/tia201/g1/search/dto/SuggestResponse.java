@@ -0,0 +1,14 @@
+package idv.tia201.g1.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestResponse {
+    private String text;            // 建議的目的地文字
+    private String type;            // city / country / company
+    private Integer companyCount;   // 符合的商家數量
+}
@@ -1,20 +1,48 @@
 package idv.tia201.g1.search.service;
 
+import idv.tia201.g1.order.dto.CreateOrderRequest;
+import idv.tia201.g1.product.dto.PriceQuote;
+import idv.tia201.g1.search.dto.FlexibleSearchRequest;
+import idv.tia201.g1.search.dto.FlexibleSearchResponse;
+import idv.tia201.g1.search.dto.PriceCalendarResponse;
 import idv.tia201.g1.search.dto.SearchProductResponse;
 import idv.tia201.g1.search.dto.SearchRequest;
 import idv.tia201.g1.search.dto.SearchResponse;
+import idv.tia201.g1.search.dto.SearchStreamSummary;
+import idv.tia201.g1.search.dto.SuggestResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface SearchService {
     @Transactional(readOnly = true)
     Page<SearchResponse> search(SearchRequest searchRequest);
 
+    @Transactional(readOnly = true)
+    SearchStreamSummary streamSearch(SearchRequest searchRequest, Consumer<SearchResponse> consumer);
+
+    @Transactional(readOnly = true)
+    Page<FlexibleSearchResponse> flexibleSearch(FlexibleSearchRequest flexibleSearchRequest);
+
+    List<SuggestResponse> suggest(String keyword, Integer size);
+
+    @Transactional(readOnly = true)
+    Map<String, Integer> getFacets(SearchRequest searchRequest);
+
     @Transactional(readOnly = true)
     List<SearchProductResponse> searchProductListByCompanyId(Integer companyId, SearchRequest searchRequest);
 
+    @Transactional(readOnly = true)
+    PriceCalendarResponse getPriceCalendar(Integer companyId, String month);
+
+    PriceQuote getQuote(CreateOrderRequest quoteRequest);
+
+    @Transactional(readOnly = true)
+    boolean refreshSearchCache(SearchRequest searchRequest);
+
     @Transactional
     void deleteSearchCache(SearchRequest searchRequest);
 }
\ No newline at end of file
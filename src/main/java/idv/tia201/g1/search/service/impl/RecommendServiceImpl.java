@@ -6,6 +6,7 @@ import idv.tia201.g1.member.service.CompanyManagerService;
 import idv.tia201.g1.search.dao.SearchDao;
 import idv.tia201.g1.search.dto.RecommendCompanyDTO;
 import idv.tia201.g1.search.service.RecommendService;
+import idv.tia201.g1.search.utils.RecommendSnapshot;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -22,6 +23,8 @@ public class RecommendServiceImpl implements RecommendService {
     private CompanyReviewDao companyReviewDao;
     @Autowired
     private CompanyManagerService companyManagerService;
+    @Autowired
+    private RecommendSnapshot recommendSnapshot;
 
     private RecommendCompanyDTO getRecommendCompanyDTO (Integer companyId) {
         RecommendCompanyDTO recommendCompanyDTO = new RecommendCompanyDTO();
@@ -34,6 +37,10 @@ public class RecommendServiceImpl implements RecommendService {
 
     @Override
     public List<RecommendCompanyDTO> getHotCompany(Integer size) {
+        // 優先使用記憶體中的推薦快照, 尚未載入完成時才查詢資料庫
+        List<RecommendCompanyDTO> snapshot = recommendSnapshot.getHotCompanies(size);
+        if (snapshot != null) return snapshot;
+
         List<Integer> companyIds = searchDao.getHotCompanyIds(size);
 
         List<RecommendCompanyDTO> recommendCompanyDTOS = new ArrayList<>(size);
@@ -47,6 +54,9 @@ public class RecommendServiceImpl implements RecommendService {
 
     @Override
     public List<RecommendCompanyDTO> getDiscountCompany(Date date, Integer size) {
+        List<RecommendCompanyDTO> snapshot = recommendSnapshot.getDiscountCompanies(date, size);
+        if (snapshot != null) return snapshot;
+
         List<Integer> companyIds = searchDao.getDiscountCompanyIds(date, size);
 
         List<RecommendCompanyDTO> recommendCompanyDTOS = new ArrayList<>(size);
@@ -60,6 +70,10 @@ public class RecommendServiceImpl implements RecommendService {
 
     @Override
     public List<RecommendCompanyDTO> getRandCompany(Integer size) {
+        // 從記憶體中的商家編號抽樣, 不再使用 ORDER BY RAND()
+        List<RecommendCompanyDTO> snapshot = recommendSnapshot.getRandCompanies(size);
+        if (snapshot != null) return snapshot;
+
         List<Integer> companyIds = searchDao.getRandCompanyIds(size);
 
         List<RecommendCompanyDTO> recommendCompanyDTOS = new ArrayList<>(size);
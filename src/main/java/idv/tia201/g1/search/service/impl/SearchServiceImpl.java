@@ -1,25 +1,44 @@
 package idv.tia201.g1.search.service.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import idv.tia201.g1.member.dao.CompanyDao;
 import idv.tia201.g1.member.dao.CompanyPhotosDao;
 import idv.tia201.g1.member.dao.CompanyReviewDao;
 import idv.tia201.g1.member.entity.Company;
-import idv.tia201.g1.order.dao.OrderDao;
+import idv.tia201.g1.order.dto.CreateOrderRequest;
 import idv.tia201.g1.order.uitls.OrderUtil;
 import idv.tia201.g1.product.dao.ProductDetailsDao;
+import idv.tia201.g1.product.dto.PriceQuote;
 import idv.tia201.g1.product.entity.ProductDetails;
 import idv.tia201.g1.product.entity.ProductPhotos;
+import idv.tia201.g1.product.utils.DiscountCalendar;
+import idv.tia201.g1.product.utils.PricingEngine;
 import idv.tia201.g1.search.dao.SearchDao;
+import idv.tia201.g1.search.dto.FlexibleSearchRequest;
+import idv.tia201.g1.search.dto.FlexibleSearchResponse;
+import idv.tia201.g1.search.dto.PriceCalendarDay;
+import idv.tia201.g1.search.dto.PriceCalendarResponse;
+import idv.tia201.g1.search.dto.ProductAvailability;
 import idv.tia201.g1.search.dto.ProductCalculation;
+import idv.tia201.g1.search.dto.SearchFacet;
 import idv.tia201.g1.search.dto.SearchProductResponse;
 import idv.tia201.g1.search.dto.SearchRequest;
 import idv.tia201.g1.search.dto.SearchResponse;
+import idv.tia201.g1.search.dto.SearchStreamSummary;
+import idv.tia201.g1.search.dto.SuggestResponse;
 import idv.tia201.g1.search.service.SearchService;
+import idv.tia201.g1.search.utils.AvailabilityMatrix;
+import idv.tia201.g1.search.utils.DestinationIndex;
+import idv.tia201.g1.search.utils.SearchAnalytics;
+import idv.tia201.g1.search.utils.SearchCacheClient;
+import idv.tia201.g1.search.utils.SearchMetrics;
 import idv.tia201.g1.search.utils.SearchUtils;
+import idv.tia201.g1.search.utils.SearchWarmer;
+import idv.tia201.g1.search.utils.SuggestIndex;
 import org.springframework.beans.BeanUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -27,14 +46,37 @@ import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 import static idv.tia201.g1.core.utils.Constants.*;
 
 @Service
 public class SearchServiceImpl implements SearchService {
     private static final Long LOCK_TTL = 10L;
+    private static final Long RETRY_INTERVAL = 50L;
+    private static final Long MAX_RETRY_COUNT = LOCK_TTL * 1000 / RETRY_INTERVAL;
+    private static final int FLEXIBLE_DEFAULT_DAYS = 30;    // 彈性日期搜尋的預設區間
+    private static final int FLEXIBLE_MAX_DAYS = 90;        // 彈性日期搜尋的最大區間
+    private static final int MAX_ADULT_COUNT = 30;          // 單次搜尋的最大成人數 (房間分配的狀態數與此成正比)
+    private static final int MAX_ROOM_COUNT = 10;           // 單次搜尋的最大房間數
+    private static final int STREAM_CHUNK_SIZE = 16;        // 串流搜尋每次組合並送出的商家數
+
+    private final ConcurrentHashMap<String, CompletableFuture<SearchCacheClient.CachedSearchResult>> rebuildingSearches = new ConcurrentHashMap<>();
+
+    // 平行計算設定: 候選商家數達到門檻時, 分段交給固定大小的執行緒池計算 (效益以 SearchParallelBenchmark 依商家數量量測)
+    @Value("${search.parallel.enabled:false}")
+    private boolean parallelEnabled;
+    @Value("${search.parallel.threads:4}")
+    private int parallelThreads;
+    @Value("${search.parallel.threshold:64}")
+    private int parallelThreshold;
+
+    private ExecutorService searchExecutor;
 
     @Autowired
     private SearchDao searchDao;
@@ -45,17 +87,71 @@ public class SearchServiceImpl implements SearchService {
     @Autowired
     private CompanyReviewDao companyReviewDao;
     @Autowired
-    private OrderDao orderDao;
-    @Autowired
     private ProductDetailsDao productDetailsDao;
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
     @Autowired
-    private ObjectMapper objectMapper;
+    private AvailabilityMatrix availabilityMatrix;
+    @Autowired
+    private DestinationIndex destinationIndex;
+    @Autowired
+    private DiscountCalendar discountCalendar;
+    @Autowired
+    private PricingEngine pricingEngine;
+    @Autowired
+    private SearchCacheClient searchCacheClient;
+    @Autowired
+    private SearchMetrics searchMetrics;
+    @Autowired
+    private SuggestIndex suggestIndex;
+    @Autowired
+    private SearchWarmer searchWarmer;
+    @Autowired
+    private SearchAnalytics searchAnalytics;
+
+
+    @PostConstruct
+    public void init() {
+        parallelThreads = Math.max(parallelThreads, 1);
+        if (parallelEnabled) {
+            // 有界佇列, 滿載時由呼叫的執行緒自己計算
+            searchExecutor = new ThreadPoolExecutor(
+                    parallelThreads, parallelThreads,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(parallelThreads * 16),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
 
+    @PreDestroy
+    public void destroy() {
+        if (searchExecutor != null) {
+            searchExecutor.shutdown();
+        }
+    }
 
     @Override
     public Page<SearchResponse> search(SearchRequest request) {
+        Integer page = request.getPage();
+        Integer pageSize = request.getSize();
+
+        PageRequest pageRequest = PageRequest.of(page, pageSize);
+
+        SearchCacheClient.CachedSearchResult cached = getCachedResult(request);
+        long[] mask = toFilterMask(cached, request);
+
+        // 記錄搜尋熱度 (目的地自動完成的排序依據, 熱門搜尋的緩存預熱, 搜尋分析)
+        suggestIndex.recordSearch(request.getDestination());
+        searchWarmer.recordSearch(request);
+        searchAnalytics.recordSearch(request);
+
+        // 依照緩存中已排序好的索引分頁返回 (只反序列化該頁的資料)
+        List<SearchResponse> content = cached.getPage(request.getOrderBy(), request.getIsDesc(), page, pageSize, mask);
+        return new PageImpl<>(content, pageRequest, cached.count(mask));
+    }
+
+    @Override
+    public SearchStreamSummary streamSearch(SearchRequest request, Consumer<SearchResponse> consumer) {
         // 標準請求驗證
         validateRequest(request);
 
@@ -64,64 +160,213 @@ public class SearchServiceImpl implements SearchService {
             throw new IllegalArgumentException("目的地(destination)為必填項");
         }
 
+        int adultCount = request.getAdultCount();
+        int roomCount = request.getRoomCount();
+        Date startDate = request.getStartDate();
+        Date endDate = request.getEndDate();
+        String orderBy = request.getOrderBy();
+        Boolean isDesc = request.getIsDesc();
+        String key = toCacheKey(request);
+
+        suggestIndex.recordSearch(request.getDestination());
+        searchWarmer.recordSearch(request);
+        searchAnalytics.recordSearch(request);
+
+        // 有緩存時依排序方式逐筆反序列化並送出
+        SearchCacheClient.CachedSearchResult cached = searchCacheClient.get(key);
+        if (cached != null) {
+            searchMetrics.recordCacheHit();
+            return streamCached(cached, orderBy, isDesc, consumer);
+        }
+        searchMetrics.recordCacheMiss();
+
+        // 與一般搜尋共用重建的 single-flight 與分散式鎖:
+        // 同一台機器上已有相同搜尋正在重建, 或其他機器持有重建鎖時, 等待重建完成後由緩存送出
+        CompletableFuture<SearchCacheClient.CachedSearchResult> future = new CompletableFuture<>();
+        if (rebuildingSearches.putIfAbsent(key, future) != null) {
+            cached = rebuildSingleFlight(key, request.getDestination(), adultCount, roomCount, startDate, endDate);
+            return streamCached(cached, orderBy, isDesc, consumer);
+        }
+        try {
+            if (!tryLock(key)) {
+                cached = rebuildWithLock(key, request.getDestination(), adultCount, roomCount, startDate, endDate);
+                future.complete(cached);
+                return streamCached(cached, orderBy, isDesc, consumer);
+            }
+            try {
+                // 取得鎖成功 重新檢查是否已重建緩存
+                cached = searchCacheClient.get(key);
+                if (cached == null) {
+                    return streamAndCache(key, request, consumer, future);
+                }
+                future.complete(cached);
+            } finally {
+                unlock(key);
+            }
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            rebuildingSearches.remove(key, future);
+        }
+        return streamCached(cached, orderBy, isDesc, consumer);
+    }
 
-        Integer page = request.getPage();
-        Integer pageSize = request.getSize();
-
-        PageRequest pageRequest = PageRequest.of(page, pageSize);
+    private SearchStreamSummary streamCached(SearchCacheClient.CachedSearchResult cached, String orderBy, Boolean isDesc, Consumer<SearchResponse> consumer) {
+        List<Integer> companyIds = new ArrayList<>(cached.size());
+        for (int index : cached.order(orderBy, isDesc)) {
+            SearchResponse response = cached.get(index);
+            consumer.accept(response);
+            companyIds.add(response.getCompanyId());
+        }
+        return new SearchStreamSummary(companyIds.size(), orderBy, isDesc, companyIds, true);
+    }
 
+    private SearchStreamSummary streamAndCache(String key, SearchRequest request, Consumer<SearchResponse> consumer,
+                                               CompletableFuture<SearchCacheClient.CachedSearchResult> future) {
+        searchMetrics.recordRebuild();
         int adultCount = request.getAdultCount();
         int roomCount = request.getRoomCount();
         Date startDate = request.getStartDate();
         Date endDate = request.getEndDate();
-        String destination = request.getDestination();
 
-        String key = CACHE_SEARCH_PREFIX + destination + ":" + adultCount + ":" + roomCount + ":" + startDate + ":" + endDate;
+        // 用戶端中斷連線時停止送出, 但仍完成計算與緩存, 等待同一個結果的其他請求不受影響
+        RuntimeException[] consumerError = new RuntimeException[1];
+        Consumer<SearchResponse> guarded = response -> {
+            if (consumerError[0] != null) return;
+            try {
+                consumer.accept(response);
+            } catch (RuntimeException e) {
+                consumerError[0] = e;
+            }
+        };
 
-        List<SearchResponse> responses = getCachedResponses(key);
+        // 沒有緩存時, 每計算完一段商家就組合並送出, 不等待全部商家計算完成
+        List<Integer> companyIds = findCompanyIdsByDestination(request.getDestination());
+        Map<Integer, List<ProductCalculation>> productCalculations = companyIds.isEmpty()
+                ? new HashMap<>()
+                : getProductCalculations(companyIds, startDate, endDate);
 
-        // 緩存中不存在資料
-        if (responses.isEmpty()) {
-            // 嘗試取得鎖
-            while (!tryLock(key)) {
-                // 取得鎖成功失敗  休眠後重試
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
+        List<SearchResponse> responses = new ArrayList<>();
+        Map<Integer, SearchUtils.ProductSet> chunk = new LinkedHashMap<>();
+        for (Integer companyId : companyIds) {
+            List<ProductCalculation> products = productCalculations.get(companyId);
+            if (products == null) continue;
+
+            SearchUtils.ProductSet minCost = SearchUtils.evaluateCompany(products, adultCount, roomCount);
+            if (minCost == null) continue;
+
+            chunk.put(companyId, minCost);
+            if (chunk.size() >= STREAM_CHUNK_SIZE) {
+                emitChunk(chunk, startDate, endDate, responses, guarded);
             }
+        }
+        emitChunk(chunk, startDate, endDate, responses, guarded);
 
-            try {
-                // 取得鎖成功 重新檢查是否已重建緩存
-                responses = getCachedResponses(key);
+        // 全部送出後寫入緩存, 結果與一般搜尋相同
+        future.complete(searchCacheClient.set(key, responses, companyIds, CACHE_SEARCH_TTL));
+        if (consumerError[0] != null) throw consumerError[0];
+        return new SearchStreamSummary(responses.size(), request.getOrderBy(), request.getIsDesc(),
+                sortCompanyIds(responses, request.getOrderBy(), request.getIsDesc()), false);
+    }
 
-                if (responses.isEmpty()) {
-                    // 還是沒有緩存時, 查詢並計算
-                    responses = searchAndCalculateProductDetails(
-                            request.getDestination(),
-                            request.getAdultCount(),
-                            request.getRoomCount(),
-                            request.getStartDate(),
-                            request.getEndDate()
-                    );
-
-                    // 將結果緩存
-                    cacheResponses(key, responses);
-                }
-            } finally {
-                // 解鎖
-                unlock(key);
+    @Override
+    public Page<FlexibleSearchResponse> flexibleSearch(FlexibleSearchRequest request) {
+        // 驗證請求格式
+        if (request.getAdultCount() == null) {
+            throw new IllegalArgumentException("成人數(adultCount)為必填項");
+        }
+        if (request.getRoomCount() == null) {
+            throw new IllegalArgumentException("房間數(roomCount)為必填項");
+        }
+        validateGuestCount(request.getAdultCount(), request.getRoomCount());
+        if (request.getNights() == null || request.getNights() < 1) {
+            throw new IllegalArgumentException("入住晚數(nights)為必填項, 且至少為1晚");
+        }
+        if (request.getDestination() == null || request.getDestination().isEmpty()) {
+            throw new IllegalArgumentException("目的地(destination)為必填項");
+        }
+
+        LocalDate from = request.getFromDate() == null ? LocalDate.now() : request.getFromDate().toLocalDate();
+        LocalDate to = request.getToDate() == null ? from.plusDays(FLEXIBLE_DEFAULT_DAYS) : request.getToDate().toLocalDate();
+        int days = (int) (to.toEpochDay() - from.toEpochDay());
+        if (from.isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("最早日期(fromDate)不可早於今天");
+        }
+        if (days < request.getNights()) {
+            throw new IllegalArgumentException("日期區間需大於等於入住晚數");
+        }
+        if (days > FLEXIBLE_MAX_DAYS) {
+            throw new IllegalArgumentException("日期區間最多 " + FLEXIBLE_MAX_DAYS + " 天");
+        }
+
+        int adultCount = request.getAdultCount();
+        int roomCount = request.getRoomCount();
+        int nights = request.getNights();
+        Date startDate = Date.valueOf(from);
+        Date endDate = Date.valueOf(to);
+
+        // 1. 每個商家只取一次整段區間的每晚房況與每晚折扣
+        List<Integer> companyIds = findCompanyIdsByDestination(request.getDestination());
+        Map<Integer, List<ProductAvailability>> availabilities = getNightlyAvailability(companyIds, startDate, endDate, days);
+        Map<Integer, List<Double>> discountMap = discountCalendar.getDiscounts(availabilities.keySet(), startDate, endDate);
+
+        // 2. 每個商家以滑動視窗走過一次區間, 找出最便宜的入住日期
+        Map<Integer, SearchUtils.StaySet> stayMap = new LinkedHashMap<>();
+        Map<Integer, SearchUtils.ProductSet> minCostMap = new LinkedHashMap<>();
+        for (Integer companyId : companyIds) {
+            List<ProductAvailability> products = availabilities.get(companyId);
+            if (products == null) continue;
+
+            List<Double> discounts = discountMap.get(companyId);
+            SearchUtils.StaySet stay = SearchUtils.findCheapestStay(products, discounts, nights, adultCount, roomCount, pricingEngine::discountedTotal);
+            if (stay == null) continue;
+            stayMap.put(companyId, stay);
+            minCostMap.put(companyId, stay.getProductSet());
+        }
+
+        // 3. 組合商家資料, 依價格由低到高排序後分頁
+        List<FlexibleSearchResponse> responses = new ArrayList<>(stayMap.size());
+        if (!minCostMap.isEmpty()) {
+            for (Map.Entry<Integer, SearchResponse> entry : loadSearchResponses(minCostMap).entrySet()) {
+                SearchUtils.StaySet stay = stayMap.get(entry.getKey());
+                FlexibleSearchResponse response = new FlexibleSearchResponse();
+                BeanUtils.copyProperties(entry.getValue(), response);
+                response.setPrice(stay.getTotalPrice());
+                response.setIsPromotion(stay.isPromotion());
+                response.setStartDate(Date.valueOf(from.plusDays(stay.getStartOffset())));
+                response.setEndDate(Date.valueOf(from.plusDays(stay.getStartOffset() + nights)));
+                responses.add(response);
             }
         }
+        responses.sort(Comparator.comparing(FlexibleSearchResponse::getPrice).thenComparing(FlexibleSearchResponse::getStartDate));
 
-        stringRedisTemplate.expire(key, CACHE_SEARCH_TTL, TimeUnit.SECONDS);        // 十分鐘過期消失  (設定/重設過期時間)
+        Integer page = request.getPage();
+        Integer pageSize = request.getSize();
+        PageRequest pageRequest = PageRequest.of(page, pageSize);
+        int fromIndex = (int) Math.min(pageRequest.getOffset(), responses.size());
+        int toIndex = Math.min(fromIndex + pageSize, responses.size());
+        return new PageImpl<>(responses.subList(fromIndex, toIndex), pageRequest, responses.size());
+    }
 
-        // 排序
-        sortResponses(responses, request.getOrderBy(), request.getIsDesc());
+    @Override
+    public List<SuggestResponse> suggest(String keyword, Integer size) {
+        if (keyword == null || keyword.isBlank()) {
+            throw new IllegalArgumentException("關鍵字(keyword)為必填項");
+        }
+        return suggestIndex.suggest(keyword, size == null ? 10 : size);
+    }
 
-        // 分頁返回
-        return getPageResponse(responses, page, pageSize, pageRequest);
+    @Override
+    public Map<String, Integer> getFacets(SearchRequest request) {
+        SearchCacheClient.CachedSearchResult cached = getCachedResult(request);
+        long[] mask = toFilterMask(cached, request);
+
+        // 在目前的篩選條件下, 各個條件的筆數
+        Map<String, Integer> facets = new LinkedHashMap<>();
+        facets.put("total", cached.count(mask));
+        facets.putAll(cached.facetCounts(mask));
+        return facets;
     }
 
     @Override
@@ -131,9 +376,21 @@ public class SearchServiceImpl implements SearchService {
 
         Date startDate = searchRequest.getStartDate();
         Date endDate = searchRequest.getEndDate();
+
+        // 商家頁面的流量遠大於搜尋, 房型列表依 (商家, 日期) 緩存, 訂單 / 房型 / 折扣異動時透過反向索引刪除
+        String key = CACHE_SEARCH_COMPANY_PREFIX + companyId + ":" + startDate + ":" + endDate;
+        List<SearchProductResponse> cached = searchCacheClient.getProducts(key);
+        if (cached != null) return cached;
+
+        List<SearchProductResponse> productResponses = createProductList(companyId, startDate, endDate);
+        searchCacheClient.setProducts(key, productResponses, companyId, CACHE_SEARCH_TTL);
+        return productResponses;
+    }
+
+    private List<SearchProductResponse> createProductList(Integer companyId, Date startDate, Date endDate) {
         long daysBetween = OrderUtil.getDaysBetween(startDate, endDate);
 
-        Map<Integer, List<ProductCalculation>> res = searchDao.getProductCalculations(
+        Map<Integer, List<ProductCalculation>> res = getProductCalculations(
                 Collections.singletonList(companyId),
                 startDate,
                 endDate
@@ -147,16 +404,12 @@ public class SearchServiceImpl implements SearchService {
                 .filter(product -> product.getRemainingRooms() >= 1)
                 .toList();
 
-        List<Double> discount = OrderUtil.getDiscountByCompanyIdBetweenStartDateAnEndDate(orderDao, companyId, startDate, endDate);
+        List<Double> discount = discountCalendar.getDiscounts(companyId, startDate, endDate);
 
         // 把列表轉為Map方便進行後續的查詢操作
         Map<Integer, ProductCalculation> productCalculationMap = new HashMap<>();
         for (ProductCalculation productCalculation : productCalculations) {
-            double totalPrice = 0;
-            for (Double v : discount) {
-                totalPrice += productCalculation.getPrice() * v;
-            }
-            productCalculation.setPrice((int) totalPrice);
+            productCalculation.setPrice(pricingEngine.discountedTotal(productCalculation.getPrice(), discount));
             productCalculationMap.put(productCalculation.getProductId(), productCalculation);
         }
 
@@ -182,7 +435,103 @@ public class SearchServiceImpl implements SearchService {
     }
 
     @Override
-    public void deleteSearchCache(SearchRequest request) {
+    public PriceCalendarResponse getPriceCalendar(Integer companyId, String month) {
+        if (month == null || month.isBlank()) {
+            throw new IllegalArgumentException("月份(month)為必填項");
+        }
+        YearMonth yearMonth;
+        try {
+            yearMonth = YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("月份(month)格式需為 yyyy-MM");
+        }
+
+        LocalDate monthStart = yearMonth.atDay(1);
+        LocalDate monthEnd = yearMonth.plusMonths(1).atDay(1);
+
+        // 依 (商家, 月份) 緩存, key 的最後兩段為日期區間, 訂單異動時只刪除重疊的月份
+        String key = CACHE_SEARCH_CALENDAR_PREFIX + companyId + ":" + monthStart + ":" + monthEnd;
+        PriceCalendarResponse cached = searchCacheClient.getCalendar(key);
+        if (cached != null) return cached;
+
+        PriceCalendarResponse calendar = createPriceCalendar(companyId, yearMonth, monthStart, monthEnd);
+        searchCacheClient.setCalendar(key, calendar, companyId, CACHE_SEARCH_TTL);
+        return calendar;
+    }
+
+    private PriceCalendarResponse createPriceCalendar(Integer companyId, YearMonth yearMonth, LocalDate monthStart, LocalDate monthEnd) {
+        // 已經過去的日期不計算
+        LocalDate from = monthStart.isBefore(LocalDate.now()) ? LocalDate.now() : monthStart;
+        int offset = (int) (from.toEpochDay() - monthStart.toEpochDay());
+        int days = (int) Math.max(monthEnd.toEpochDay() - from.toEpochDay(), 0);
+
+        // 整個月的每晚房況與每晚折扣各取一次
+        List<ProductAvailability> products = Collections.emptyList();
+        List<Double> discounts = Collections.emptyList();
+        if (days > 0) {
+            Date startDate = Date.valueOf(from);
+            Date endDate = Date.valueOf(monthEnd);
+            products = getNightlyAvailability(Collections.singletonList(companyId), startDate, endDate, days)
+                    .getOrDefault(companyId, Collections.emptyList());
+            discounts = discountCalendar.getDiscounts(companyId, startDate, endDate);
+        }
+
+        List<ProductCalculation> productInfos = new ArrayList<>(products.size());
+        for (ProductAvailability product : products) {
+            productInfos.add(new ProductCalculation(product.getProductId(), product.getProductName(), product.getMaxOccupancy(), null, product.getPrice()));
+        }
+
+        List<PriceCalendarDay> calendarDays = new ArrayList<>(yearMonth.lengthOfMonth());
+        for (int i = 0; i < yearMonth.lengthOfMonth(); i++) {
+            PriceCalendarDay day = new PriceCalendarDay();
+            day.setDate(Date.valueOf(monthStart.plusDays(i)));
+            calendarDays.add(day);
+            if (i < offset) continue;
+
+            int night = i - offset;
+            double discount = discounts.get(night);
+            int[] remainingRooms = new int[products.size()];
+            int[] prices = new int[products.size()];
+            Integer minPrice = null;
+            for (int p = 0; p < products.size(); p++) {
+                ProductAvailability product = products.get(p);
+                remainingRooms[p] = Math.max(product.getRemainingRooms()[night], 0);
+                prices[p] = pricingEngine.discountedTotal(product.getPrice() == null ? 0 : product.getPrice(), List.of(discount));
+                if (remainingRooms[p] >= 1 && (minPrice == null || prices[p] < minPrice)) {
+                    minPrice = prices[p];
+                }
+            }
+            day.setDiscount(discount);
+            day.setRemainingRooms(remainingRooms);
+            day.setPrices(prices);
+            day.setMinPrice(minPrice);
+        }
+
+        PriceCalendarResponse calendar = new PriceCalendarResponse();
+        calendar.setCompanyId(companyId);
+        calendar.setMonth(yearMonth.toString());
+        calendar.setProducts(productInfos);
+        calendar.setDays(calendarDays);
+        return calendar;
+    }
+
+    @Override
+    public PriceQuote getQuote(CreateOrderRequest quoteRequest) {
+        if (quoteRequest.getProductList() == null) {
+            throw new IllegalArgumentException("請選擇房型");
+        }
+        Map<Integer, Integer> productCounts = new HashMap<>();
+        for (CreateOrderRequest.Product product : quoteRequest.getProductList()) {
+            if (product.getProductId() == null || product.getCount() == null) {
+                throw new IllegalArgumentException("房型與數量不可為空");
+            }
+            productCounts.merge(product.getProductId(), product.getCount(), Integer::sum);
+        }
+        return pricingEngine.quote(quoteRequest.getCompanyId(), productCounts, quoteRequest.getBeginDate(), quoteRequest.getEndDate());
+    }
+
+    @Override
+    public boolean refreshSearchCache(SearchRequest request) {
         // 標準請求驗證
         validateRequest(request);
 
@@ -191,15 +540,29 @@ public class SearchServiceImpl implements SearchService {
             throw new IllegalArgumentException("目的地(destination)為必填項");
         }
 
-        int adultCount = request.getAdultCount();
-        int roomCount = request.getRoomCount();
-        Date startDate = request.getStartDate();
-        Date endDate = request.getEndDate();
-        String destination = request.getDestination();
+        String key = toCacheKey(request);
+
+        // 其他機器正在重建同一個緩存時略過
+        if (!tryLock(key)) return false;
+        try {
+            buildAndCache(key, request.getDestination(), request.getAdultCount(), request.getRoomCount(), request.getStartDate(), request.getEndDate());
+            return true;
+        } finally {
+            unlock(key);
+        }
+    }
 
-        String key = CACHE_SEARCH_PREFIX + destination + ":" + adultCount + ":" + roomCount + ":" + startDate + ":" + endDate;
+    @Override
+    public void deleteSearchCache(SearchRequest request) {
+        // 標準請求驗證
+        validateRequest(request);
+
+        // 追加驗證
+        if (request.getDestination() == null || request.getDestination().isEmpty()) {
+            throw new IllegalArgumentException("目的地(destination)為必填項");
+        }
 
-        stringRedisTemplate.delete(key);
+        searchCacheClient.delete(toCacheKey(request));
     }
 
     private SearchProductResponse createSearchProductResponse(ProductDetails productDetails, ProductCalculation productCalculation) {
@@ -229,136 +592,327 @@ public class SearchServiceImpl implements SearchService {
         if (request.getRoomCount() == null) {
             throw new IllegalArgumentException("房間數(roomCount)為必填項");
         }
+        validateGuestCount(request.getAdultCount(), request.getRoomCount());
     }
 
-    private List<SearchResponse> getCachedResponses(String key) {
-        List<SearchResponse> responses = new ArrayList<>();
-        Long size = stringRedisTemplate.opsForList().size(key);
+    private void validateGuestCount(int adultCount, int roomCount) {
+        if (adultCount < 1 || adultCount > MAX_ADULT_COUNT) {
+            throw new IllegalArgumentException("成人數(adultCount)需介於 1 ~ " + MAX_ADULT_COUNT);
+        }
+        if (roomCount < 1 || roomCount > MAX_ROOM_COUNT) {
+            throw new IllegalArgumentException("房間數(roomCount)需介於 1 ~ " + MAX_ROOM_COUNT);
+        }
+    }
 
-        if (size != null && size > 0) {
-            List<String> jsonList = stringRedisTemplate.opsForList().range(key, 0, size - 1);
+    private SearchCacheClient.CachedSearchResult getCachedResult(SearchRequest request) {
+        // 標準請求驗證
+        validateRequest(request);
 
-            assert jsonList != null;
-            for (String json : jsonList) {
-                try {
-                    SearchResponse searchResponse = objectMapper.readValue(json, SearchResponse.class);
-                    responses.add(searchResponse);
-                } catch (JsonProcessingException e) {
-                    throw new RuntimeException(e);
+        // 追加驗證
+        if (request.getDestination() == null || request.getDestination().isEmpty()) {
+            throw new IllegalArgumentException("目的地(destination)為必填項");
+        }
+
+        int adultCount = request.getAdultCount();
+        int roomCount = request.getRoomCount();
+        Date startDate = request.getStartDate();
+        Date endDate = request.getEndDate();
+        String destination = request.getDestination();
+
+        String key = toCacheKey(request);
+
+        SearchCacheClient.CachedSearchResult cached = searchCacheClient.get(key);
+
+        // 緩存中不存在資料
+        if (cached == null) {
+            searchMetrics.recordCacheMiss();
+            cached = rebuildSingleFlight(key, destination, adultCount, roomCount, startDate, endDate);
+        } else {
+            searchMetrics.recordCacheHit();
+        }
+        return cached;
+    }
+
+    private String toCacheKey(SearchRequest request) {
+        return CACHE_SEARCH_PREFIX + request.getDestination() + ":" + request.getAdultCount() + ":" + request.getRoomCount()
+                + ":" + request.getStartDate() + ":" + request.getEndDate();
+    }
+
+    private long[] toFilterMask(SearchCacheClient.CachedSearchResult cached, SearchRequest request) {
+        List<SearchFacet> required = new ArrayList<>();
+        if (Boolean.TRUE.equals(request.getIncludesBreakfast())) required.add(SearchFacet.BREAKFAST);
+        if (Boolean.TRUE.equals(request.getAllowFreeCancellation())) required.add(SearchFacet.FREE_CANCELLATION);
+        if (Boolean.TRUE.equals(request.getIsRefundable())) required.add(SearchFacet.REFUNDABLE);
+        if (Boolean.TRUE.equals(request.getAllowDateChanges())) required.add(SearchFacet.DATE_CHANGES);
+        if (Boolean.TRUE.equals(request.getIsPromotion())) required.add(SearchFacet.PROMOTION);
+
+        Integer minScore = request.getMinScore();
+        if (minScore != null) {
+            if (minScore < SearchFacet.MIN_SCORE_FLOOR || minScore > SearchFacet.MIN_SCORE_CEIL) {
+                throw new IllegalArgumentException("最低評分(minScore)需介於 " + SearchFacet.MIN_SCORE_FLOOR + " ~ " + SearchFacet.MIN_SCORE_CEIL);
+            }
+            required.add(SearchFacet.minScore(minScore));
+        }
+
+        List<SearchFacet> anyOf = new ArrayList<>();
+        if (request.getPriceBands() != null) {
+            for (Integer band : request.getPriceBands()) {
+                if (band == null || band < 0 || band >= SearchFacet.PRICE_BAND_COUNT) {
+                    throw new IllegalArgumentException("價格區間(priceBands)需介於 0 ~ " + (SearchFacet.PRICE_BAND_COUNT - 1));
                 }
+                anyOf.add(SearchFacet.priceBand(band));
             }
         }
 
-        return responses;
+        return cached.filter(required, anyOf);
     }
 
-    private void cacheResponses(String key, List<SearchResponse> responses) {
-        if (responses == null || responses.isEmpty()) return;
-        // 將處理完的responses存到redis中緩存
-        for (SearchResponse response : responses) {
+    private SearchCacheClient.CachedSearchResult rebuildSingleFlight(String key, String destination, int adultCount, int roomCount, Date startDate, Date endDate) {
+        // 同一台機器上相同的搜尋只由第一個請求重建, 其他請求等待同一個結果
+        CompletableFuture<SearchCacheClient.CachedSearchResult> future = new CompletableFuture<>();
+        CompletableFuture<SearchCacheClient.CachedSearchResult> inFlight = rebuildingSearches.putIfAbsent(key, future);
+
+        if (inFlight != null) {
+            searchMetrics.startWaiting();
             try {
-                stringRedisTemplate.opsForList().leftPush(key, objectMapper.writeValueAsString(response));
-            } catch (JsonProcessingException e) {
-                throw new RuntimeException(e);
+                return inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw e;
+            } finally {
+                searchMetrics.endWaiting();
             }
-        }          // 存到緩存避免短時間內重新查詢 (創建訂單時同時刪除緩存)
+        }
+
+        try {
+            SearchCacheClient.CachedSearchResult cached = rebuildWithLock(key, destination, adultCount, roomCount, startDate, endDate);
+            future.complete(cached);
+            return cached;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            rebuildingSearches.remove(key, future);
+        }
     }
 
-    private List<SearchResponse> searchAndCalculateProductDetails(String destination, int adultCount, int roomCount, Date startDate, Date endDate) {
-        List<SearchResponse> responses = new ArrayList<>();
+    private SearchCacheClient.CachedSearchResult rebuildWithLock(String key, String destination, int adultCount, int roomCount, Date startDate, Date endDate) {
+        // 分散式鎖只用來協調不同機器, 有重試上限 (最多等待一個鎖的有效時間)
+        for (long retry = 0; retry < MAX_RETRY_COUNT; retry++) {
+            if (tryLock(key)) {
+                try {
+                    // 取得鎖成功 重新檢查是否已重建緩存
+                    SearchCacheClient.CachedSearchResult cached = searchCacheClient.get(key);
+                    if (cached != null) return cached;
 
-        // 查詢符合目的地的商家
-        List<Integer> companyIds = searchDao.findCompanyIdsByCityOrCountry(destination);
-        if (companyIds.isEmpty()) return responses;
+                    // 還是沒有緩存時, 查詢並計算
+                    return buildAndCache(key, destination, adultCount, roomCount, startDate, endDate);
+                } finally {
+                    // 解鎖
+                    unlock(key);
+                }
+            }
 
-        Map<Integer, List<ProductCalculation>> productCalculations = searchDao.getProductCalculations(companyIds, startDate, endDate);
-        Set<Integer> processedCompanies = new HashSet<>();
+            // 取得鎖失敗 (其他機器正在重建) 休眠後檢查緩存
+            searchMetrics.recordLockRetry();
+            try {
+                Thread.sleep(RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("搜尋中斷", e);
+            }
+            SearchCacheClient.CachedSearchResult cached = searchCacheClient.get(key);
+            if (cached != null) return cached;
+        }
 
-        for (Map.Entry<Integer, List<ProductCalculation>> entry : productCalculations.entrySet()) {
-            Integer companyId = entry.getKey();
+        // 等不到鎖 (持有者可能已經異常) 直接查詢, 不再無限等待
+        searchMetrics.recordLockTimeout();
+        return buildAndCache(key, destination, adultCount, roomCount, startDate, endDate);
+    }
 
-            if (processedCompanies.contains(companyId)) continue;
-            processedCompanies.add(companyId);
+    private SearchCacheClient.CachedSearchResult buildAndCache(String key, String destination, int adultCount, int roomCount, Date startDate, Date endDate) {
+        searchMetrics.recordRebuild();
+        List<Integer> companyIds = findCompanyIdsByDestination(destination);
+        List<SearchResponse> responses = searchAndCalculateProductDetails(companyIds, adultCount, roomCount, startDate, endDate);
 
-            List<ProductCalculation> products = entry.getValue();
-            int totalRemainingRooms = products.stream().mapToInt(ProductCalculation::getRemainingRooms).sum();
-            int totalMaxOccupancy = products.stream().mapToInt(product -> product.getMaxOccupancy() * product.getRemainingRooms()).sum();
+        // 將結果緩存 (建立緩存時同時完成排序, 候選商家有訂單或房型異動時才會提前刪除)
+        return searchCacheClient.set(key, responses, companyIds, CACHE_SEARCH_TTL);
+    }
+
+    private List<SearchResponse> searchAndCalculateProductDetails(List<Integer> companyIds, int adultCount, int roomCount, Date startDate, Date endDate) {
+        // 沒有符合目的地的商家
+        if (companyIds.isEmpty()) return new ArrayList<>();
+
+        Map<Integer, List<ProductCalculation>> productCalculations = getProductCalculations(companyIds, startDate, endDate);
 
-            if (totalRemainingRooms < roomCount || totalMaxOccupancy < adultCount) continue;
+        // 先計算每個商家的最低價格組合, 只保留可以滿足需求的商家
+        // 依照候選商家的順序處理, 平行模式下各區段的結果依序合併, 與逐一計算的結果相同
+        List<Integer> evaluatedIds = companyIds.stream().filter(productCalculations::containsKey).toList();
+        List<List<ProductCalculation>> companies = evaluatedIds.stream().map(productCalculations::get).toList();
+        boolean parallel = searchExecutor != null && evaluatedIds.size() >= parallelThreshold;
+        SearchUtils.ProductSet[] minCosts = SearchUtils.evaluateCompanies(companies, adultCount, roomCount,
+                parallel ? searchExecutor : null, parallelThreads);
 
-            SearchUtils.ProductSet minCost = SearchUtils.findMinCost(products, adultCount, roomCount);
-            if (minCost.getMinCost() >= 0) {
-                responses.add(createSearchResponse(companyId, minCost, startDate, endDate));
+        Map<Integer, SearchUtils.ProductSet> minCostMap = new LinkedHashMap<>();
+        for (int i = 0; i < minCosts.length; i++) {
+            if (minCosts[i] != null) {
+                minCostMap.put(evaluatedIds.get(i), minCosts[i]);
             }
         }
 
-//        System.out.println(responses);
-        return responses;
+        return createSearchResponses(minCostMap, startDate, endDate);
     }
 
-    private SearchResponse createSearchResponse(Integer companyId, SearchUtils.ProductSet minCost, Date startDate, Date endDate) {
-        SearchResponse searchResponse = searchDao.getDetailsByProductIds(minCost.getProductIds());
-        Company company = companyDao.findByCompanyId(companyId);
+    private List<Integer> findCompanyIdsByDestination(String destination) {
+        // 優先使用記憶體中的目的地索引, 尚未載入完成時才查詢資料庫
+        List<Integer> companyIds = destinationIndex.findCompanyIds(destination);
+        if (companyIds != null) return companyIds;
+        return searchDao.findCompanyIdsByCityOrCountry(destination);
+    }
 
-        searchResponse.setProducts(minCost.getProductNames());
-        searchResponse.setCompanyId(companyId);
-        searchResponse.setCompanyName(company.getCompanyName());
-        searchResponse.setCity(company.getCity());
-        searchResponse.setCountry(company.getCountry());
-        searchResponse.setScore(company.getScore());
-        String photo = companyPhotosDao.findMainPhotoByCompanyId(companyId);
-        if (photo != null) {
-            searchResponse.setPhoto(BASE_URL + photo);
-        }
-        Integer count = companyReviewDao.countByCompanyId(companyId);
-        searchResponse.setCommentCount(count);
+    private Map<Integer, List<ProductCalculation>> getProductCalculations(List<Integer> companyIds, Date startDate, Date endDate) {
+        // 優先使用記憶體中的房況矩陣, 尚未載入完成或日期超出矩陣範圍時才查詢資料庫
+        Map<Integer, List<ProductCalculation>> res = availabilityMatrix.getProductCalculations(companyIds, startDate, endDate);
+        if (res != null) return res;
+        return searchDao.getProductCalculations(companyIds, startDate, endDate);
+    }
 
-        List<Double> discounts = OrderUtil.getDiscountByCompanyIdBetweenStartDateAnEndDate(orderDao, companyId, startDate, endDate);
+    private void emitChunk(Map<Integer, SearchUtils.ProductSet> chunk, Date startDate, Date endDate, List<SearchResponse> responses, Consumer<SearchResponse> consumer) {
+        if (chunk.isEmpty()) return;
+        for (SearchResponse response : createSearchResponses(chunk, startDate, endDate)) {
+            consumer.accept(response);
+            responses.add(response);
+        }
+        chunk.clear();
+    }
 
-        boolean isPromotion = false;
-        double totalPrice = 0;
-        for (Double discount : discounts) {
-            if (discount < 1.0) isPromotion = true;
-            totalPrice += discount * minCost.getMinCost();
+    // 與緩存的排序視圖相同: 價格由低到高 / 評分由高到低, 同分時維持原本順序, 反向排序直接倒著讀
+    private List<Integer> sortCompanyIds(List<SearchResponse> responses, String orderBy, Boolean isDesc) {
+        // 與緩存的排序視圖相同: 反向排序時同分的資料維持原本的順序
+        Comparator<SearchResponse> comparator = "score".equals(orderBy)
+                ? Comparator.comparingDouble((SearchResponse response) -> response.getScore()).reversed()
+                : Comparator.comparingDouble((SearchResponse response) -> response.getPrice());
+        if (isDesc != null && isDesc) {
+            comparator = comparator.reversed();
         }
+        List<SearchResponse> sorted = new ArrayList<>(responses);
+        sorted.sort(comparator);
 
-        searchResponse.setIsPromotion(isPromotion);
-        searchResponse.setPrice((int) totalPrice);
+        List<Integer> companyIds = new ArrayList<>(sorted.size());
+        for (SearchResponse response : sorted) {
+            companyIds.add(response.getCompanyId());
+        }
+        return companyIds;
+    }
 
-        return searchResponse;
+    private Map<Integer, List<ProductAvailability>> getNightlyAvailability(List<Integer> companyIds, Date startDate, Date endDate, int days) {
+        if (companyIds.isEmpty()) return new HashMap<>();
+
+        // 優先使用記憶體中的房況矩陣
+        Map<Integer, List<ProductAvailability>> res = availabilityMatrix.getNightlyAvailability(companyIds, startDate, endDate);
+        if (res != null) return res;
+
+        // 尚未載入完成或日期超出矩陣範圍時, 每一晚查詢一次資料庫組成相同的格式
+        res = new HashMap<>();
+        Map<Integer, ProductAvailability> productMap = new HashMap<>();
+        LocalDate from = startDate.toLocalDate();
+        for (int i = 0; i < days; i++) {
+            Date night = Date.valueOf(from.plusDays(i));
+            Date nextNight = Date.valueOf(from.plusDays(i + 1));
+            Map<Integer, List<ProductCalculation>> calculations = searchDao.getProductCalculations(companyIds, night, nextNight);
+            for (Map.Entry<Integer, List<ProductCalculation>> entry : calculations.entrySet()) {
+                for (ProductCalculation calculation : entry.getValue()) {
+                    ProductAvailability availability = productMap.get(calculation.getProductId());
+                    if (availability == null) {
+                        availability = new ProductAvailability(
+                                calculation.getProductId(),
+                                calculation.getProductName(),
+                                calculation.getMaxOccupancy(),
+                                calculation.getPrice(),
+                                new int[days]
+                        );
+                        productMap.put(calculation.getProductId(), availability);
+                        res.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(availability);
+                    }
+                    availability.getRemainingRooms()[i] = calculation.getRemainingRooms() == null ? 0 : calculation.getRemainingRooms();
+                }
+            }
+        }
+        return res;
     }
 
-    private void sortResponses(List<SearchResponse> responses, String orderBy, Boolean isDesc) {
-        if (orderBy == null) orderBy = "price";
-        Comparator<SearchResponse> comparator;
+    private List<SearchResponse> createSearchResponses(Map<Integer, SearchUtils.ProductSet> minCostMap, Date startDate, Date endDate) {
+        List<SearchResponse> responses = new ArrayList<>(minCostMap.size());
+        if (minCostMap.isEmpty()) return responses;
 
-        switch (orderBy) {
-            case "score":
-                comparator = Comparator.comparingDouble(SearchResponse::getScore).reversed();
-                break;
-            case "price":
-            default:
-                comparator = Comparator.comparingDouble(SearchResponse::getPrice);
-                break;
-        }
+        Map<Integer, SearchResponse> responseMap = loadSearchResponses(minCostMap);
+        Map<Integer, List<Double>> discountMap = discountCalendar.getDiscounts(responseMap.keySet(), startDate, endDate);
 
-        if (isDesc != null && isDesc) {
-            comparator = comparator.reversed();
+        for (Map.Entry<Integer, SearchResponse> entry : responseMap.entrySet()) {
+            SearchResponse searchResponse = entry.getValue();
+            SearchUtils.ProductSet minCost = minCostMap.get(entry.getKey());
+
+            List<Double> discounts = discountMap.get(entry.getKey());
+            boolean isPromotion = false;
+            for (Double discount : discounts) {
+                if (discount < 1.0) isPromotion = true;
+            }
+
+            searchResponse.setIsPromotion(isPromotion);
+            searchResponse.setPrice(pricingEngine.discountedTotal(minCost.getMinCost(), discounts));
+
+            responses.add(searchResponse);
         }
 
-        responses.sort(comparator);
+        return responses;
     }
 
-    private Page<SearchResponse> getPageResponse(List<SearchResponse> responses, int page, int pageSize, PageRequest pageRequest) {
-        int total = responses.size();
-        int offset = page * pageSize;
-        int end = Math.min(offset + pageSize, total);
+    // 組合商家的顯示資料 (不含價格與促銷), 依照 minCostMap 的順序; 找不到商家時略過
+    private Map<Integer, SearchResponse> loadSearchResponses(Map<Integer, SearchUtils.ProductSet> minCostMap) {
+        // 每個維度只查詢一次 (商家, 主圖, 評論數, 房型詳細資訊), 再於記憶體中組合
+        Set<Integer> companyIds = minCostMap.keySet();
+
+        Map<Integer, List<Integer>> companyProductIds = new HashMap<>();
+        minCostMap.forEach((companyId, minCost) -> companyProductIds.put(companyId, minCost.getProductIds()));
+        Map<Integer, SearchResponse> detailMap = searchDao.getDetailsByCompanyProductIds(companyProductIds);
+
+        Map<Integer, Company> companyMap = new HashMap<>();
+        for (Company company : companyDao.findByCompanyIdIn(companyIds)) {
+            companyMap.put(company.getCompanyId(), company);
+        }
 
-        if (offset >= end) {
-            return new PageImpl<>(Collections.emptyList(), pageRequest, total);
+        Map<Integer, String> photoMap = new HashMap<>();
+        for (Object[] row : companyPhotosDao.findMainPhotosByCompanyIds(companyIds)) {
+            photoMap.put(((Number) row[0]).intValue(), (String) row[1]);
         }
 
-        return new PageImpl<>(responses.subList(offset, end), pageRequest, total);
+        Map<Integer, Integer> commentCountMap = new HashMap<>();
+        for (Object[] row : companyReviewDao.countGroupByCompanyIds(companyIds)) {
+            commentCountMap.put(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+        }
+
+        Map<Integer, SearchResponse> responseMap = new LinkedHashMap<>();
+        for (Map.Entry<Integer, SearchUtils.ProductSet> entry : minCostMap.entrySet()) {
+            Integer companyId = entry.getKey();
+            Company company = companyMap.get(companyId);
+            if (company == null) continue;
+
+            SearchResponse searchResponse = detailMap.getOrDefault(companyId, new SearchResponse());
+            searchResponse.setProducts(entry.getValue().getProductNames());
+            searchResponse.setCompanyId(companyId);
+            searchResponse.setCompanyName(company.getCompanyName());
+            searchResponse.setCity(company.getCity());
+            searchResponse.setCountry(company.getCountry());
+            searchResponse.setScore(company.getScore());
+            String photo = photoMap.get(companyId);
+            if (photo != null) {
+                searchResponse.setPhoto(BASE_URL + photo);
+            }
+            searchResponse.setCommentCount(commentCountMap.getOrDefault(companyId, 0));
+
+            responseMap.put(companyId, searchResponse);
+        }
+        return responseMap;
     }
 
     private boolean tryLock(String key) {
@@ -0,0 +1,390 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.order.dao.OrderDetailDao;
+import idv.tia201.g1.order.entity.OrderDetail;
+import idv.tia201.g1.order.event.OrderUpdateEvent;
+import idv.tia201.g1.product.dao.ProductDao;
+import idv.tia201.g1.product.entity.Product;
+import idv.tia201.g1.product.event.ProductUpdateEvent;
+import idv.tia201.g1.search.dto.ProductAvailability;
+import idv.tia201.g1.search.dto.ProductCalculation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+public class AvailabilityMatrix {
+    // 房況矩陣設計思路:
+    //      搜尋時原本每個商品都要跑一次關聯子查詢 (每日預訂量的最大值), 假日尖峰時是最慢的SQL
+    //      改為從 order_detail / order_master 一次載入, 用 int[] 記錄 "商品 x 日期(epoch day)" 的已預訂數量
+    //      之後透過訂單事件 (建立 / 付款 / 過期 / 刪除) 增量更新, 查詢剩餘房間時完全不需要打資料庫
+    // 臨時訂單:
+    //      未付款的訂單只在過期時間前佔用房間, 以過期時間排序的佇列記錄, 查詢前先把已過期的佔用釋放
+    // 一致性:
+    //      其他節點建立的訂單不會觸發本機事件, 因此定期從資料庫重新載入作為校正
+    //      (重新載入期間發生的事件可能會遺失, 由下一次重新載入修正)
+
+    private static final int HORIZON_DAYS = 400;    // 矩陣涵蓋的天數 (從載入日的前一天開始)
+    private static final String UNPAID = "未付款";
+    private static final Comparator<PendingHold> EXPIRE_ORDER = Comparator.comparingLong((PendingHold hold) -> hold.expireAt);
+
+    private final ProductDao productDao;
+    private final OrderDetailDao orderDetailDao;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long baseDay;                                           // booked[0] 對應的 epoch day
+    private Map<Integer, ProductSlot> productMap = new HashMap<>();
+    private Map<Integer, List<ProductSlot>> companyProductMap = new HashMap<>();
+    private Map<Integer, PendingHold> pendingHolds = new HashMap<>();
+    private PriorityQueue<PendingHold> expiryQueue = new PriorityQueue<>(EXPIRE_ORDER);
+
+    private volatile boolean ready = false;
+    private volatile long nextExpireAt = Long.MAX_VALUE;
+
+    public AvailabilityMatrix(ProductDao productDao, OrderDetailDao orderDetailDao) {
+        this.productDao = productDao;
+        this.orderDetailDao = orderDetailDao;
+    }
+
+    /**
+     * 從資料庫重新建立整個房況矩陣 (啟動時執行, 之後定期校正)
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public void reload() {
+        long newBaseDay = LocalDate.now().minusDays(1).toEpochDay();
+        Date fromDate = Date.valueOf(LocalDate.ofEpochDay(newBaseDay));
+
+        try {
+            List<Product> products = productDao.findAll();
+            List<Object[]> paidRows = orderDetailDao.sumPaidQuantityGroupByProductAndDate(fromDate);
+            List<OrderDetail> pendingDetails = orderDetailDao.findPendingDetails(fromDate);
+
+            Map<Integer, ProductSlot> newProductMap = new HashMap<>();
+            Map<Integer, List<ProductSlot>> newCompanyProductMap = new HashMap<>();
+            for (Product product : products) {
+                ProductSlot slot = new ProductSlot(product.getProductId());
+                slot.update(product);
+                newProductMap.put(slot.productId, slot);
+                newCompanyProductMap.computeIfAbsent(slot.companyId, k -> new ArrayList<>()).add(slot);
+            }
+
+            // 已付款訂單 (已經按商品與日期加總)
+            for (Object[] row : paidRows) {
+                ProductSlot slot = newProductMap.get(((Number) row[0]).intValue());
+                if (slot == null) continue;
+                int index = (int) (toEpochDay(row[1]) - newBaseDay);
+                if (index < 0 || index >= HORIZON_DAYS) continue;
+                slot.booked[index] += ((Number) row[2]).intValue();
+            }
+
+            // 未過期的臨時訂單 (以訂單為單位記錄, 過期時才能整筆釋放)
+            Map<Integer, PendingHold> newPendingHolds = new HashMap<>();
+            PriorityQueue<PendingHold> newExpiryQueue = new PriorityQueue<>(EXPIRE_ORDER);
+            for (OrderDetail detail : pendingDetails) {
+                PendingHold hold = newPendingHolds.get(detail.getOrderId());
+                if (hold == null) {
+                    hold = new PendingHold(detail.getOrderId(), detail.getExpiredTime().getTime(), new ArrayList<>());
+                    newPendingHolds.put(hold.orderId, hold);
+                    newExpiryQueue.add(hold);
+                }
+                hold.details.add(detail);
+                apply(newProductMap, newBaseDay, detail, 1);
+            }
+
+            lock.writeLock().lock();
+            try {
+                baseDay = newBaseDay;
+                productMap = newProductMap;
+                companyProductMap = newCompanyProductMap;
+                pendingHolds = newPendingHolds;
+                expiryQueue = newExpiryQueue;
+                updateNextExpireAt();
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.debug("AvailabilityMatrix reloaded: {} products, {} pending orders", newProductMap.size(), newPendingHolds.size());
+        } catch (Exception e) {
+            // 載入失敗時保留舊資料 (尚未載入成功時, 查詢會退回資料庫)
+            log.error("AvailabilityMatrix reload failed", e);
+        }
+    }
+
+    /**
+     * 計算指定商家們在日期區間內, 每個商品的剩餘房間數量
+     * 回傳格式與 SearchDao.getProductCalculations 相同
+     *
+     * @param companyIds 商家編號
+     * @param startDate  入住日期
+     * @param endDate    退房日期
+     * @return 商家編號 -> 商品計算結果; 尚未載入完成或日期超出矩陣範圍時回傳null (呼叫端需退回資料庫查詢)
+     */
+    public Map<Integer, List<ProductCalculation>> getProductCalculations(List<Integer> companyIds, Date startDate, Date endDate) {
+        if (!ready) return null;
+        releaseExpiredHolds();
+
+        lock.readLock().lock();
+        try {
+            int from = (int) (startDate.toLocalDate().toEpochDay() - baseDay);
+            int to = (int) (endDate.toLocalDate().toEpochDay() - baseDay);
+            if (from < 0 || to > HORIZON_DAYS || from > to) return null;
+
+            Map<Integer, List<ProductCalculation>> companyProductCalculations = new HashMap<>();
+            for (Integer companyId : companyIds) {
+                List<ProductSlot> slots = companyProductMap.get(companyId);
+                if (slots == null || slots.isEmpty()) continue;
+
+                List<ProductCalculation> productCalculations = new ArrayList<>(slots.size());
+                for (ProductSlot slot : slots) {
+                    // 區間內每日預訂量的最大值 (等同原本SQL的 MAX(SUM(quantity)) GROUP BY booked_date)
+                    int maxBooked = 0;
+                    int[] booked = slot.booked;
+                    for (int i = from; i < to; i++) {
+                        if (booked[i] > maxBooked) maxBooked = booked[i];
+                    }
+                    productCalculations.add(new ProductCalculation(
+                            slot.productId,
+                            slot.productName,
+                            slot.maxOccupancy,
+                            slot.stock - maxBooked,
+                            slot.price
+                    ));
+                }
+                companyProductCalculations.put(companyId, productCalculations);
+            }
+            return companyProductCalculations;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取得指定商家們在日期區間內, 每個商品每一晚的剩餘房間數量 (彈性日期搜尋使用)
+     *
+     * @param companyIds 商家編號
+     * @param startDate  區間開始日期
+     * @param endDate    區間結束日期 (不含)
+     * @return 商家編號 -> 商品每晚的剩餘房間; 尚未載入完成或日期超出矩陣範圍時回傳null (呼叫端需退回資料庫查詢)
+     */
+    public Map<Integer, List<ProductAvailability>> getNightlyAvailability(List<Integer> companyIds, Date startDate, Date endDate) {
+        if (!ready) return null;
+        releaseExpiredHolds();
+
+        lock.readLock().lock();
+        try {
+            int from = (int) (startDate.toLocalDate().toEpochDay() - baseDay);
+            int to = (int) (endDate.toLocalDate().toEpochDay() - baseDay);
+            if (from < 0 || to > HORIZON_DAYS || from > to) return null;
+
+            Map<Integer, List<ProductAvailability>> companyAvailabilities = new HashMap<>();
+            for (Integer companyId : companyIds) {
+                List<ProductSlot> slots = companyProductMap.get(companyId);
+                if (slots == null || slots.isEmpty()) continue;
+
+                List<ProductAvailability> availabilities = new ArrayList<>(slots.size());
+                for (ProductSlot slot : slots) {
+                    int[] remainingRooms = new int[to - from];
+                    for (int i = from; i < to; i++) {
+                        remainingRooms[i - from] = slot.stock - slot.booked[i];
+                    }
+                    availabilities.add(new ProductAvailability(
+                            slot.productId,
+                            slot.productName,
+                            slot.maxOccupancy,
+                            slot.price,
+                            remainingRooms
+                    ));
+                }
+                companyAvailabilities.put(companyId, availabilities);
+            }
+            return companyAvailabilities;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 取得商品所屬的商家
+     *
+     * @return 商家編號; 尚未載入或找不到商品時回傳null
+     */
+    public Integer getCompanyId(Integer productId) {
+        lock.readLock().lock();
+        try {
+            ProductSlot slot = productMap.get(productId);
+            return slot == null ? null : slot.companyId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleOrderUpdateEvent(OrderUpdateEvent event) {
+        if (!ready) return;
+
+        Integer orderId = event.getOrderId();
+        List<OrderDetail> details = event.getDetails() == null ? Collections.emptyList() : event.getDetails();
+
+        lock.writeLock().lock();
+        try {
+            switch (event.getType()) {
+                case CREATED:
+                    if (!pendingHolds.containsKey(orderId) && !details.isEmpty()) {
+                        PendingHold hold = new PendingHold(orderId, details.get(0).getExpiredTime().getTime(), details);
+                        pendingHolds.put(orderId, hold);
+                        expiryQueue.add(hold);
+                        apply(details, 1);
+                        updateNextExpireAt();
+                    }
+                    break;
+                case PAID:
+                    // 臨時佔用轉為正式預訂, 數量不變
+                    // 若已被視為過期釋放 (付款時已超過過期時間), 需要重新佔用
+                    if (pendingHolds.remove(orderId) == null) {
+                        apply(details, 1);
+                    }
+                    break;
+                case EXPIRED:
+                    releasePendingHold(orderId);
+                    break;
+                case DELETED:
+                    // 未付款訂單只需要釋放仍在佔用中的部分, 已付款訂單直接扣回
+                    if (releasePendingHold(orderId) == null && !UNPAID.equals(event.getPayStatus())) {
+                        apply(details, -1);
+                    }
+                    break;
+                default:
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleProductUpdateEvent(ProductUpdateEvent event) {
+        if (!ready) return;
+
+        Product product = event.getProduct();
+        lock.writeLock().lock();
+        try {
+            ProductSlot slot = productMap.get(product.getProductId());
+            if (event.getType() == ProductUpdateEvent.Type.DELETED) {
+                if (slot != null) {
+                    productMap.remove(slot.productId);
+                    List<ProductSlot> slots = companyProductMap.get(slot.companyId);
+                    if (slots != null) slots.remove(slot);
+                }
+                return;
+            }
+
+            if (slot == null) {
+                slot = new ProductSlot(product.getProductId());
+                slot.update(product);
+                productMap.put(slot.productId, slot);
+                companyProductMap.computeIfAbsent(slot.companyId, k -> new ArrayList<>()).add(slot);
+            } else {
+                slot.update(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 以下方法呼叫前需持有寫鎖
+
+    private PendingHold releasePendingHold(Integer orderId) {
+        PendingHold hold = pendingHolds.remove(orderId);
+        if (hold != null) {
+            apply(hold.details, -1);
+        }
+        return hold;
+    }
+
+    private void apply(List<OrderDetail> details, int sign) {
+        for (OrderDetail detail : details) {
+            apply(productMap, baseDay, detail, sign);
+        }
+    }
+
+    private void updateNextExpireAt() {
+        PendingHold head = expiryQueue.peek();
+        nextExpireAt = head == null ? Long.MAX_VALUE : head.expireAt;
+    }
+
+    private void releaseExpiredHolds() {
+        long now = System.currentTimeMillis();
+        if (nextExpireAt > now) return;
+
+        lock.writeLock().lock();
+        try {
+            while (!expiryQueue.isEmpty() && expiryQueue.peek().expireAt <= now) {
+                PendingHold hold = expiryQueue.poll();
+                // 已付款或已刪除的訂單會先從 pendingHolds 移除, 只處理仍在佔用中的臨時訂單
+                if (pendingHolds.get(hold.orderId) == hold) {
+                    releasePendingHold(hold.orderId);
+                }
+            }
+            updateNextExpireAt();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void apply(Map<Integer, ProductSlot> productMap, long baseDay, OrderDetail detail, int sign) {
+        ProductSlot slot = productMap.get(detail.getProductId());
+        if (slot == null || detail.getBookedDate() == null) return;
+        int index = (int) (detail.getBookedDate().toLocalDate().toEpochDay() - baseDay);
+        if (index < 0 || index >= HORIZON_DAYS) return;
+        slot.booked[index] += sign * detail.getQuantity();
+    }
+
+    private static long toEpochDay(Object value) {
+        if (value instanceof LocalDate localDate) {
+            return localDate.toEpochDay();
+        }
+        return ((Date) value).toLocalDate().toEpochDay();
+    }
+
+    private static class ProductSlot {
+        final int productId;
+        final int[] booked = new int[HORIZON_DAYS];   // 每日已預訂數量
+        int companyId;
+        String productName;
+        int maxOccupancy;
+        int stock;
+        int price;
+
+        ProductSlot(int productId) {
+            this.productId = productId;
+        }
+
+        void update(Product product) {
+            companyId = product.getCompanyId();
+            productName = product.getProductName();
+            maxOccupancy = product.getMaxOccupancy() == null ? 0 : product.getMaxOccupancy();
+            stock = product.getStock();
+            price = product.getPrice() == null ? 0 : product.getPrice();
+        }
+    }
+
+    private static class PendingHold {
+        final int orderId;
+        final long expireAt;
+        final List<OrderDetail> details;
+
+        PendingHold(int orderId, long expireAt, List<OrderDetail> details) {
+            this.orderId = orderId;
+            this.expireAt = expireAt;
+            this.details = details;
+        }
+    }
+}
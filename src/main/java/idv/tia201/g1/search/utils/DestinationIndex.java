@@ -0,0 +1,210 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.member.dao.CompanyDao;
+import idv.tia201.g1.member.entity.Company;
+import idv.tia201.g1.member.event.CompanyUpdateEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Component
+public class DestinationIndex {
+    // 目的地索引設計思路:
+    //      原本以 city / country / company_name LIKE '%目的地%' 查詢商家, 前置萬用字元無法使用索引, 每次都是全表掃描
+    //      改為在記憶體中建立 "字元 n-gram -> 商家編號" 的倒排索引 (單字 + 雙字), 中文地名不需要斷詞也能做子字串比對
+    // 查詢:
+    //      取關鍵字的所有雙字 (只有一個字時取單字) 求交集得到候選商家, 再以 contains 確認, 結果與原本 LIKE 相同 (不分大小寫)
+    // 一致性:
+    //      註冊 / 修改 / 刪除商家時透過事件即時更新, 其他節點的異動由定期重建修正
+
+    private final CompanyDao companyDao;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, Set<Integer>> postings = new HashMap<>();   // n-gram -> 商家編號
+    private Map<Integer, String[]> companyTerms = new HashMap<>();   // 商家編號 -> 索引的欄位內容 (已轉小寫)
+
+    private volatile boolean ready = false;
+
+    public DestinationIndex(CompanyDao companyDao) {
+        this.companyDao = companyDao;
+    }
+
+    /**
+     * 從資料庫重新建立整個索引 (啟動時執行, 之後定期校正)
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 30, timeUnit = TimeUnit.MINUTES)
+    public void reload() {
+        try {
+            List<Company> companies = companyDao.findAll();
+
+            Map<String, Set<Integer>> newPostings = new HashMap<>();
+            Map<Integer, String[]> newCompanyTerms = new HashMap<>();
+            for (Company company : companies) {
+                String[] terms = toTerms(company);
+                newCompanyTerms.put(company.getCompanyId(), terms);
+                addPostings(newPostings, company.getCompanyId(), terms);
+            }
+
+            lock.writeLock().lock();
+            try {
+                postings = newPostings;
+                companyTerms = newCompanyTerms;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.debug("DestinationIndex reloaded: {} companies, {} grams", newCompanyTerms.size(), newPostings.size());
+        } catch (Exception e) {
+            // 載入失敗時保留舊資料 (尚未載入成功時, 查詢會退回資料庫)
+            log.error("DestinationIndex reload failed", e);
+        }
+    }
+
+    /**
+     * 查詢城市, 國家或商家名稱包含目的地的商家
+     * 回傳結果與 SearchDao.findCompanyIdsByCityOrCountry 相同
+     *
+     * @param destination 目的地關鍵字
+     * @return 商家編號 (由小到大); 尚未載入完成或關鍵字含有 LIKE 萬用字元時回傳null (呼叫端需退回資料庫查詢)
+     */
+    public List<Integer> findCompanyIds(String destination) {
+        if (!ready || destination == null) return null;
+        // % _ 在 LIKE 中是萬用字元, 維持原本的行為交給資料庫處理
+        if (destination.indexOf('%') >= 0 || destination.indexOf('_') >= 0 || destination.indexOf('\\') >= 0) return null;
+
+        String keyword = destination.toLowerCase(Locale.ROOT);
+
+        lock.readLock().lock();
+        try {
+            if (keyword.isEmpty()) {
+                List<Integer> all = new ArrayList<>(companyTerms.keySet());
+                Collections.sort(all);
+                return all;
+            }
+
+            // 取出所有 n-gram 的商家集合, 從最小的集合開始求交集
+            List<Set<Integer>> sets = new ArrayList<>();
+            for (String gram : toQueryGrams(keyword)) {
+                Set<Integer> set = postings.get(gram);
+                if (set == null) return new ArrayList<>();
+                sets.add(set);
+            }
+            sets.sort(Comparator.comparingInt(Set::size));
+
+            List<Integer> companyIds = new ArrayList<>();
+            for (Integer companyId : sets.get(0)) {
+                boolean matched = true;
+                for (int i = 1; i < sets.size() && matched; i++) {
+                    matched = sets.get(i).contains(companyId);
+                }
+                if (matched && containsKeyword(companyTerms.get(companyId), keyword)) {
+                    companyIds.add(companyId);
+                }
+            }
+            Collections.sort(companyIds);
+            return companyIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 商家是否會出現在目的地的搜尋結果中 (與 findCompanyIds 的比對方式相同)
+     * 目的地含有 LIKE 萬用字元時無法在記憶體中比對, 一律視為符合
+     */
+    public static boolean matches(Company company, String destination) {
+        if (destination.indexOf('%') >= 0 || destination.indexOf('_') >= 0 || destination.indexOf('\\') >= 0) return true;
+        return containsKeyword(toTerms(company), destination.toLowerCase(Locale.ROOT));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleCompanyUpdateEvent(CompanyUpdateEvent event) {
+        if (!ready) return;
+
+        Company company = event.getCompany();
+        Integer companyId = company.getCompanyId();
+        if (companyId == null) return;
+
+        lock.writeLock().lock();
+        try {
+            // 先移除舊的內容, 再依照最新資料重新加入
+            String[] oldTerms = companyTerms.remove(companyId);
+            if (oldTerms != null) {
+                for (String gram : toIndexGrams(oldTerms)) {
+                    Set<Integer> set = postings.get(gram);
+                    if (set == null) continue;
+                    set.remove(companyId);
+                    if (set.isEmpty()) postings.remove(gram);
+                }
+            }
+
+            if (event.getType() == CompanyUpdateEvent.Type.SAVED) {
+                String[] terms = toTerms(company);
+                companyTerms.put(companyId, terms);
+                addPostings(postings, companyId, terms);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void addPostings(Map<String, Set<Integer>> postings, Integer companyId, String[] terms) {
+        for (String gram : toIndexGrams(terms)) {
+            postings.computeIfAbsent(gram, k -> new HashSet<>()).add(companyId);
+        }
+    }
+
+    private static String[] toTerms(Company company) {
+        return new String[]{
+                normalize(company.getCity()),
+                normalize(company.getCountry()),
+                normalize(company.getCompanyName())
+        };
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean containsKeyword(String[] terms, String keyword) {
+        if (terms == null) return false;
+        for (String term : terms) {
+            if (term.contains(keyword)) return true;
+        }
+        return false;
+    }
+
+    // 索引時每個欄位都加入單字與雙字
+    private static Set<String> toIndexGrams(String[] terms) {
+        Set<String> grams = new HashSet<>();
+        for (String term : terms) {
+            for (int i = 0; i < term.length(); i++) {
+                grams.add(term.substring(i, i + 1));
+                if (i + 1 < term.length()) {
+                    grams.add(term.substring(i, i + 2));
+                }
+            }
+        }
+        return grams;
+    }
+
+    // 查詢時只有一個字用單字, 否則只用雙字 (雙字的交集已包含所有單字的條件)
+    private static Set<String> toQueryGrams(String keyword) {
+        Set<String> grams = new HashSet<>();
+        if (keyword.length() == 1) {
+            grams.add(keyword);
+            return grams;
+        }
+        for (int i = 0; i + 1 < keyword.length(); i++) {
+            grams.add(keyword.substring(i, i + 2));
+        }
+        return grams;
+    }
+}
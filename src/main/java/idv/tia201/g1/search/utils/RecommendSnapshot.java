@@ -0,0 +1,190 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.member.dao.CompanyDao;
+import idv.tia201.g1.member.dao.CompanyPhotosDao;
+import idv.tia201.g1.member.dao.CompanyReviewDao;
+import idv.tia201.g1.member.entity.Company;
+import idv.tia201.g1.member.entity.CompanyPhotos;
+import idv.tia201.g1.member.event.CompanyUpdateEvent;
+import idv.tia201.g1.product.utils.DiscountCalendar;
+import idv.tia201.g1.search.dto.RecommendCompanyDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Date;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+public class RecommendSnapshot {
+    // 首頁推薦快照設計思路:
+    //      首頁每次載入都會查詢 熱門 / 隨機 / 折扣 三組商家, 隨機使用 ORDER BY RAND() (全表排序),
+    //      之後每個商家再分別查詢 商家資料, 照片, 評論數
+    //      改為在記憶體中保存所有商家組合好的 RecommendCompanyDTO, 以及依評分排序的商家編號
+    // 隨機:
+    //      從商家編號陣列抽樣 (只交換抽到的位置的 Fisher-Yates), 不需要複製整個陣列
+    // 折扣:
+    //      當晚有折扣的商家由 DiscountCalendar 計算, 折扣異動時已即時更新
+    // 一致性:
+    //      商家資料 / 照片異動時透過事件更新單一商家, 評論數等其他異動由定期重建修正
+    //      快照建立後不再修改, 更新時整份替換; 回傳的 DTO 為共用物件, 呼叫端不可修改
+
+    private final CompanyDao companyDao;
+    private final CompanyPhotosDao companyPhotosDao;
+    private final CompanyReviewDao companyReviewDao;
+    private final DiscountCalendar discountCalendar;
+
+    private volatile Snapshot snapshot = null;
+
+    public RecommendSnapshot(CompanyDao companyDao, CompanyPhotosDao companyPhotosDao, CompanyReviewDao companyReviewDao, DiscountCalendar discountCalendar) {
+        this.companyDao = companyDao;
+        this.companyPhotosDao = companyPhotosDao;
+        this.companyReviewDao = companyReviewDao;
+        this.discountCalendar = discountCalendar;
+    }
+
+    /**
+     * 從資料庫重新建立所有商家的推薦資料 (啟動時執行, 之後定期校正)
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public synchronized void reload() {
+        try {
+            List<Company> companies = companyDao.findAll();
+
+            Map<Integer, List<CompanyPhotos>> photoMap = new HashMap<>();
+            for (CompanyPhotos photo : companyPhotosDao.findAll()) {
+                photoMap.computeIfAbsent(photo.getCompanyId(), k -> new ArrayList<>()).add(photo);
+            }
+
+            Map<Integer, Integer> rateCountMap = new HashMap<>();
+            if (!companies.isEmpty()) {
+                List<Integer> companyIds = companies.stream().map(Company::getCompanyId).toList();
+                for (Object[] row : companyReviewDao.countGroupByCompanyIds(companyIds)) {
+                    rateCountMap.put(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+                }
+            }
+
+            Map<Integer, RecommendCompanyDTO> dtoMap = new HashMap<>();
+            for (Company company : companies) {
+                Integer companyId = company.getCompanyId();
+                dtoMap.put(companyId, toDTO(company, photoMap.getOrDefault(companyId, new ArrayList<>()), rateCountMap.getOrDefault(companyId, 0)));
+            }
+
+            snapshot = new Snapshot(dtoMap);
+            log.debug("RecommendSnapshot reloaded: {} companies", dtoMap.size());
+        } catch (Exception e) {
+            // 載入失敗時保留舊資料 (尚未載入成功時, 查詢會退回資料庫)
+            log.error("RecommendSnapshot reload failed", e);
+        }
+    }
+
+    /**
+     * 評分最高的商家
+     *
+     * @return 尚未載入完成時回傳null (呼叫端需退回資料庫查詢)
+     */
+    public List<RecommendCompanyDTO> getHotCompanies(int size) {
+        Snapshot current = snapshot;
+        if (current == null) return null;
+
+        int limit = Math.min(Math.max(size, 0), current.hotIds.length);
+        List<RecommendCompanyDTO> res = new ArrayList<>(limit);
+        for (int i = 0; i < limit; i++) {
+            res.add(current.dtoMap.get(current.hotIds[i]));
+        }
+        return res;
+    }
+
+    /**
+     * 隨機挑選的商家 (不重複)
+     *
+     * @return 尚未載入完成時回傳null (呼叫端需退回資料庫查詢)
+     */
+    public List<RecommendCompanyDTO> getRandCompanies(int size) {
+        Snapshot current = snapshot;
+        if (current == null) return null;
+
+        int[] ids = current.hotIds;
+        int limit = Math.min(Math.max(size, 0), ids.length);
+
+        // 只記錄被交換過的位置, 等同在陣列副本上執行前 limit 步的 Fisher-Yates
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Integer, Integer> swapped = new HashMap<>();
+        List<RecommendCompanyDTO> res = new ArrayList<>(limit);
+        for (int i = 0; i < limit; i++) {
+            int j = i + random.nextInt(ids.length - i);
+            int picked = swapped.getOrDefault(j, ids[j]);
+            swapped.put(j, swapped.getOrDefault(i, ids[i]));
+            res.add(current.dtoMap.get(picked));
+        }
+        return res;
+    }
+
+    /**
+     * 指定日期有折扣的商家, 依最低折扣由低到高排序
+     *
+     * @return 尚未載入完成時回傳null (呼叫端需退回資料庫查詢)
+     */
+    public List<RecommendCompanyDTO> getDiscountCompanies(Date date, int size) {
+        Snapshot current = snapshot;
+        if (current == null) return null;
+
+        List<Integer> companyIds = discountCalendar.getDiscountCompanyIds(date);
+        if (companyIds == null) return null;
+
+        List<RecommendCompanyDTO> res = new ArrayList<>(Math.min(Math.max(size, 0), companyIds.size()));
+        for (Integer companyId : companyIds) {
+            if (res.size() >= size) break;
+            RecommendCompanyDTO dto = current.dtoMap.get(companyId);
+            if (dto != null) res.add(dto);
+        }
+        return res;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void handleCompanyUpdateEvent(CompanyUpdateEvent event) {
+        Snapshot current = snapshot;
+        Integer companyId = event.getCompany().getCompanyId();
+        if (current == null || companyId == null) return;
+
+        Map<Integer, RecommendCompanyDTO> dtoMap = new HashMap<>(current.dtoMap);
+        if (event.getType() == CompanyUpdateEvent.Type.DELETED) {
+            dtoMap.remove(companyId);
+        } else {
+            RecommendCompanyDTO old = dtoMap.get(companyId);
+            dtoMap.put(companyId, toDTO(
+                    event.getCompany(),
+                    companyPhotosDao.findByCompanyId(companyId),
+                    old == null ? 0 : old.getRateCount()
+            ));
+        }
+        snapshot = new Snapshot(dtoMap);
+    }
+
+    private static RecommendCompanyDTO toDTO(Company company, List<CompanyPhotos> photos, int rateCount) {
+        RecommendCompanyDTO dto = new RecommendCompanyDTO();
+        BeanUtils.copyProperties(company, dto);
+        dto.setPhotos(photos);
+        dto.setRateCount(rateCount);
+        return dto;
+    }
+
+    private static class Snapshot {
+        final Map<Integer, RecommendCompanyDTO> dtoMap;
+        final int[] hotIds;     // 依評分由高到低排序的商家編號 (同分時依商家編號)
+
+        Snapshot(Map<Integer, RecommendCompanyDTO> dtoMap) {
+            this.dtoMap = dtoMap;
+            this.hotIds = dtoMap.values().stream()
+                    .sorted(Comparator.comparing((RecommendCompanyDTO dto) -> dto.getScore(), Comparator.reverseOrder())
+                            .thenComparing(RecommendCompanyDTO::getCompanyId))
+                    .mapToInt(RecommendCompanyDTO::getCompanyId)
+                    .toArray();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.core.utils.UserHolder;
+import idv.tia201.g1.search.dto.SearchRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static idv.tia201.g1.core.utils.Constants.CACHE_SEARCH_HLL;
+
+@Slf4j
+@Component
+public class SearchAnalytics {
+    // 搜尋分析設計思路:
+    //      想知道哪些目的地 / 日期造成搜尋負載, 但不想記錄每一筆查詢
+    //      次數: 以 count-min sketch (固定大小的計數陣列) 估計 "目的地" 與 "目的地 + 入住日期" 的搜尋次數 (只會高估, 不會低估),
+    //            另外保留估計值最高的少量候選作為熱門排行, 每小時換一個統計區間
+    //      人數: 以 Redis HyperLogLog 估計每天 (與每個目的地每天) 的不重複搜尋者, 所有節點共用
+    // 負擔:
+    //      搜尋時只更新本機的計數陣列與待寫入的集合, HyperLogLog 每隔幾秒以 pipeline 一次寫入 Redis
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 4096;
+    private static final int TOP_CAPACITY = 100;            // 熱門排行保留的候選數
+    private static final int MAX_PENDING_VISITORS = 50000;  // 尚未寫入 Redis 的搜尋者上限 (超過時略過)
+    private static final long HLL_TTL_DAYS = 3;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private volatile Window current = new Window();
+    private volatile List<Map<String, Object>> lastDestinations = Collections.emptyList();
+    private volatile List<Map<String, Object>> lastDestinationDates = Collections.emptyList();
+
+    private final Map<String, Set<String>> pendingVisitors = new ConcurrentHashMap<>();  // HyperLogLog key -> 搜尋者
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    public SearchAnalytics(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 記錄一次搜尋
+     */
+    public void recordSearch(SearchRequest request) {
+        if (request.getDestination() == null) return;
+        String destination = request.getDestination().trim().toLowerCase(Locale.ROOT);
+
+        Window window = current;
+        window.destinations.add(destination);
+        window.destinationDates.add(destination + "|" + request.getStartDate());
+
+        String visitor = getVisitor();
+        if (visitor == null || pendingCount.get() >= MAX_PENDING_VISITORS) return;
+        String today = LocalDate.now().toString();
+        addPendingVisitor(CACHE_SEARCH_HLL + today, visitor);
+        addPendingVisitor(CACHE_SEARCH_HLL + today + ":" + destination, visitor);
+    }
+
+    /**
+     * 換下一個統計區間, 保留上一個區間的熱門排行
+     */
+    @Scheduled(fixedRate = 1, initialDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void rotate() {
+        Window finished = current;
+        current = new Window();
+        lastDestinations = finished.destinations.top(TOP_CAPACITY);
+        lastDestinationDates = finished.destinationDates.top(TOP_CAPACITY);
+    }
+
+    /**
+     * 將累積的搜尋者寫入 Redis HyperLogLog
+     */
+    @Scheduled(fixedDelay = 10, timeUnit = TimeUnit.SECONDS)
+    public void flushVisitors() {
+        if (pendingVisitors.isEmpty()) return;
+
+        Map<String, String[]> batch = new HashMap<>();
+        for (Iterator<Map.Entry<String, Set<String>>> it = pendingVisitors.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Set<String>> entry = it.next();
+            it.remove();
+            batch.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+        }
+        pendingCount.set(0);
+
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Void>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Void execute(RedisOperations operations) throws DataAccessException {
+                    batch.forEach((key, visitors) -> {
+                        operations.opsForHyperLogLog().add(key, visitors);
+                        operations.expire(key, HLL_TTL_DAYS, TimeUnit.DAYS);
+                    });
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            // 統計資料遺失不影響搜尋
+            log.warn("search analytics flush failed", e);
+        }
+    }
+
+    /**
+     * 管理者查看的統計資料
+     *
+     * @param top 熱門排行的筆數
+     */
+    public Map<String, Object> snapshot(int top) {
+        int limit = Math.min(Math.max(top, 0), TOP_CAPACITY);
+        Window window = current;
+        String today = LocalDate.now().toString();
+
+        List<Map<String, Object>> destinations = window.destinations.top(limit);
+        List<Map<String, Object>> uniqueByDestination = new ArrayList<>(destinations.size());
+        for (Map<String, Object> destination : destinations) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", destination.get("key"));
+            item.put("uniqueSearchers", stringRedisTemplate.opsForHyperLogLog().size(CACHE_SEARCH_HLL + today + ":" + destination.get("key")));
+            uniqueByDestination.add(item);
+        }
+
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("windowStart", new Date(window.startTime));
+        res.put("destinations", destinations);
+        res.put("destinationDates", window.destinationDates.top(limit));
+        res.put("lastWindowDestinations", lastDestinations.subList(0, Math.min(limit, lastDestinations.size())));
+        res.put("lastWindowDestinationDates", lastDestinationDates.subList(0, Math.min(limit, lastDestinationDates.size())));
+        res.put("uniqueSearchersToday", stringRedisTemplate.opsForHyperLogLog().size(CACHE_SEARCH_HLL + today));
+        res.put("uniqueSearchersByDestination", uniqueByDestination);
+        return res;
+    }
+
+    private void addPendingVisitor(String key, String visitor) {
+        if (pendingVisitors.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(visitor)) {
+            pendingCount.incrementAndGet();
+        }
+    }
+
+    // 登入的使用者以身份區分, 未登入時以來源 IP 區分
+    private static String getVisitor() {
+        if (UserHolder.getUser() != null) {
+            return UserHolder.getRole() + ":" + UserHolder.getId();
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                return "ip:" + forwarded.split(",")[0].trim();
+            }
+            return "ip:" + request.getRemoteAddr();
+        }
+        return null;
+    }
+
+    private static class Window {
+        final long startTime = System.currentTimeMillis();
+        final HeavyHitters destinations = new HeavyHitters();
+        final HeavyHitters destinationDates = new HeavyHitters();
+    }
+
+    // count-min sketch + 估計值最高的候選
+    private static class HeavyHitters {
+        private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+        final AtomicLongArray counts = new AtomicLongArray(DEPTH * WIDTH);
+        final Map<String, Long> candidates = new ConcurrentHashMap<>();
+        volatile long threshold = 0;    // 候選已滿時, 估計值需超過此值才加入
+
+        void add(String key) {
+            long hash = key.hashCode();
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                int column = (int) ((mix(hash ^ SEEDS[row]) >>> 1) % WIDTH);
+                estimate = Math.min(estimate, counts.incrementAndGet(row * WIDTH + column));
+            }
+
+            if (candidates.size() < TOP_CAPACITY || estimate > threshold || candidates.containsKey(key)) {
+                candidates.put(key, estimate);
+                if (candidates.size() > TOP_CAPACITY * 2) prune();
+            }
+        }
+
+        synchronized void prune() {
+            if (candidates.size() <= TOP_CAPACITY * 2) return;
+            List<Map.Entry<String, Long>> entries = new ArrayList<>(candidates.entrySet());
+            entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+            for (int i = TOP_CAPACITY; i < entries.size(); i++) {
+                candidates.remove(entries.get(i).getKey());
+            }
+            threshold = entries.get(TOP_CAPACITY - 1).getValue();
+        }
+
+        List<Map<String, Object>> top(int limit) {
+            List<Map.Entry<String, Long>> entries = new ArrayList<>(candidates.entrySet());
+            entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+            List<Map<String, Object>> res = new ArrayList<>(Math.min(limit, entries.size()));
+            for (int i = 0; i < entries.size() && i < limit; i++) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("key", entries.get(i).getKey());
+                item.put("count", entries.get(i).getValue());
+                res.add(item);
+            }
+            return res;
+        }
+
+        private static long mix(long value) {
+            value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+            value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+            return value ^ (value >>> 33);
+        }
+    }
+}
@@ -0,0 +1,631 @@
+package idv.tia201.g1.search.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import idv.tia201.g1.search.dto.PriceCalendarResponse;
+import idv.tia201.g1.search.dto.SearchFacet;
+import idv.tia201.g1.search.dto.SearchProductResponse;
+import idv.tia201.g1.search.dto.SearchResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static idv.tia201.g1.core.utils.Constants.CACHE_SEARCH_DESTINATIONS;
+import static idv.tia201.g1.core.utils.Constants.CACHE_SEARCH_DESTINATION_PREFIX;
+import static idv.tia201.g1.core.utils.Constants.CACHE_SEARCH_INDEX;
+import static idv.tia201.g1.core.utils.Constants.CACHE_SEARCH_PREFIX;
+
+@Slf4j
+@Component
+public class SearchCacheClient {
+    // 搜尋緩存工具設計思路:
+    //      原本每個搜尋結果都 leftPush 一次 (一間旅館一次網路往返), 讀取時 size + range 再逐筆 Jackson 反序列化
+    //      改為整個結果集合編碼成一個壓縮過的 byte[], 寫入只需要一次 SET, 讀取只需要一次 GET
+    // 格式:
+    //      [版本 1 byte] + deflate( [筆數 int] [每筆的起始位置 int x (筆數+1)] [每筆的 JSON bytes] )
+    //      讀取時只解壓縮, 每一筆在真正用到時才反序列化
+    // 排序視圖:
+    //      建立緩存時同時算好價格與評分的正反向排序索引, 同分時維持原本的順序 (與原本以 Comparator.reversed() 穩定排序的結果相同)
+    //      [筆數] [起始位置] 之後接著 [價格由低到高] [價格由高到低] [評分由高到低] [評分由低到高] (各為 int x 筆數)
+    //      查詢第N頁時只反序列化該頁的 size 筆, 結果集合不變時不會重新排序
+    // 篩選:
+    //      排序索引之後接著每個 SearchFacet 的 bitset (long x ceil(筆數/64)), 第 i 個 bit 表示第 i 筆是否符合
+    //      篩選與各條件的筆數都是 bitset 的 AND / OR / bitCount, 不需要重新查詢或反序列化
+    // 空結果:
+    //      查無結果也會緩存 (筆數為0), 避免冷門目的地每次都重新查詢資料庫
+    // 反向索引:
+    //      每個候選商家一個 Set (search-idx:{companyId}), 記錄哪些搜尋緩存依賴這個商家
+    //      訂單 / 房型 / 折扣異動時只刪除該商家且日期重疊的緩存, 因此緩存改為固定過期時間 (讀取時不再延長), 索引與緩存同時過期
+    //      刪除後延遲一段時間再刪一次 (交給 Spring 的排程執行緒), 避免異動當下正在重建的緩存寫回舊資料
+    // 新的候選商家:
+    //      反向索引只包含建立緩存當下的候選商家, 新註冊或修改城市的商家不在索引中
+    //      搜尋緩存另外依目的地登記在 search-dest:{目的地} (zset: key -> 過期時間), 目的地登記在 search-dests (zset: 目的地 -> 過期時間)
+    //      商家異動時只比對目的地 (數量遠小於緩存數量), 再刪除符合的目的地底下的緩存
+    // 寫入:
+    //      緩存本身與所有登記 (目的地 / 反向索引) 在同一個 pipeline 送出, 只需要一次網路往返
+    // 商家頁面:
+    //      商家的房型列表 (search-company:{companyId}:{入住日期}:{退房日期}) 與價格日曆 (search-calendar:{companyId}:{月初}:{下個月初})
+    //      以 JSON 緩存, 同樣登記在反向索引, 與搜尋緩存一起失效
+
+    private static final byte VERSION = 4;
+
+    private static final long DELAYED_EVICT_MILLIS = 1000L;
+    private static final int DESTINATION_BATCH_SIZE = 500;     // 依目的地刪除時每次讀取的目的地數量
+
+    private final RedisTemplate<String, byte[]> redisTemplateForImage;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TaskScheduler taskScheduler;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final ObjectReader productReader;
+    private final ObjectWriter productWriter;
+    private final ObjectReader calendarReader;
+    private final ObjectWriter calendarWriter;
+
+    public SearchCacheClient(RedisTemplate<String, byte[]> redisTemplateForImage, StringRedisTemplate stringRedisTemplate,
+                             @Qualifier("taskScheduler") TaskScheduler taskScheduler, ObjectMapper objectMapper) {
+        this.redisTemplateForImage = redisTemplateForImage;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.taskScheduler = taskScheduler;
+        this.reader = objectMapper.readerFor(SearchResponse.class);
+        this.writer = objectMapper.writerFor(SearchResponse.class);
+        this.productReader = objectMapper.readerForListOf(SearchProductResponse.class);
+        this.productWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, SearchProductResponse.class));
+        this.calendarReader = objectMapper.readerFor(PriceCalendarResponse.class);
+        this.calendarWriter = objectMapper.writerFor(PriceCalendarResponse.class);
+    }
+
+    /**
+     * 讀取緩存
+     *
+     * @param key key
+     * @return 緩存的搜尋結果; 不存在或格式不符時回傳null
+     */
+    public CachedSearchResult get(String key) {
+        byte[] blob;
+        try {
+            blob = redisTemplateForImage.opsForValue().get(key);
+        } catch (DataAccessException e) {
+            // 舊版本的緩存 (List) 會發生型別錯誤, 視為沒有緩存, 重建時會直接覆蓋
+            log.warn("search cache read failed: {}", key, e);
+            return null;
+        }
+        if (blob == null || blob.length == 0 || blob[0] != VERSION) return null;
+
+        try {
+            return new CachedSearchResult(reader, inflate(blob));
+        } catch (DataFormatException e) {
+            log.warn("search cache corrupted: {}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 將整個搜尋結果編碼後一次寫入, 並登記到候選商家的反向索引
+     *
+     * @param key        key
+     * @param responses  搜尋結果
+     * @param companyIds 這次搜尋的候選商家 (包含沒有空房的商家, 之後有房間釋出時也需要刪除緩存)
+     * @param ttl        過期時間(秒)
+     * @return 與緩存內容相同的結果 (剛建立的資料不需要再讀一次)
+     */
+    public CachedSearchResult set(String key, List<SearchResponse> responses, Collection<Integer> companyIds, long ttl) {
+        byte[] payload = encode(responses);
+        byte[] blob = deflate(payload);
+        long now = System.currentTimeMillis();
+        String destination = getDestination(key);
+
+        RedisSerializer<String> serializer = RedisSerializer.string();
+        byte[] rawKey = serializer.serialize(key);
+        redisTemplateForImage.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().set(rawKey, blob, Expiration.seconds(ttl), RedisStringCommands.SetOption.upsert());
+            if (destination != null) {
+                byte[] destinationKey = serializer.serialize(CACHE_SEARCH_DESTINATION_PREFIX + destination);
+                connection.zSetCommands().zAdd(destinationKey, now + ttl * 1000, rawKey);
+                connection.zSetCommands().zRemRangeByScore(destinationKey, 0, now);    // 移除已經過期的登記
+                connection.keyCommands().expire(destinationKey, ttl);
+                byte[] destinationsKey = serializer.serialize(CACHE_SEARCH_DESTINATIONS);
+                connection.zSetCommands().zAdd(destinationsKey, now + ttl * 1000, serializer.serialize(destination));
+                connection.zSetCommands().zRemRangeByScore(destinationsKey, 0, now);
+            }
+            for (Integer companyId : companyIds) {
+                byte[] indexKey = serializer.serialize(CACHE_SEARCH_INDEX + companyId);
+                connection.setCommands().sAdd(indexKey, rawKey);
+                connection.keyCommands().expire(indexKey, ttl);
+            }
+            return null;
+        });
+        return new CachedSearchResult(reader, payload);
+    }
+
+    /**
+     * 讀取商家的房型列表緩存
+     *
+     * @return 房型列表; 不存在或格式不符時回傳null
+     */
+    public List<SearchProductResponse> getProducts(String key) {
+        return readJson(key, productReader);
+    }
+
+    /**
+     * 寫入商家的房型列表緩存, 並登記到商家的反向索引
+     *
+     * @param key       key
+     * @param products  房型列表 (已完成排序與圖片處理)
+     * @param companyId 商家編號
+     * @param ttl       過期時間(秒)
+     */
+    public void setProducts(String key, List<SearchProductResponse> products, Integer companyId, long ttl) {
+        writeJson(key, productWriter, products, companyId, ttl);
+    }
+
+    /**
+     * 讀取商家的價格日曆緩存
+     *
+     * @return 價格日曆; 不存在或格式不符時回傳null
+     */
+    public PriceCalendarResponse getCalendar(String key) {
+        return readJson(key, calendarReader);
+    }
+
+    /**
+     * 寫入商家的價格日曆緩存, 並登記到商家的反向索引
+     */
+    public void setCalendar(String key, PriceCalendarResponse calendar, Integer companyId, long ttl) {
+        writeJson(key, calendarWriter, calendar, companyId, ttl);
+    }
+
+    /**
+     * 取得緩存剩餘的有效時間
+     *
+     * @return 剩餘秒數; 緩存不存在時回傳null
+     */
+    public Long getExpire(String key) {
+        Long expire = redisTemplateForImage.getExpire(key, TimeUnit.SECONDS);
+        return expire == null || expire == -2 ? null : expire;
+    }
+
+    public void delete(String key) {
+        redisTemplateForImage.delete(key);
+    }
+
+    /**
+     * 刪除依賴指定商家, 且住宿日期與 [from, to] 重疊的搜尋緩存
+     *
+     * @param companyId 商家編號
+     * @param from      異動的第一晚 (null 表示不限日期)
+     * @param to        異動的最後一晚 (null 表示不限日期)
+     */
+    public void evictByCompany(Integer companyId, LocalDate from, LocalDate to) {
+        evict(companyId, from, to);
+        // 延遲雙刪: 異動當下可能有其他請求正在用舊資料重建緩存
+        taskScheduler.schedule(() -> {
+            try {
+                evict(companyId, from, to);
+            } catch (Exception e) {
+                log.warn("delayed search cache eviction failed: company {}", companyId, e);
+            }
+        }, Instant.now().plusMillis(DELAYED_EVICT_MILLIS));
+    }
+
+    /**
+     * 刪除目的地符合條件的搜尋緩存 (新的商家不在反向索引中, 需要依目的地刪除)
+     *
+     * @param matcher 目的地是否需要刪除
+     */
+    public void evictByDestination(Predicate<String> matcher) {
+        evictDestinations(matcher);
+        taskScheduler.schedule(() -> {
+            try {
+                evictDestinations(matcher);
+            } catch (Exception e) {
+                log.warn("delayed search cache eviction by destination failed", e);
+            }
+        }, Instant.now().plusMillis(DELAYED_EVICT_MILLIS));
+    }
+
+    private void evictDestinations(Predicate<String> matcher) {
+        // 目的地底下的緩存都已過期時, 目的地的登記也不再需要
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.opsForZSet().removeRangeByScore(CACHE_SEARCH_DESTINATIONS, 0, now);
+
+        // 分批比對目的地, 全部比對完才刪除 (刪除過程不會影響分批的位置)
+        List<String> matched = new ArrayList<>();
+        for (long offset = 0; ; offset += DESTINATION_BATCH_SIZE) {
+            Set<String> destinations = stringRedisTemplate.opsForZSet()
+                    .range(CACHE_SEARCH_DESTINATIONS, offset, offset + DESTINATION_BATCH_SIZE - 1);
+            if (destinations == null || destinations.isEmpty()) break;
+            for (String destination : destinations) {
+                if (matcher.test(destination)) matched.add(destination);
+            }
+            if (destinations.size() < DESTINATION_BATCH_SIZE) break;
+        }
+
+        int evicted = 0;
+        for (String destination : matched) {
+            // 只取出尚未過期的緩存, 只移除讀到的登記 (刪除期間新寫入的緩存仍然保留登記, 延遲雙刪時還會處理)
+            String destinationKey = CACHE_SEARCH_DESTINATION_PREFIX + destination;
+            Set<String> keys = stringRedisTemplate.opsForZSet().rangeByScore(destinationKey, now, Double.POSITIVE_INFINITY);
+            if (keys == null || keys.isEmpty()) continue;
+
+            redisTemplateForImage.delete(keys);
+            stringRedisTemplate.opsForZSet().remove(destinationKey, keys.toArray());
+            evicted += keys.size();
+        }
+        if (evicted > 0) {
+            log.debug("evicted {} search caches of {} destinations", evicted, matched.size());
+        }
+    }
+
+    private void evict(Integer companyId, LocalDate from, LocalDate to) {
+        String indexKey = CACHE_SEARCH_INDEX + companyId;
+        Set<String> keys = stringRedisTemplate.opsForSet().members(indexKey);
+        if (keys == null || keys.isEmpty()) return;
+
+        List<String> affected = new ArrayList<>();
+        for (String key : keys) {
+            if (from == null || to == null || overlaps(key, from, to)) {
+                affected.add(key);
+            }
+        }
+        if (affected.isEmpty()) return;
+
+        redisTemplateForImage.delete(affected);
+        stringRedisTemplate.opsForSet().remove(indexKey, affected.toArray());
+        log.debug("evicted {} search caches of company {}", affected.size(), companyId);
+    }
+
+    private <T> T readJson(String key, ObjectReader jsonReader) {
+        try {
+            byte[] json = redisTemplateForImage.opsForValue().get(key);
+            if (json == null || json.length == 0) return null;
+            return jsonReader.readValue(json);
+        } catch (DataAccessException | IOException e) {
+            log.warn("company cache read failed: {}", key, e);
+            return null;
+        }
+    }
+
+    private void writeJson(String key, ObjectWriter jsonWriter, Object value, Integer companyId, long ttl) {
+        byte[] json;
+        try {
+            json = jsonWriter.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        redisTemplateForImage.opsForValue().set(key, json, Duration.ofSeconds(ttl));
+
+        String indexKey = CACHE_SEARCH_INDEX + companyId;
+        stringRedisTemplate.opsForSet().add(indexKey, key);
+        stringRedisTemplate.expire(indexKey, ttl, TimeUnit.SECONDS);
+    }
+
+    // 搜尋緩存的 key 為 search:{目的地}:{成人數}:{房間數}:{入住日期}:{退房日期}, 從後面去掉四段; 無法解析時回傳null
+    private static String getDestination(String key) {
+        if (!key.startsWith(CACHE_SEARCH_PREFIX)) return null;
+        int end = key.length();
+        for (int i = 0; i < 4; i++) {
+            end = key.lastIndexOf(':', end - 1);
+            if (end < CACHE_SEARCH_PREFIX.length()) return null;
+        }
+        return key.substring(CACHE_SEARCH_PREFIX.length(), end);
+    }
+
+    // key 的最後兩段是入住與退房日期 (目的地本身可能包含 ':' 所以從後面解析)
+    private static boolean overlaps(String key, LocalDate from, LocalDate to) {
+        try {
+            int endIndex = key.lastIndexOf(':');
+            int startIndex = key.lastIndexOf(':', endIndex - 1);
+            LocalDate startDate = LocalDate.parse(key.substring(startIndex + 1, endIndex));
+            LocalDate endDate = LocalDate.parse(key.substring(endIndex + 1));
+            // 住宿的晚上為 [startDate, endDate)
+            return !startDate.isAfter(to) && endDate.isAfter(from);
+        } catch (RuntimeException e) {
+            return true;    // 無法解析時保守處理, 直接刪除
+        }
+    }
+
+    private byte[] encode(List<SearchResponse> responses) {
+        int count = responses.size();
+        List<byte[]> elements = new ArrayList<>(count);
+        int total = 0;
+        for (SearchResponse response : responses) {
+            try {
+                byte[] json = writer.writeValueAsBytes(response);
+                elements.add(json);
+                total += json.length;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        // 排序視圖 (同分時以原本的順序為準, 確保分頁結果穩定)
+        Comparator<Integer> byPrice = Comparator.comparingDouble((Integer i) -> responses.get(i).getPrice());
+        Comparator<Integer> byScore = Comparator.comparingDouble((Integer i) -> responses.get(i).getScore()).reversed();
+        Integer[][] views = {
+                sortedIndexes(count, byPrice),
+                sortedIndexes(count, byPrice.reversed()),
+                sortedIndexes(count, byScore),
+                sortedIndexes(count, byScore.reversed())
+        };
+
+        // 篩選用的 bitset
+        int words = (count + 63) >>> 6;
+        SearchFacet[] facets = SearchFacet.values();
+        long[][] facetBits = new long[facets.length][words];
+        for (int i = 0; i < count; i++) {
+            SearchResponse response = responses.get(i);
+            for (SearchFacet facet : facets) {
+                if (facet.getPredicate().test(response)) {
+                    facetBits[facet.ordinal()][i >>> 6] |= 1L << i;
+                }
+            }
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(4 + 4 * (count + 1) + 4 * count * views.length + 8 * words * facets.length + total);
+        payload.putInt(count);
+        int offset = 0;
+        for (byte[] element : elements) {
+            payload.putInt(offset);
+            offset += element.length;
+        }
+        payload.putInt(offset);
+        for (Integer[] view : views) {
+            for (Integer index : view) {
+                payload.putInt(index);
+            }
+        }
+        for (long[] bits : facetBits) {
+            for (long word : bits) {
+                payload.putLong(word);
+            }
+        }
+        for (byte[] element : elements) {
+            payload.put(element);
+        }
+
+        return payload.array();
+    }
+
+    private static Integer[] sortedIndexes(int count, Comparator<Integer> comparator) {
+        Integer[] indexes = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, comparator);
+        return indexes;
+    }
+
+    private static byte[] deflate(byte[] payload) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 4 + 16);
+            out.write(VERSION);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] blob) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(blob, 1, blob.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(blob.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("unexpected end of search cache");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 緩存中的搜尋結果, 每一筆在第一次讀取時才反序列化
+     */
+    public static class CachedSearchResult {
+        private static final int VIEW_COUNT = 4;
+
+        private final ObjectReader reader;
+        private final ByteBuffer payload;
+        private final int count;
+        private final int viewsStart;
+        private final int dataStart;
+        private final long[][] facetBits;
+        private final SearchResponse[] decoded;
+
+        CachedSearchResult(ObjectReader reader, byte[] payload) {
+            this.reader = reader;
+            this.payload = ByteBuffer.wrap(payload);
+            this.count = this.payload.getInt(0);
+            this.viewsStart = 4 + 4 * (count + 1);
+
+            int words = (count + 63) >>> 6;
+            int position = viewsStart + 4 * count * VIEW_COUNT;
+            this.facetBits = new long[SearchFacet.values().length][words];
+            for (long[] bits : facetBits) {
+                for (int w = 0; w < words; w++) {
+                    bits[w] = this.payload.getLong(position);
+                    position += 8;
+                }
+            }
+            this.dataStart = position;
+            this.decoded = new SearchResponse[count];
+        }
+
+        public int size() {
+            return count;
+        }
+
+        /**
+         * 建立篩選條件的 bitset
+         *
+         * @param required 必須全部符合的條件
+         * @param anyOf    符合其中一個即可的條件 (空集合表示不限)
+         * @return 符合條件的 bitset; 沒有任何條件時回傳null
+         */
+        public long[] filter(Collection<SearchFacet> required, Collection<SearchFacet> anyOf) {
+            if (required.isEmpty() && anyOf.isEmpty()) return null;
+
+            int words = (count + 63) >>> 6;
+            long[] mask = new long[words];
+            Arrays.fill(mask, -1L);
+            for (SearchFacet facet : required) {
+                long[] bits = facetBits[facet.ordinal()];
+                for (int w = 0; w < words; w++) mask[w] &= bits[w];
+            }
+            if (!anyOf.isEmpty()) {
+                long[] union = new long[words];
+                for (SearchFacet facet : anyOf) {
+                    long[] bits = facetBits[facet.ordinal()];
+                    for (int w = 0; w < words; w++) union[w] |= bits[w];
+                }
+                for (int w = 0; w < words; w++) mask[w] &= union[w];
+            }
+            // 清除最後一個 word 超出筆數的 bit
+            if ((count & 63) != 0) mask[words - 1] &= (1L << count) - 1;
+            return mask;
+        }
+
+        /**
+         * 符合篩選條件的筆數
+         *
+         * @param mask 篩選條件 (null 表示不篩選)
+         */
+        public int count(long[] mask) {
+            if (mask == null) return count;
+            int total = 0;
+            for (long word : mask) total += Long.bitCount(word);
+            return total;
+        }
+
+        /**
+         * 在篩選條件下, 每個條件各有幾筆
+         *
+         * @param mask 篩選條件 (null 表示不篩選)
+         * @return 條件名稱 -> 筆數
+         */
+        public Map<String, Integer> facetCounts(long[] mask) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (SearchFacet facet : SearchFacet.values()) {
+                long[] bits = facetBits[facet.ordinal()];
+                int total = 0;
+                for (int w = 0; w < bits.length; w++) {
+                    total += Long.bitCount(mask == null ? bits[w] : bits[w] & mask[w]);
+                }
+                counts.put(facet.getKey(), total);
+            }
+            return counts;
+        }
+
+        /**
+         * 依排序方式取得一頁的資料, 只會反序列化該頁的內容
+         *
+         * @param orderBy  排序欄位 (price / score), 預設為價格
+         * @param isDesc   是否反向排序 (價格預設由低到高, 評分預設由高到低)
+         * @param page     頁碼 (從0開始)
+         * @param pageSize 每頁筆數
+         * @param mask     篩選條件 (null 表示不篩選)
+         * @return 該頁的資料
+         */
+        public List<SearchResponse> getPage(String orderBy, Boolean isDesc, int page, int pageSize, long[] mask) {
+            int offset = page * pageSize;
+            int end = Math.min(offset + pageSize, count(mask));
+            if (offset >= end) return Collections.emptyList();
+
+            int viewStart = viewStart(orderBy, isDesc);
+
+            List<SearchResponse> responses = new ArrayList<>(end - offset);
+            int rank = 0;
+            for (int position = 0; position < count && rank < end; position++) {
+                int index = payload.getInt(viewStart + 4 * position);
+                if (mask != null && (mask[index >>> 6] & (1L << index)) == 0) continue;
+                if (rank++ >= offset) {
+                    responses.add(get(index));
+                }
+            }
+            return responses;
+        }
+
+        /**
+         * 依排序方式取得所有資料的索引 (不反序列化)
+         *
+         * @param orderBy 排序欄位 (price / score), 預設為價格
+         * @param isDesc  是否反向排序
+         * @return 依序排列的索引, 搭配 get(index) 逐筆讀取
+         */
+        public int[] order(String orderBy, Boolean isDesc) {
+            int viewStart = viewStart(orderBy, isDesc);
+
+            int[] indexes = new int[count];
+            for (int position = 0; position < count; position++) {
+                indexes[position] = payload.getInt(viewStart + 4 * position);
+            }
+            return indexes;
+        }
+
+        // 排序視圖的順序: 價格, 價格反向, 評分, 評分反向
+        private int viewStart(String orderBy, Boolean isDesc) {
+            int view = ("score".equals(orderBy) ? 2 : 0) + (isDesc != null && isDesc ? 1 : 0);
+            return viewsStart + 4 * count * view;
+        }
+
+        public SearchResponse get(int index) {
+            SearchResponse response = decoded[index];
+            if (response == null) {
+                int from = payload.getInt(4 + 4 * index);
+                int to = payload.getInt(4 + 4 * (index + 1));
+                try {
+                    response = reader.readValue(payload.array(), dataStart + from, to - from);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                decoded[index] = response;
+            }
+            return response;
+        }
+
+        public List<SearchResponse> toList() {
+            List<SearchResponse> responses = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                responses.add(get(i));
+            }
+            return responses;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.member.entity.Company;
+import idv.tia201.g1.member.event.CompanyUpdateEvent;
+import idv.tia201.g1.order.entity.OrderDetail;
+import idv.tia201.g1.order.event.OrderUpdateEvent;
+import idv.tia201.g1.product.dao.ProductDao;
+import idv.tia201.g1.product.entity.Product;
+import idv.tia201.g1.product.event.DiscountUpdateEvent;
+import idv.tia201.g1.product.event.ProductUpdateEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+@Slf4j
+@Component
+public class SearchCacheInvalidator {
+    // 搜尋緩存失效策略:
+    //      訂單建立 / 過期 / 刪除 => 只刪除該商家, 且住宿日期與訂單日期重疊的緩存
+    //      (付款只是把臨時佔用轉為正式預訂, 剩餘房間不變, 不需要處理)
+    //      房型 / 折扣 / 商家資料異動 => 刪除該商家所有日期的緩存
+    //      商家註冊或修改 => 另外刪除目的地符合該商家的搜尋緩存 (新的候選商家不在反向索引中)
+    //      (新增房型的商家本來就在候選商家的反向索引中, 沒有空房的候選商家也會登記)
+    //      商家頁面的房型列表緩存登記在同一個反向索引, 套用相同的規則
+
+    private final SearchCacheClient searchCacheClient;
+    private final AvailabilityMatrix availabilityMatrix;
+    private final ProductDao productDao;
+
+    public SearchCacheInvalidator(SearchCacheClient searchCacheClient, AvailabilityMatrix availabilityMatrix, ProductDao productDao) {
+        this.searchCacheClient = searchCacheClient;
+        this.availabilityMatrix = availabilityMatrix;
+        this.productDao = productDao;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleOrderUpdateEvent(OrderUpdateEvent event) {
+        if (event.getType() == OrderUpdateEvent.Type.PAID || event.getDetails() == null) return;
+
+        // 商家編號 -> 訂單日期範圍
+        Map<Integer, LocalDate[]> ranges = new HashMap<>();
+        for (OrderDetail detail : event.getDetails()) {
+            Integer companyId = getCompanyId(detail.getProductId());
+            if (companyId == null || detail.getBookedDate() == null) continue;
+
+            LocalDate date = detail.getBookedDate().toLocalDate();
+            LocalDate[] range = ranges.computeIfAbsent(companyId, k -> new LocalDate[]{date, date});
+            if (date.isBefore(range[0])) range[0] = date;
+            if (date.isAfter(range[1])) range[1] = date;
+        }
+
+        ranges.forEach((companyId, range) -> evict(companyId, range[0], range[1]));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleProductUpdateEvent(ProductUpdateEvent event) {
+        evict(event.getProduct().getCompanyId(), null, null);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleDiscountUpdateEvent(DiscountUpdateEvent event) {
+        evict(event.getCompanyId(), null, null);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleCompanyUpdateEvent(CompanyUpdateEvent event) {
+        Company company = event.getCompany();
+        evict(company.getCompanyId(), null, null);
+        if (event.getType() != CompanyUpdateEvent.Type.SAVED) return;
+        try {
+            searchCacheClient.evictByDestination(destination -> DestinationIndex.matches(company, destination));
+        } catch (Exception e) {
+            log.warn("search cache eviction by destination failed: company {}", company.getCompanyId(), e);
+        }
+    }
+
+    private Integer getCompanyId(Integer productId) {
+        Integer companyId = availabilityMatrix.getCompanyId(productId);
+        if (companyId != null) return companyId;
+        return productDao.findById(productId).map(Product::getCompanyId).orElse(null);
+    }
+
+    private void evict(Integer companyId, LocalDate from, LocalDate to) {
+        if (companyId == null) return;
+        try {
+            searchCacheClient.evictByCompany(companyId, from, to);
+        } catch (Exception e) {
+            // 緩存刪除失敗不影響原本的交易, 最晚在緩存過期時修正
+            log.warn("search cache eviction failed: company {}", companyId, e);
+        }
+    }
+}
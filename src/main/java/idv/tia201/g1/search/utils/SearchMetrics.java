@@ -0,0 +1,61 @@
+package idv.tia201.g1.search.utils;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class SearchMetrics {
+    // 搜尋相關的計數器 (本機), 提供管理者查看緩存與重建的狀況
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong coalescedWaiters = new AtomicLong();      // 等待同一個重建結果的請求 (累計)
+    private final AtomicLong waitingNow = new AtomicLong();            // 目前正在等待的請求
+    private final AtomicLong lockRetries = new AtomicLong();           // 分散式鎖重試次數
+    private final AtomicLong lockTimeouts = new AtomicLong();          // 等不到分散式鎖, 改為直接查詢的次數
+
+    public void recordCacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    public void recordCacheMiss() {
+        cacheMisses.incrementAndGet();
+    }
+
+    public void recordRebuild() {
+        rebuilds.incrementAndGet();
+    }
+
+    public void recordLockRetry() {
+        lockRetries.incrementAndGet();
+    }
+
+    public void recordLockTimeout() {
+        lockTimeouts.incrementAndGet();
+    }
+
+    public void startWaiting() {
+        coalescedWaiters.incrementAndGet();
+        waitingNow.incrementAndGet();
+    }
+
+    public void endWaiting() {
+        waitingNow.decrementAndGet();
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> res = new LinkedHashMap<>();
+        res.put("cacheHits", cacheHits.get());
+        res.put("cacheMisses", cacheMisses.get());
+        res.put("rebuilds", rebuilds.get());
+        res.put("coalescedWaiters", coalescedWaiters.get());
+        res.put("waitingNow", waitingNow.get());
+        res.put("lockRetries", lockRetries.get());
+        res.put("lockTimeouts", lockTimeouts.get());
+        return res;
+    }
+}
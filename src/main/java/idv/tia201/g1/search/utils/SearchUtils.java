@@ -1,14 +1,33 @@
 package idv.tia201.g1.search.utils;
 
+import idv.tia201.g1.search.dto.ProductAvailability;
 import idv.tia201.g1.search.dto.ProductCalculation;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class SearchUtils {
+    // 房間分配設計思路:
+    //      原本的貪婪法每選一間房就重新排序整個列表, 也常常錯過最便宜的組合
+    //      改為有界背包的動態規劃: 狀態為 (已選房間數, 已容納成人數), 成人數超過需求的部分一律視為 "已滿足" 以限制狀態數量
+    //      每個房型最多展開 min(剩餘房間, 需求房間) 個單位, 以 0/1 背包逐一處理, 結果必定是最低總價
+    // 效能:
+    //      只使用基本型別陣列, 暫存陣列依執行緒重複使用, 搜尋時不會為每個商家配置新的陣列
+    //      暫存大小約為 單位數 x (房間數+1) x (成人數+1) 位元, 成人數與房間數的上限由 SearchService 驗證;
+    //      超過 MAX_CACHED_SCRATCH 的暫存用完即丟, 不會長期佔用執行緒的記憶體
+    //      候選商家很多時可以分段交給執行緒池計算, 每段寫入結果陣列中自己的位置, 合併後的順序與逐一計算相同
+
+    private static final long INF = Long.MAX_VALUE;
+
+    private static final int MAX_CACHED_SCRATCH = 1 << 16;     // 保留在執行緒中的暫存陣列最大長度
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
 
     @Data
     @AllArgsConstructor
@@ -18,67 +37,314 @@ public class SearchUtils {
         List<String> productNames;
     }
 
+    /**
+     * 找出剛好 requiredRooms 間房, 且總入住人數至少 minAdults 人的最低價格組合
+     * 不會修改傳入的商品列表
+     *
+     * @param products      商家的房型 (含剩餘房間數與價格)
+     * @param minAdults     需要容納的成人數
+     * @param requiredRooms 需要的房間數
+     * @return 最低價格與選擇的房型 (每間房一筆); 無法滿足時 minCost 為 -1
+     */
     public static ProductSet findMinCost(List<ProductCalculation> products, int minAdults, int requiredRooms) {
-        int totalCost = 0;
-        int adultsAccommodated = 0;
-        int roomsUsed = 0;
-        List<Integer> selectedProductIds = new ArrayList<>();
-        List<String> selectedProducts = new ArrayList<>();
-
-
-        // 每次選擇房間後重新排序
-        while (adultsAccommodated < minAdults && roomsUsed < requiredRooms) {
-            int remainingAdults = minAdults - adultsAccommodated;
-            products.sort(((o1, o2) -> {
-                // 計算房間容量與需求的差異
-                int diff1 = Math.abs(o1.getMaxOccupancy() - remainingAdults);
-                int diff2 = Math.abs(o2.getMaxOccupancy() - remainingAdults);
-
-                // 先比較差異大小
-                if (diff1 != diff2) {
-                    return diff1 - diff2;
-                } else {
-                    // 如果差異相同，根據性價比 (價格 / 可容納人數) 進行比較
-                    double ratio1 = (double) o1.getPrice() / o1.getMaxOccupancy();
-                    double ratio2 = (double) o2.getPrice() / o2.getMaxOccupancy();
-                    return Double.compare(ratio1, ratio2);
+        if (requiredRooms < 0) {
+            return new ProductSet(-1, Collections.emptyList(), Collections.emptyList());
+        }
+
+        Scratch scratch = SCRATCH.get();
+        try {
+            return findMinCost(products, minAdults, requiredRooms, scratch);
+        } finally {
+            // 特別大的暫存不保留
+            if (scratch.isOversized()) SCRATCH.remove();
+        }
+    }
+
+    private static ProductSet findMinCost(List<ProductCalculation> products, int minAdults, int requiredRooms, Scratch scratch) {
+        int rooms = requiredRooms;
+        int adults = Math.max(minAdults, 0);
+        int adultStates = adults + 1;
+        int states = (rooms + 1) * adultStates;
+
+        // 1. 把每個房型展開成可選擇的單位
+        int units = 0;
+        for (int i = 0; i < products.size(); i++) {
+            ProductCalculation product = products.get(i);
+            if (product.getRemainingRooms() == null || product.getMaxOccupancy() == null || product.getPrice() == null) continue;
+            int copies = Math.min(product.getRemainingRooms(), rooms);
+            if (copies <= 0) continue;
+            scratch.ensureUnits(units + copies);
+            for (int c = 0; c < copies; c++) {
+                scratch.unitProduct[units] = i;
+                scratch.unitOccupancy[units] = Math.max(product.getMaxOccupancy(), 0);
+                scratch.unitPrice[units] = product.getPrice();
+                units++;
+            }
+        }
+        scratch.ensureStates(states, units, rooms);
+
+        long[] dp = scratch.dp;
+        long[] taken = scratch.taken;
+        int[] cappedSource = scratch.cappedSource;
+        Arrays.fill(dp, 0, states, INF);
+        Arrays.fill(taken, 0, (int) ((long) units * states + 63 >>> 6), 0L);
+        dp[0] = 0;
+
+        // 2. 0/1 背包: 房間數由大到小處理, 同一個單位不會被重複選擇
+        for (int u = 0; u < units; u++) {
+            int occupancy = scratch.unitOccupancy[u];
+            int price = scratch.unitPrice[u];
+            long base = (long) u * states;
+            for (int r = Math.min(rooms - 1, u); r >= 0; r--) {
+                int from = r * adultStates;
+                int to = from + adultStates;
+                for (int a = adults; a >= 0; a--) {
+                    long cost = dp[from + a];
+                    if (cost == INF) continue;
+                    int nextAdults = Math.min(adults, a + occupancy);
+                    int next = to + nextAdults;
+                    if (cost + price < dp[next]) {
+                        dp[next] = cost + price;
+                        long bit = base + next;
+                        taken[(int) (bit >>> 6)] |= 1L << bit;
+                        // 成人數被截斷的狀態無法從結果反推來源, 另外記錄
+                        if (nextAdults == adults) {
+                            cappedSource[u * rooms + r] = a;
+                        }
+                    }
+                }
+            }
+        }
+
+        int target = rooms * adultStates + adults;
+        if (dp[target] == INF) {
+            return new ProductSet(-1, Collections.emptyList(), Collections.emptyList());  // 無法滿足需求
+        }
+
+        // 3. 由最後一個單位往前回推選擇的房間
+        int[] selected = new int[rooms];
+        int count = 0;
+        int r = rooms;
+        int a = adults;
+        for (int u = units - 1; u >= 0 && r > 0; u--) {
+            long bit = (long) u * states + r * adultStates + a;
+            if ((taken[(int) (bit >>> 6)] & (1L << bit)) == 0) continue;
+            selected[count++] = scratch.unitProduct[u];
+            r--;
+            a = a == adults ? cappedSource[u * rooms + r] : a - scratch.unitOccupancy[u];
+        }
+
+        List<Integer> selectedProductIds = new ArrayList<>(count);
+        List<String> selectedProducts = new ArrayList<>(count);
+        for (int i = count - 1; i >= 0; i--) {
+            ProductCalculation product = products.get(selected[i]);
+            selectedProductIds.add(product.getProductId());
+            selectedProducts.add(product.getProductName());
+        }
+
+        // 返回最小成本和選擇的房間ID
+        return new ProductSet((int) dp[target], selectedProductIds, selectedProducts);
+    }
+
+    /**
+     * 計算商家可以滿足需求的最低價格組合, 剩餘房間或可容納人數不足時不進行計算
+     *
+     * @return 最低價格組合; 無法滿足需求時為 null
+     */
+    public static ProductSet evaluateCompany(List<ProductCalculation> products, int minAdults, int requiredRooms) {
+        int totalRemainingRooms = 0;
+        int totalMaxOccupancy = 0;
+        for (ProductCalculation product : products) {
+            if (product.getRemainingRooms() == null || product.getMaxOccupancy() == null) continue;
+            totalRemainingRooms += product.getRemainingRooms();
+            totalMaxOccupancy += product.getMaxOccupancy() * product.getRemainingRooms();
+        }
+        if (totalRemainingRooms < requiredRooms || totalMaxOccupancy < minAdults) return null;
+
+        ProductSet minCost = findMinCost(products, minAdults, requiredRooms);
+        return minCost.getMinCost() >= 0 ? minCost : null;
+    }
+
+    /**
+     * 計算多個商家的最低價格組合, 結果與傳入的商家順序相同
+     *
+     * @param companies     每個商家的房型
+     * @param executor      平行計算使用的執行緒池; null 時在呼叫的執行緒逐一計算
+     * @param chunks        平行計算時切成的區段數量
+     * @return 每個商家的最低價格組合 (與 companies 相同位置); 無法滿足需求的商家為 null
+     */
+    public static ProductSet[] evaluateCompanies(List<List<ProductCalculation>> companies, int minAdults, int requiredRooms,
+                                                 ExecutorService executor, int chunks) {
+        ProductSet[] res = new ProductSet[companies.size()];
+        if (executor == null || chunks <= 1 || companies.size() <= 1) {
+            for (int i = 0; i < res.length; i++) {
+                res[i] = evaluateCompany(companies.get(i), minAdults, requiredRooms);
+            }
+            return res;
+        }
+
+        int chunkSize = (companies.size() + chunks - 1) / chunks;
+        List<Future<?>> futures = new ArrayList<>(chunks);
+        for (int from = 0; from < companies.size(); from += chunkSize) {
+            int start = from;
+            int end = Math.min(from + chunkSize, companies.size());
+            futures.add(executor.submit(() -> {
+                for (int i = start; i < end; i++) {
+                    res[i] = evaluateCompany(companies.get(i), minAdults, requiredRooms);
                 }
             }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("搜尋中斷", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+        return res;
+    }
 
-            // 2. 選擇排序後的第一間房間
-            ProductCalculation bestProduct = products.get(0);
+    /**
+     * (每晚原價, 折扣總和) -> 折扣後總價
+     */
+    @FunctionalInterface
+    public interface StayPricer {
+        int price(int nightlyPrice, double rateSum);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class StaySet {
+        int startOffset;        // 入住日期距離查詢開始日期的天數
+        int totalPrice;         // 整段住宿套用折扣後的價格
+        boolean isPromotion;    // 住宿期間是否有任何一晚有折扣
+        ProductSet productSet;
+    }
+
+    /**
+     * 在日期區間內找出連續 nights 晚最便宜的住宿 (彈性日期搜尋)
+     * 每個商品的可訂房間數以單調佇列計算滑動視窗最小值, 每晚折扣以前綴和計算區間總和,
+     * 整個區間只需要走過一次, 視窗內的房況與前一個視窗相同時直接沿用上一次的房間分配結果
+     * 住宿價格由 pricer 以折扣總和計算 (PricingEngine.discountedTotal), 與結帳金額的捨去方式相同
+     *
+     * @param products      商家的房型 (含每一晚的剩餘房間數)
+     * @param discounts     每一晚的折扣 (與剩餘房間數的日期對齊)
+     * @param nights        入住晚數
+     * @param minAdults     需要容納的成人數
+     * @param requiredRooms 需要的房間數
+     * @param pricer        (每晚原價, 入住期間的折扣總和) -> 折扣後總價
+     * @return 最便宜的住宿 (價格相同時取最早的入住日期); 沒有任何日期可以滿足需求時回傳null
+     */
+    public static StaySet findCheapestStay(List<ProductAvailability> products, List<Double> discounts, int nights, int minAdults, int requiredRooms,
+                                           StayPricer pricer) {
+        int days = discounts.size();
+        int windows = days - nights + 1;
+        if (nights <= 0 || windows <= 0 || products.isEmpty()) return null;
+
+        // 1. 折扣與促銷晚數的前綴和
+        double[] ratePrefix = new double[days + 1];
+        int[] promotionPrefix = new int[days + 1];
+        for (int i = 0; i < days; i++) {
+            double rate = discounts.get(i);
+            ratePrefix[i + 1] = ratePrefix[i] + rate;
+            promotionPrefix[i + 1] = promotionPrefix[i] + (rate < 1.0 ? 1 : 0);
+        }
 
-            // 3. 確保不超過房間庫存
-            if (bestProduct.getRemainingRooms() <= 0) {
-                // 沒有可用房間了，跳過此房型
-                products.remove(0);
-                continue;
+        // 2. 每個商品在每個視窗內的最少剩餘房間 (單調遞增佇列, 每一晚最多進出一次)
+        int productCount = products.size();
+        int[][] windowRemaining = new int[productCount][windows];
+        int[] deque = new int[days];
+        for (int p = 0; p < productCount; p++) {
+            int[] remaining = products.get(p).getRemainingRooms();
+            int head = 0;
+            int tail = 0;
+            for (int i = 0; i < days; i++) {
+                while (tail > head && remaining[deque[tail - 1]] >= remaining[i]) tail--;
+                deque[tail++] = i;
+                if (deque[head] <= i - nights) head++;
+                if (i >= nights - 1) windowRemaining[p][i - nights + 1] = remaining[deque[head]];
             }
+        }
 
-            // 4. 選擇一間房間，更新成本、成人數和房間使用數
-            totalCost += bestProduct.getPrice();
-            adultsAccommodated += bestProduct.getMaxOccupancy();
-            roomsUsed++;
+        // 3. 逐一檢查每個入住日期
+        List<ProductCalculation> calculations = new ArrayList<>(productCount);
+        for (ProductAvailability product : products) {
+            calculations.add(new ProductCalculation(product.getProductId(), product.getProductName(), product.getMaxOccupancy(), 0, product.getPrice()));
+        }
 
-            // 記錄選擇的房間ID
-            selectedProductIds.add(bestProduct.getProductId());
-            selectedProducts.add(bestProduct.getProductName());
+        StaySet best = null;
+        ProductSet previous = null;
+        for (int s = 0; s < windows; s++) {
+            boolean changed = s == 0;
+            int totalRooms = 0;
+            long totalOccupancy = 0;
+            for (int p = 0; p < productCount; p++) {
+                int rooms = Math.max(windowRemaining[p][s], 0);
+                ProductCalculation calculation = calculations.get(p);
+                if (calculation.getRemainingRooms() != rooms) {
+                    calculation.setRemainingRooms(rooms);
+                    changed = true;
+                }
+                totalRooms += rooms;
+                totalOccupancy += (long) rooms * Math.max(calculation.getMaxOccupancy() == null ? 0 : calculation.getMaxOccupancy(), 0);
+            }
 
-            // 5. 更新剩餘房間數量
-            bestProduct.setRemainingRooms(bestProduct.getRemainingRooms() - 1);
+            // 房況與上一個視窗相同時, 房間分配結果也相同
+            if (changed) {
+                previous = totalRooms < requiredRooms || totalOccupancy < minAdults
+                        ? null
+                        : findMinCost(calculations, minAdults, requiredRooms);
+                if (previous != null && previous.getMinCost() < 0) previous = null;
+            }
+            if (previous == null) continue;
 
-            // 6. 如果該房型的剩餘房間已用完，從列表中移除
-            if (bestProduct.getRemainingRooms() == 0) {
-                products.remove(0);
+            int totalPrice = pricer.price(previous.getMinCost(), ratePrefix[s + nights] - ratePrefix[s]);
+            if (best == null || totalPrice < best.totalPrice) {
+                boolean isPromotion = promotionPrefix[s + nights] - promotionPrefix[s] > 0;
+                best = new StaySet(s, totalPrice, isPromotion, previous);
             }
         }
+        return best;
+    }
 
-        // 7. 檢查是否滿足最小成人數的需求
-        if (adultsAccommodated < minAdults) {
-            return new ProductSet(-1, Collections.emptyList(), Collections.emptyList());  // 無法滿足需求
+    private static class Scratch {
+        long[] dp = new long[64];
+        long[] taken = new long[64];
+        int[] cappedSource = new int[64];
+        int[] unitProduct = new int[64];
+        int[] unitOccupancy = new int[64];
+        int[] unitPrice = new int[64];
+
+        void ensureUnits(int units) {
+            if (unitProduct.length >= units) return;
+            int size = Math.max(units, unitProduct.length * 2);
+            unitProduct = Arrays.copyOf(unitProduct, size);
+            unitOccupancy = Arrays.copyOf(unitOccupancy, size);
+            unitPrice = Arrays.copyOf(unitPrice, size);
         }
 
-        // 返回最小成本和選擇的房間ID
-        return new ProductSet(totalCost, selectedProductIds, selectedProducts);
+        void ensureStates(int states, int units, int rooms) {
+            if (dp.length < states) {
+                dp = new long[states];
+            }
+            int words = (int) ((long) units * states + 63 >>> 6);
+            if (taken.length < words) {
+                taken = new long[words];
+            }
+            if (cappedSource.length < units * rooms) {
+                cappedSource = new int[units * rooms];
+            }
+        }
+
+        boolean isOversized() {
+            return dp.length > MAX_CACHED_SCRATCH || taken.length > MAX_CACHED_SCRATCH
+                    || cappedSource.length > MAX_CACHED_SCRATCH || unitProduct.length > MAX_CACHED_SCRATCH;
+        }
     }
 }
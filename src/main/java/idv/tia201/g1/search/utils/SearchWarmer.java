@@ -0,0 +1,191 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.search.dto.SearchRequest;
+import idv.tia201.g1.search.service.SearchService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static idv.tia201.g1.core.utils.Constants.*;
+
+@Slf4j
+@Component
+public class SearchWarmer {
+    // 搜尋緩存預熱設計思路:
+    //      部署後與緩存過期時, 熱門目的地的搜尋一定會打到資料庫, 造成明顯的延遲尖峰
+    //      以 Redis ZSET 記錄每組搜尋條件 (目的地, 人數, 房間數, 日期) 的搜尋次數, 所有節點共用, 重新部署後仍然存在
+    //      定期取出最熱門的條件, 緩存不存在或即將過期時提前重建 (啟動後的第一次執行即為預熱)
+    // 搜尋次數:
+    //      搜尋時只累加在本機, 每次執行時才一次寫入 Redis, 不增加搜尋本身的 Redis 請求
+    // 資料庫負載:
+    //      每次執行最多重建 max-rebuilds 組, 以固定數量的執行緒進行; 其他機器正在重建的條件直接略過
+
+    private static final int MAX_RECENT_SEARCHES = 10000;   // 本機最多累計的條件數
+    private static final int MAX_TRACKED_SEARCHES = 1000;   // ZSET 最多保留的條件數
+
+    @Value("${search.warmup.enabled:true}")
+    private boolean enabled;
+    @Value("${search.warmup.top-size:50}")
+    private int topSize;
+    @Value("${search.warmup.threads:2}")
+    private int threads;
+    @Value("${search.warmup.max-rebuilds:20}")
+    private int maxRebuilds;
+    @Value("${search.warmup.refresh-before:120}")
+    private long refreshBefore;
+
+    @Lazy
+    @Autowired
+    private SearchService searchService;
+    @Autowired
+    private SearchCacheClient searchCacheClient;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final Map<String, LongAdder> recentSearches = new ConcurrentHashMap<>();
+
+    private ExecutorService warmupExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            warmupExecutor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (warmupExecutor != null) {
+            warmupExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 記錄一次搜尋的條件 (只累加在本機)
+     */
+    public void recordSearch(SearchRequest request) {
+        if (!enabled) return;
+        String member = request.getDestination() + ":" + request.getAdultCount() + ":" + request.getRoomCount()
+                + ":" + request.getStartDate() + ":" + request.getEndDate();
+        LongAdder counter = recentSearches.get(member);
+        if (counter == null) {
+            if (recentSearches.size() >= MAX_RECENT_SEARCHES) return;
+            counter = recentSearches.computeIfAbsent(member, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * 重建熱門搜尋即將過期的緩存 (啟動後執行一次預熱, 之後定期執行)
+     */
+    @Scheduled(initialDelayString = "${search.warmup.initial-delay:30}", fixedDelayString = "${search.warmup.interval:60}", timeUnit = TimeUnit.SECONDS)
+    public void warmUp() {
+        if (!enabled) return;
+        try {
+            flushRecentSearches();
+
+            // 1. 找出熱門條件中, 緩存不存在或即將過期的部分
+            Set<String> members = stringRedisTemplate.opsForZSet().reverseRange(CACHE_SEARCH_HOT, 0, topSize - 1);
+            if (members == null || members.isEmpty()) return;
+
+            LocalDate today = LocalDate.now();
+            List<SearchRequest> targets = new ArrayList<>();
+            for (String member : members) {
+                SearchRequest request = toRequest(member);
+                if (request == null || request.getStartDate().toLocalDate().isBefore(today)) {
+                    // 已經過了入住日期的條件不會再被搜尋
+                    stringRedisTemplate.opsForZSet().remove(CACHE_SEARCH_HOT, member);
+                    continue;
+                }
+
+                Long expire = searchCacheClient.getExpire(CACHE_SEARCH_PREFIX + member);
+                if (expire == null || (expire >= 0 && expire <= refreshBefore)) {
+                    targets.add(request);
+                    if (targets.size() >= maxRebuilds) break;
+                }
+            }
+            if (targets.isEmpty()) return;
+
+            // 2. 以固定數量的執行緒重建
+            List<Future<Boolean>> futures = new ArrayList<>(targets.size());
+            for (SearchRequest request : targets) {
+                futures.add(warmupExecutor.submit(() -> searchService.refreshSearchCache(request)));
+            }
+            int rebuilt = 0;
+            for (Future<Boolean> future : futures) {
+                try {
+                    if (future.get()) rebuilt++;
+                } catch (ExecutionException e) {
+                    log.warn("search warm-up failed", e.getCause());
+                }
+            }
+            log.debug("SearchWarmer: {} candidates, {} rebuilt", targets.size(), rebuilt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("SearchWarmer warm-up failed", e);
+        }
+    }
+
+    private void flushRecentSearches() {
+        if (recentSearches.isEmpty()) return;
+
+        Map<String, Long> counts = new HashMap<>();
+        for (Iterator<Map.Entry<String, LongAdder>> it = recentSearches.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, LongAdder> entry = it.next();
+            counts.put(entry.getKey(), entry.getValue().sumThenReset());
+            it.remove();
+        }
+
+        stringRedisTemplate.executePipelined(new SessionCallback<Void>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Void execute(RedisOperations operations) throws DataAccessException {
+                counts.forEach((member, count) -> operations.opsForZSet().incrementScore(CACHE_SEARCH_HOT, member, count));
+                // 只保留分數最高的條件
+                operations.opsForZSet().removeRange(CACHE_SEARCH_HOT, 0, -MAX_TRACKED_SEARCHES - 1);
+                return null;
+            }
+        });
+    }
+
+    // 目的地可能包含 ":", 由後往前解析
+    private static SearchRequest toRequest(String member) {
+        try {
+            String[] parts = new String[5];
+            int end = member.length();
+            for (int i = 4; i > 0; i--) {
+                int index = member.lastIndexOf(':', end - 1);
+                if (index < 0) return null;
+                parts[i] = member.substring(index + 1, end);
+                end = index;
+            }
+            parts[0] = member.substring(0, end);
+
+            SearchRequest request = new SearchRequest();
+            request.setDestination(parts[0]);
+            request.setAdultCount(Integer.parseInt(parts[1]));
+            request.setRoomCount(Integer.parseInt(parts[2]));
+            request.setStartDate(Date.valueOf(parts[3]));
+            request.setEndDate(Date.valueOf(parts[4]));
+            return request;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.member.dao.CompanyDao;
+import idv.tia201.g1.member.entity.Company;
+import idv.tia201.g1.search.dto.SuggestResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Component
+public class SuggestIndex {
+    // 目的地自動完成設計思路:
+    //      前端每次猜測目的地都打一次完整的搜尋, 改為提供前綴查詢
+    //      以商家的城市, 國家, 名稱建立前綴樹 (字元不分大小寫), 每個節點預先算好分數最高的 TOP_K 個建議
+    //      查詢只需要沿著前綴走到節點後直接回傳, 不會存取 MySQL 或 Redis
+    // 排序分數:
+    //      商家數量 + 近期搜尋熱度 (每次重建時熱度減半, 讓舊的熱門關鍵字逐漸退場)
+    // 更新:
+    //      前綴樹建立後不再修改, 定期重建後整棵替換, 查詢時不需要加鎖
+
+    private static final int TOP_K = 10;
+    private static final int MAX_TRACKED_KEYWORDS = 10000;
+    private static final double POPULARITY_WEIGHT = 0.5;
+    private static final double POPULARITY_DECAY = 0.5;
+
+    private static final String TYPE_CITY = "city";
+    private static final String TYPE_COUNTRY = "country";
+    private static final String TYPE_COMPANY = "company";
+
+    private final CompanyDao companyDao;
+
+    private final Map<String, LongAdder> recentSearches = new ConcurrentHashMap<>();   // 上次重建後的搜尋次數
+    private Map<String, Double> popularity = new HashMap<>();                          // 只在重建時使用
+
+    private volatile Snapshot snapshot = null;
+
+    public SuggestIndex(CompanyDao companyDao) {
+        this.companyDao = companyDao;
+    }
+
+    /**
+     * 記錄一次搜尋的目的地 (作為熱度)
+     */
+    public void recordSearch(String destination) {
+        if (destination == null || destination.isBlank()) return;
+        String keyword = normalize(destination);
+        LongAdder counter = recentSearches.get(keyword);
+        if (counter == null) {
+            if (recentSearches.size() >= MAX_TRACKED_KEYWORDS) return;
+            counter = recentSearches.computeIfAbsent(keyword, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * 重建前綴樹 (啟動時執行, 之後定期更新熱度與商家資料)
+     */
+    @Scheduled(initialDelay = 0, fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public synchronized void rebuild() {
+        try {
+            // 1. 更新熱度
+            Map<String, Double> newPopularity = new HashMap<>();
+            popularity.forEach((keyword, value) -> {
+                double decayed = value * POPULARITY_DECAY;
+                if (decayed >= 0.5) newPopularity.put(keyword, decayed);
+            });
+            for (Iterator<Map.Entry<String, LongAdder>> it = recentSearches.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, LongAdder> entry = it.next();
+                newPopularity.merge(entry.getKey(), (double) entry.getValue().sumThenReset(), Double::sum);
+                it.remove();
+            }
+            popularity = newPopularity;
+
+            // 2. 統計每個目的地文字的商家數量 (同一個文字以第一次出現的類型為準)
+            Map<String, SuggestResponse> terms = new LinkedHashMap<>();
+            for (Company company : companyDao.findAll()) {
+                addTerm(terms, company.getCity(), TYPE_CITY);
+                addTerm(terms, company.getCountry(), TYPE_COUNTRY);
+                addTerm(terms, company.getCompanyName(), TYPE_COMPANY);
+            }
+
+            SuggestResponse[] newSuggestions = terms.values().toArray(new SuggestResponse[0]);
+            double[] scores = new double[newSuggestions.length];
+            for (int i = 0; i < newSuggestions.length; i++) {
+                String keyword = normalize(newSuggestions[i].getText());
+                scores[i] = newSuggestions[i].getCompanyCount() + POPULARITY_WEIGHT * newPopularity.getOrDefault(keyword, 0.0);
+            }
+
+            // 3. 建立前綴樹
+            BuilderNode builderRoot = new BuilderNode();
+            for (int i = 0; i < newSuggestions.length; i++) {
+                String keyword = normalize(newSuggestions[i].getText());
+                BuilderNode node = builderRoot;
+                for (int c = 0; c < keyword.length(); c++) {
+                    node = node.children.computeIfAbsent(keyword.charAt(c), k -> new BuilderNode());
+                    node.candidates.add(i);
+                }
+            }
+
+            snapshot = new Snapshot(builderRoot.freeze(scores), newSuggestions);
+            log.debug("SuggestIndex rebuilt: {} terms", newSuggestions.length);
+        } catch (Exception e) {
+            log.error("SuggestIndex rebuild failed", e);
+        }
+    }
+
+    /**
+     * 依前綴取得目的地建議
+     *
+     * @param prefix 使用者目前輸入的文字
+     * @param size   最多回傳幾筆 (不超過 TOP_K)
+     * @return 依分數排序的建議
+     */
+    public List<SuggestResponse> suggest(String prefix, int size) {
+        Snapshot current = snapshot;
+        if (current == null || prefix == null || prefix.isBlank()) return Collections.emptyList();
+
+        Node node = current.root;
+
+        String keyword = normalize(prefix);
+        for (int i = 0; i < keyword.length() && node != null; i++) {
+            node = node.child(keyword.charAt(i));
+        }
+        if (node == null) return Collections.emptyList();
+
+        int limit = Math.min(Math.min(size, TOP_K), node.top.length);
+        List<SuggestResponse> res = new ArrayList<>(limit);
+        for (int i = 0; i < limit; i++) {
+            res.add(current.suggestions[node.top[i]]);
+        }
+        return res;
+    }
+
+    private static void addTerm(Map<String, SuggestResponse> terms, String text, String type) {
+        if (text == null || text.isBlank()) return;
+        String trimmed = text.trim();
+        SuggestResponse term = terms.computeIfAbsent(normalize(trimmed), k -> new SuggestResponse(trimmed, type, 0));
+        term.setCompanyCount(term.getCompanyCount() + 1);
+    }
+
+    private static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // 前綴樹與建議內容必須一起替換
+    private static class Snapshot {
+        final Node root;
+        final SuggestResponse[] suggestions;
+
+        Snapshot(Node root, SuggestResponse[] suggestions) {
+            this.root = root;
+            this.suggestions = suggestions;
+        }
+    }
+
+    // 建立時使用的節點
+    private static class BuilderNode {
+        final TreeMap<Character, BuilderNode> children = new TreeMap<>();
+        final List<Integer> candidates = new ArrayList<>();     // 經過這個節點的所有建議
+
+        Node freeze(double[] scores) {
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, BuilderNode> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().freeze(scores);
+                i++;
+            }
+
+            candidates.sort((a, b) -> Double.compare(scores[b], scores[a]));
+            int[] top = new int[Math.min(candidates.size(), TOP_K)];
+            for (int t = 0; t < top.length; t++) {
+                top[t] = candidates.get(t);
+            }
+            return new Node(keys, nodes, top);
+        }
+    }
+
+    // 查詢時使用的唯讀節點 (子節點依字元排序, 以二分搜尋查找)
+    private static class Node {
+        final char[] keys;
+        final Node[] children;
+        final int[] top;
+
+        Node(char[] keys, Node[] children, int[] top) {
+            this.keys = keys;
+            this.children = children;
+            this.top = top;
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+    }
+}
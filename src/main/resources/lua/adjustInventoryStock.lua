@@ -0,0 +1,26 @@
+-- 修改商品庫存: 以新舊庫存的差異調整已存在的房況key (不刪除, 進行中的保留仍然可以正確歸還)
+-- KEYS[1]: 初始化房況時使用的庫存 (hash: 商品編號 -> 庫存)
+-- KEYS[2]: 商品的房況索引 (hash: 日期 -> 初始值的計算時間)
+-- ARGV[1]: 商品編號, ARGV[2]: 新的庫存, ARGV[3]: 商品房況key的前綴 (inventory:{productId}:)
+-- 回傳: 調整的房況key數量
+
+local stock = redis.call('HGET', KEYS[1], ARGV[1])
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+if not stock then
+    return 0
+end
+
+local delta = tonumber(ARGV[2]) - tonumber(stock)
+if delta == 0 then
+    return 0
+end
+
+local adjusted = 0
+for _, date in ipairs(redis.call('HKEYS', KEYS[2])) do
+    local key = ARGV[3] .. date
+    if redis.call('EXISTS', key) == 1 then
+        redis.call('INCRBY', key, delta)
+        adjusted = adjusted + 1
+    end
+end
+return adjusted
@@ -0,0 +1,23 @@
+-- 訂單付款: 保留轉為正式預訂
+-- KEYS[1]: 訂單的保留紀錄 (hash: 房況key -> 數量)
+-- KEYS[2]: 保留的過期佇列 (zset: 訂單編號 -> 過期時間)
+-- KEYS[3..]: 訂單的房況key
+-- ARGV[1]: 訂單編號
+-- ARGV[2..]: 對應 KEYS[3..] 的數量
+-- 回傳: 1 保留仍有效; 0 保留已過期釋放, 重新扣除
+
+local orderId = ARGV[1]
+redis.call('ZREM', KEYS[2], orderId)
+
+-- 保留仍有效: 房間已經扣除, 只需要移除保留紀錄
+if redis.call('DEL', KEYS[1]) == 1 then
+    return 1
+end
+
+-- 保留已經過期釋放後才付款: 已付款的預訂一定要計入 (可能因此為負數, 由對帳時發現)
+for i = 3, #KEYS do
+    if redis.call('EXISTS', KEYS[i]) == 1 then
+        redis.call('DECRBY', KEYS[i], ARGV[i - 1])
+    end
+end
+return 0
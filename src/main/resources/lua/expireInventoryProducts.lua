@@ -0,0 +1,11 @@
+-- 移除所有房況key都已過期的商品 (與保留的初始化互斥, 避免刪除剛建立的索引)
+-- KEYS[1]: 有房況key的商品 (zset: 商品編號 -> 最晚的房況key過期時間)
+-- ARGV[1]: 現在時間(秒, unix time), ARGV[2]: 商品房況索引的前綴 (hash: 日期 -> 初始值的計算時間)
+-- 回傳: 移除的商品數量
+
+local expired = redis.call('ZRANGEBYSCORE', KEYS[1], 0, ARGV[1])
+for _, productId in ipairs(expired) do
+    redis.call('DEL', ARGV[2] .. productId)
+    redis.call('ZREM', KEYS[1], productId)
+end
+return #expired
@@ -0,0 +1,57 @@
+-- 原子性保留多個 "商品 x 日期" 的房間
+-- KEYS[1]: 訂單的保留紀錄 (hash: 房況key -> 數量)
+-- KEYS[2]: 保留的過期佇列 (zset: 訂單編號 -> 過期時間)
+-- KEYS[3]: 有房況key的商品 (zset: 商品編號 -> 最晚的房況key過期時間), 對帳使用
+-- KEYS[4]: 初始化房況時使用的庫存 (hash: 商品編號 -> 庫存), 修改庫存時計算差異使用
+-- KEYS[5..]: 每個 "商品 x 日期" 的剩餘房間數
+-- ARGV[1]: 訂單編號, ARGV[2]: 過期時間(毫秒)
+-- ARGV[3]: 初始值的計算時間(毫秒), ARGV[4]: 商品房況索引的前綴 (hash: 日期 -> 初始值的計算時間)
+-- 之後每個房況key依序五個參數: 保留數量, 不存在時的初始值, 房況key的過期時間(秒, unix time), 商品編號, 計算初始值時的庫存
+-- 回傳: 1 成功; 0 已經保留過; -i 第i個房況key剩餘房間不足
+
+local orderId = ARGV[1]
+local expireAt = ARGV[2]
+
+-- 同一張訂單重複呼叫時不再扣除
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+
+-- 第一輪: 初始化不存在的房況, 並確認每一晚都有足夠的房間
+for i = 5, #KEYS do
+    local base = 5 + (i - 5) * 5
+    local quantity = tonumber(ARGV[base])
+    local remaining = redis.call('GET', KEYS[i])
+    if not remaining then
+        local productId = ARGV[base + 3]
+        local stock = redis.call('HGET', KEYS[4], productId)
+        remaining = tonumber(ARGV[base + 1])
+        if stock then
+            -- 計算初始值之後庫存被修改過: 補上差異
+            remaining = remaining + tonumber(stock) - tonumber(ARGV[base + 4])
+        else
+            redis.call('HSET', KEYS[4], productId, ARGV[base + 4])
+        end
+        redis.call('SET', KEYS[i], remaining)
+        redis.call('EXPIREAT', KEYS[i], ARGV[base + 2])
+        -- 記錄計算時間: 在這之前到期的保留已經不算在初始值內, 歸還時略過
+        redis.call('HSET', ARGV[4] .. productId, string.match(KEYS[i], ':([^:]+)$'), ARGV[3])
+        local latest = redis.call('ZSCORE', KEYS[3], productId)
+        if not latest or tonumber(latest) < tonumber(ARGV[base + 2]) then
+            redis.call('ZADD', KEYS[3], ARGV[base + 2], productId)
+        end
+    end
+    if tonumber(remaining) < quantity then
+        return -(i - 4)
+    end
+end
+
+-- 第二輪: 全部扣除並記錄保留內容
+for i = 5, #KEYS do
+    local base = 5 + (i - 5) * 5
+    redis.call('DECRBY', KEYS[i], ARGV[base])
+    redis.call('HSET', KEYS[1], KEYS[i], ARGV[base])
+end
+redis.call('ZADD', KEYS[2], expireAt, orderId)
+
+return 1
@@ -0,0 +1,11 @@
+-- 報價金鑰: 取得所有節點共用的金鑰, 尚未產生時寫入本機產生的金鑰
+-- KEYS[1]: 報價金鑰
+-- ARGV[1]: 本機產生的隨機金鑰
+-- 回傳: 共用的金鑰 (腳本在主節點執行, 不會讀到尚未同步的副本)
+
+local secret = redis.call('GET', KEYS[1])
+if secret then
+    return secret
+end
+redis.call('SET', KEYS[1], ARGV[1])
+return ARGV[1]
@@ -0,0 +1,22 @@
+-- 對帳修正: 房況key的值仍等於讀取時的值才修正 (避免覆蓋對帳期間發生的保留)
+-- KEYS[1..]: 房況key
+-- ARGV[1]: 正確值的計算時間(毫秒), ARGV[2]: 商品房況索引的前綴 (hash: 日期 -> 初始值的計算時間)
+-- 之後每個房況key依序兩個參數: 讀取時的值, 修正後的值
+-- 回傳: 修正的數量
+
+local corrected = 0
+for i = 1, #KEYS do
+    local current = redis.call('GET', KEYS[i])
+    if current and current == ARGV[i * 2 + 1] then
+        redis.call('SET', KEYS[i], ARGV[i * 2 + 2], 'KEEPTTL')
+        -- 修正後的值同樣不包含計算時間之前到期的保留
+        local productId, date = string.match(KEYS[i], ':(%d+):([^:]+)$')
+        local index = ARGV[2] .. productId
+        local seeded = redis.call('HGET', index, date)
+        if not seeded or tonumber(seeded) < tonumber(ARGV[1]) then
+            redis.call('HSET', index, date, ARGV[1])
+        end
+        corrected = corrected + 1
+    end
+end
+return corrected
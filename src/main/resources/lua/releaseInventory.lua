@@ -0,0 +1,44 @@
+-- 釋放訂單保留的房間 (過期 / 刪除)
+-- KEYS[1]: 訂單的保留紀錄 (hash: 房況key -> 數量)
+-- KEYS[2]: 保留的過期佇列 (zset: 訂單編號 -> 過期時間)
+-- KEYS[3..]: 保留紀錄不存在時要歸還的房況key (已付款的訂單被刪除時使用, 其他情況不傳)
+-- ARGV[1]: 訂單編號
+-- ARGV[2]: 商品房況索引的前綴 (hash: 日期 -> 初始值的計算時間)
+-- ARGV[3..]: 對應 KEYS[3..] 的歸還數量
+-- 回傳: 歸還的房況key數量
+
+local orderId = ARGV[1]
+local released = 0
+
+-- 房況key在保留到期之後才由資料庫計算 (已經不包含這筆保留) 時不可以再歸還
+local function seededAfter(key, expireAt)
+    if not expireAt then
+        return false
+    end
+    local productId, date = string.match(key, ':(%d+):([^:]+)$')
+    local seeded = redis.call('HGET', ARGV[2] .. productId, date)
+    return seeded ~= false and tonumber(seeded) >= tonumber(expireAt)
+end
+
+local hold = redis.call('HGETALL', KEYS[1])
+if #hold > 0 then
+    local expireAt = redis.call('ZSCORE', KEYS[2], orderId)
+    for i = 1, #hold, 2 do
+        -- 房況key已經過期 (日期已過) 時不需要歸還
+        if redis.call('EXISTS', hold[i]) == 1 and not seededAfter(hold[i], expireAt) then
+            redis.call('INCRBY', hold[i], hold[i + 1])
+            released = released + 1
+        end
+    end
+    redis.call('DEL', KEYS[1])
+else
+    for i = 3, #KEYS do
+        if redis.call('EXISTS', KEYS[i]) == 1 then
+            redis.call('INCRBY', KEYS[i], ARGV[i])
+            released = released + 1
+        end
+    end
+end
+redis.call('ZREM', KEYS[2], orderId)
+
+return released
@@ -0,0 +1,40 @@
+-- 訂單列表摘要 (每張訂單一筆)
+-- 取代 order_master x order_detail x product_master 的 JOIN 分頁 (每筆明細一列, 筆數與分頁都不正確)
+-- 索引依列表排序 (建立時間, 訂單編號 由新到舊) 建立, 供 keyset 分頁使用
+
+CREATE TABLE IF NOT EXISTS order_summary
+(
+    order_id     INT          NOT NULL PRIMARY KEY,
+    company_id   INT          NULL,
+    user_id      INT          NULL,
+    guest_count  INT          NULL,
+    pay_status   VARCHAR(255) NULL,
+    start_date   DATE         NULL,
+    end_date     DATE         NULL,
+    actual_price INT          NULL,
+    created_date DATETIME     NULL,
+    expired_time DATETIME     NULL,
+    INDEX idx_order_summary_company (company_id, created_date, order_id),
+    INDEX idx_order_summary_user (user_id, created_date, order_id),
+    INDEX idx_order_summary_created (created_date, order_id)
+);
+
+-- 既有訂單補入摘要 (可重複執行)
+INSERT INTO order_summary (order_id, company_id, user_id, guest_count, pay_status,
+                           start_date, end_date, actual_price, created_date, expired_time)
+SELECT om.order_id,
+       MIN(pm.company_id),
+       om.user_id,
+       om.guest_count,
+       om.pay_status,
+       om.start_date,
+       om.end_date,
+       om.actual_price,
+       om.created_date,
+       MAX(od.expired_time)
+FROM order_master om
+         JOIN order_detail od ON od.order_id = om.order_id
+         JOIN product_master pm ON pm.product_id = od.product_id
+GROUP BY om.order_id, om.user_id, om.guest_count, om.pay_status,
+         om.start_date, om.end_date, om.actual_price, om.created_date
+ON DUPLICATE KEY UPDATE order_id = order_id;
@@ -0,0 +1,139 @@
+package idv.tia201.g1.order.dao.impl;
+
+import idv.tia201.g1.order.entity.OrderDetail;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderDetailDaoImplTest {
+
+    private LocalContainerEntityManagerFactoryBean factoryBean;
+    private EntityManagerFactory entityManagerFactory;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private OrderDetailDaoImpl orderDetailDao;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:order-detail;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        // 與 Spring Boot 相同使用 Hibernate 的設定, 交易中的 JDBC 連線才會提供給 JdbcTemplate
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setManagedTypes(PersistenceManagedTypes.of(OrderDetail.class.getName()));
+        factoryBean.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "create-drop"));
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+        orderDetailDao = new OrderDetailDaoImpl();
+        ReflectionTestUtils.setField(orderDetailDao, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        factoryBean.destroy();
+    }
+
+    @Test
+    void batchInsertReturnsGeneratedKeysForEveryNight() {
+        List<OrderDetail> details = createDetails(1, 14);
+
+        transactionTemplate.executeWithoutResult(status -> orderDetailDao.batchInsert(details));
+
+        Set<Integer> ids = new HashSet<>();
+        for (OrderDetail detail : details) {
+            assertNotNull(detail.getId());
+            ids.add(detail.getId());
+        }
+        assertEquals(details.size(), ids.size());
+
+        // 回填的 id 對應到同一晚的資料
+        for (OrderDetail detail : details) {
+            Date bookedDate = jdbcTemplate.queryForObject(
+                    "SELECT booked_date FROM order_detail WHERE id = ?", Date.class, detail.getId());
+            assertEquals(detail.getBookedDate(), bookedDate);
+        }
+    }
+
+    @Test
+    void batchInsertJoinsTheJpaTransaction() {
+        List<OrderDetail> details = createDetails(2, 7);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // 交易中先由 JPA 寫入一筆, 批次寫入與之後的查詢都使用同一個連線
+            EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+            OrderDetail first = createDetails(2, 1).get(0);
+            entityManager.persist(first);
+            entityManager.flush();
+
+            orderDetailDao.batchInsert(details);
+
+            Long count = entityManager.createQuery(
+                    "SELECT COUNT(od) FROM OrderDetail od WHERE od.orderId = 2", Long.class).getSingleResult();
+            assertEquals(details.size() + 1, count);
+
+            status.setRollbackOnly();
+        });
+
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_detail WHERE order_id = 2", Integer.class);
+        assertEquals(0, count);
+    }
+
+    @Test
+    void batchInsertRollsBackWhenTheTransactionFails() {
+        List<OrderDetail> details = createDetails(3, 3);
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            orderDetailDao.batchInsert(details);
+            throw new IllegalStateException("房間已售完");
+        }));
+
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_detail WHERE order_id = 3", Integer.class);
+        assertEquals(0, count);
+    }
+
+    private static List<OrderDetail> createDetails(int orderId, int nights) {
+        LocalDate checkIn = LocalDate.of(2026, 12, 1);
+        Timestamp expiredTime = Timestamp.valueOf(checkIn.atStartOfDay().minusDays(1));
+        List<OrderDetail> details = new ArrayList<>();
+        for (int productId = 1; productId <= 2; productId++) {
+            for (int night = 0; night < nights; night++) {
+                OrderDetail detail = new OrderDetail();
+                detail.setOrderId(orderId);
+                detail.setProductId(productId);
+                detail.setProductName("房型" + productId);
+                detail.setQuantity(1);
+                detail.setBookedDate(Date.valueOf(checkIn.plusDays(night)));
+                detail.setExpiredTime(expiredTime);
+                details.add(detail);
+            }
+        }
+        return details;
+    }
+}
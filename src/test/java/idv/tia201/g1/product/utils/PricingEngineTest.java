@@ -0,0 +1,155 @@
+package idv.tia201.g1.product.utils;
+
+import idv.tia201.g1.product.dao.ProductDao;
+import idv.tia201.g1.product.dto.PriceQuote;
+import idv.tia201.g1.product.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PricingEngineTest {
+
+    private static final Date START_DATE = Date.valueOf("2026-12-01");
+    private static final Date END_DATE = Date.valueOf("2026-12-04");
+
+    private ProductDao productDao;
+    private DiscountCalendar discountCalendar;
+    private StringRedisTemplate stringRedisTemplate;
+    private PricingEngine pricingEngine;
+
+    @BeforeEach
+    void setUp() {
+        productDao = mock(ProductDao.class);
+        discountCalendar = mock(DiscountCalendar.class);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+
+        when(productDao.findAll()).thenReturn(List.of(
+                product(1, 10, 2000),
+                product(2, 10, 3500),
+                product(3, 20, 1000)));
+        when(discountCalendar.getDiscounts(eq(10), any(), any())).thenReturn(List.of(1.0, 0.9, 0.85));
+
+        pricingEngine = createEngine("test-secret", 900);
+    }
+
+    @Test
+    void quoteTokenVerifiesToTheSameQuote() {
+        PriceQuote quote = pricingEngine.quote(10, Map.of(1, 2, 2, 1), START_DATE, END_DATE);
+
+        // 每晚 2000 x 2 + 3500 = 7500, 三晚折扣總和 2.75
+        assertEquals(22500, quote.getFullPrice());
+        assertEquals(22500 - 20625, quote.getDiscount());
+        assertEquals(20625 + 2063 + 1031, quote.getActualPrice());
+
+        PriceQuote verified = pricingEngine.verify(quote.getToken());
+        assertNotNull(verified);
+        assertEquals(quote, verified);
+    }
+
+    @Test
+    void verifyRejectsTamperedPayload() {
+        PriceQuote quote = pricingEngine.quote(10, Map.of(1, 1), START_DATE, END_DATE);
+        String token = quote.getToken();
+        int dot = token.indexOf('.');
+        String payload = new String(Base64.getUrlDecoder().decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+
+        // 改掉實際金額, 沿用原本的簽章
+        String tampered = payload.replace("|" + quote.getActualPrice() + "|", "|1|");
+        assertNotEquals(payload, tampered);
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(tampered.getBytes(StandardCharsets.UTF_8))
+                + token.substring(dot);
+
+        assertNull(pricingEngine.verify(forged));
+    }
+
+    @Test
+    void verifyRejectsTamperedSignature() {
+        String token = pricingEngine.quote(10, Map.of(1, 1), START_DATE, END_DATE).getToken();
+        char last = token.charAt(token.length() - 1);
+        String forged = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+
+        assertNull(pricingEngine.verify(forged));
+    }
+
+    @Test
+    void verifyRejectsMalformedTokens() {
+        assertNull(pricingEngine.verify(null));
+        assertNull(pricingEngine.verify(""));
+        assertNull(pricingEngine.verify("no-dot"));
+        assertNull(pricingEngine.verify("!!!.???"));
+        assertNull(pricingEngine.verify("."));
+    }
+
+    @Test
+    void verifyRejectsExpiredQuote() {
+        PricingEngine expired = createEngine("test-secret", -1);
+        String token = expired.quote(10, Map.of(1, 1), START_DATE, END_DATE).getToken();
+
+        assertNull(expired.verify(token));
+        assertNull(pricingEngine.verify(token));    // 同一把金鑰, 過期與否只看內容
+    }
+
+    @Test
+    void verifyRejectsQuoteSignedWithAnotherSecret() {
+        String token = createEngine("other-secret", 900).quote(10, Map.of(1, 1), START_DATE, END_DATE).getToken();
+
+        assertNull(pricingEngine.verify(token));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sharedSecretIsReadFromRedisOnce() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any())).thenReturn("shared-secret");
+        PricingEngine first = createEngine("", 900);
+        PricingEngine second = createEngine("", 900);
+
+        String token = first.quote(10, Map.of(1, 1), START_DATE, END_DATE).getToken();
+        assertNotNull(second.verify(token));
+        assertNotNull(first.verify(token));
+        verify(stringRedisTemplate, times(2)).execute(any(RedisScript.class), anyList(), any());
+    }
+
+    @Test
+    void quoteRejectsProductsOfAnotherCompany() {
+        assertThrows(IllegalArgumentException.class, () -> pricingEngine.quote(10, Map.of(3, 1), START_DATE, END_DATE));
+        assertThrows(IllegalArgumentException.class, () -> pricingEngine.quote(10, Map.of(1, 0), START_DATE, END_DATE));
+        assertThrows(IllegalArgumentException.class, () -> pricingEngine.quote(10, Map.of(1, 1), END_DATE, START_DATE));
+    }
+
+    @Test
+    void discountedTotalRoundsOnceOverTheRateSum() {
+        assertEquals(20625, pricingEngine.discountedTotal(7500, List.of(1.0, 0.9, 0.85)));
+        assertEquals(20625, pricingEngine.discountedTotal(7500, 2.75));
+        // 0.1 + 0.2 在浮點數下不等於 0.3, 以固定精確度計算後結果相同
+        assertEquals(pricingEngine.discountedTotal(1001, 0.3), pricingEngine.discountedTotal(1001, List.of(0.1, 0.2)));
+        assertEquals(300, pricingEngine.discountedTotal(1001, 0.3));
+    }
+
+    private PricingEngine createEngine(String secret, long ttl) {
+        PricingEngine engine = new PricingEngine(productDao, discountCalendar, stringRedisTemplate);
+        ReflectionTestUtils.setField(engine, "configuredSecret", secret);
+        ReflectionTestUtils.setField(engine, "quoteTtl", ttl);
+        engine.reload();
+        return engine;
+    }
+
+    private static Product product(int productId, int companyId, int price) {
+        Product product = new Product();
+        product.setProductId(productId);
+        product.setCompanyId(companyId);
+        product.setPrice(price);
+        return product;
+    }
+}
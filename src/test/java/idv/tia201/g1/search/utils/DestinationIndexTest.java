@@ -0,0 +1,172 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.member.dao.CompanyDao;
+import idv.tia201.g1.member.entity.Company;
+import idv.tia201.g1.member.event.CompanyUpdateEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DestinationIndexTest {
+
+    private static final String[] CITIES = {"Taipei", "Tainan", "New Taipei", "Kyoto", "Tokyo", "台北", "台南", "新北", "京都", "東京"};
+    private static final String[] COUNTRIES = {"Taiwan", "Japan", "台灣", "日本"};
+    private static final String[] NAME_PARTS = {"Grand", "Hotel", "Inn", "Hostel", "旅館", "飯店", "民宿", "Tokyo", "台北", "Bay"};
+
+    private Connection connection;
+    private CompanyDao companyDao;
+    private List<Company> companies;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // 與 SearchDaoImpl 相同的 LIKE 查詢, 欄位以不分大小寫比對 (同 MySQL 預設的定序)
+        connection = DriverManager.getConnection("jdbc:h2:mem:destination;MODE=MySQL;IGNORECASE=TRUE");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE company_master (company_id INT PRIMARY KEY, company_name VARCHAR(100), country VARCHAR(100), city VARCHAR(100))");
+        }
+
+        Random random = new Random(5);
+        companies = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            companies.add(randomCompany(random, i));
+        }
+        for (Company company : companies) {
+            insert(company);
+        }
+
+        companyDao = mock(CompanyDao.class);
+        when(companyDao.findAll()).thenReturn(companies);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void findCompanyIdsMatchesLikeQuery() throws SQLException {
+        DestinationIndex index = new DestinationIndex(companyDao);
+        index.reload();
+
+        Set<String> keywords = new LinkedHashSet<>(List.of("", "t", "T", "tai", "TAIPEI", "pei", "new", "w t", "台", "台北", "北", "京", "日本",
+                "an", "hotel", "HOSTEL", "inn", "o", "bay", "旅館", "x", "不存在", "tokyo inn"));
+        Random random = new Random(9);
+        for (Company company : companies.subList(0, 50)) {
+            String name = company.getCompanyName();
+            int from = random.nextInt(name.length());
+            keywords.add(name.substring(from, from + 1 + random.nextInt(name.length() - from)));
+        }
+
+        for (String keyword : keywords) {
+            assertEquals(queryLike(keyword), index.findCompanyIds(keyword), keyword);
+        }
+    }
+
+    @Test
+    void updatesFollowCompanyEvents() throws SQLException {
+        DestinationIndex index = new DestinationIndex(companyDao);
+        index.reload();
+
+        Company moved = companies.get(0);
+        moved.setCity("Osaka");
+        moved.setCompanyName("Osaka Bay Hotel");
+        update(moved);
+        index.handleCompanyUpdateEvent(new CompanyUpdateEvent(this, CompanyUpdateEvent.Type.SAVED, moved));
+
+        Company added = randomCompany(new Random(1), 1000);
+        added.setCity("Osaka");
+        insert(added);
+        index.handleCompanyUpdateEvent(new CompanyUpdateEvent(this, CompanyUpdateEvent.Type.SAVED, added));
+
+        Company removed = companies.get(1);
+        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM company_master WHERE company_id = ?")) {
+            statement.setInt(1, removed.getCompanyId());
+            statement.executeUpdate();
+        }
+        index.handleCompanyUpdateEvent(new CompanyUpdateEvent(this, CompanyUpdateEvent.Type.DELETED, removed));
+
+        for (String keyword : new String[]{"", "osaka", "Bay", "hotel", "台", removed.getCity(), removed.getCompanyName()}) {
+            assertEquals(queryLike(keyword), index.findCompanyIds(keyword), keyword);
+        }
+    }
+
+    @Test
+    void fallsBackToDatabaseWhenUnableToAnswer() {
+        DestinationIndex index = new DestinationIndex(companyDao);
+        assertNull(index.findCompanyIds("Taipei"));     // 尚未載入
+
+        index.reload();
+        assertNull(index.findCompanyIds(null));
+        assertNull(index.findCompanyIds("Tai%"));
+        assertNull(index.findCompanyIds("T_kyo"));
+        assertNull(index.findCompanyIds("a\\b"));
+
+        assertTrue(DestinationIndex.matches(companies.get(0), "%"));
+        for (Company company : companies) {
+            assertEquals(index.findCompanyIds("TAI").contains(company.getCompanyId()), DestinationIndex.matches(company, "TAI"));
+        }
+    }
+
+    @Test
+    void keepsOldIndexWhenReloadFails() {
+        DestinationIndex index = new DestinationIndex(companyDao);
+        index.reload();
+        List<Integer> before = index.findCompanyIds("tai");
+
+        when(companyDao.findAll()).thenThrow(new IllegalStateException("db down"));
+        index.reload();
+        assertEquals(before, index.findCompanyIds("tai"));
+    }
+
+    private List<Integer> queryLike(String keyword) throws SQLException {
+        String sql = "SELECT c.company_id FROM company_master c WHERE c.city LIKE ? OR c.country LIKE ? OR c.company_name LIKE ? ORDER BY c.company_id";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 1; i <= 3; i++) {
+                statement.setString(i, "%" + keyword + "%");
+            }
+            List<Integer> ids = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getInt(1));
+                }
+            }
+            return ids;
+        }
+    }
+
+    private void insert(Company company) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO company_master VALUES (?, ?, ?, ?)")) {
+            statement.setInt(1, company.getCompanyId());
+            statement.setString(2, company.getCompanyName());
+            statement.setString(3, company.getCountry());
+            statement.setString(4, company.getCity());
+            statement.executeUpdate();
+        }
+    }
+
+    private void update(Company company) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("UPDATE company_master SET company_name = ?, country = ?, city = ? WHERE company_id = ?")) {
+            statement.setString(1, company.getCompanyName());
+            statement.setString(2, company.getCountry());
+            statement.setString(3, company.getCity());
+            statement.setInt(4, company.getCompanyId());
+            statement.executeUpdate();
+        }
+    }
+
+    private static Company randomCompany(Random random, int companyId) {
+        Company company = new Company();
+        company.setCompanyId(companyId);
+        company.setCity(CITIES[random.nextInt(CITIES.length)]);
+        company.setCountry(COUNTRIES[random.nextInt(COUNTRIES.length)]);
+        String name = NAME_PARTS[random.nextInt(NAME_PARTS.length)] + (random.nextBoolean() ? " " : "") + NAME_PARTS[random.nextInt(NAME_PARTS.length)];
+        company.setCompanyName(random.nextInt(4) == 0 ? name.toUpperCase(Locale.ROOT) : name);
+        return company;
+    }
+}
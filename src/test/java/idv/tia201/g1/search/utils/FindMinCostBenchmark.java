@@ -0,0 +1,65 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.search.dto.ProductCalculation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比較動態規劃與原本的貪婪法計算單一商家最低價格組合的時間
+ * 貪婪法會修改傳入的列表, 兩者每次都使用新的複本, 複製的成本相同
+ * 執行: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=idv.tia201.g1.search.utils.FindMinCostBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindMinCostBenchmark {
+
+    @Param({"5", "20", "50"})
+    private int roomTypes;
+
+    @Param({"1", "4", "10"})
+    private int rooms;
+
+    private List<ProductCalculation> products;
+    private int adults;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        products = SearchUtilsTest.randomCompany(random, roomTypes);
+        adults = rooms * 2;
+    }
+
+    @Benchmark
+    public SearchUtils.ProductSet dynamicProgramming() {
+        return SearchUtils.findMinCost(copy(products), adults, rooms);
+    }
+
+    @Benchmark
+    public SearchUtils.ProductSet greedyBaseline() {
+        return GreedyBaseline.findMinCost(copy(products), adults, rooms);
+    }
+
+    private static List<ProductCalculation> copy(List<ProductCalculation> products) {
+        List<ProductCalculation> res = new ArrayList<>(products.size());
+        for (ProductCalculation product : products) {
+            res.add(new ProductCalculation(product.getProductId(), product.getProductName(),
+                    product.getMaxOccupancy(), product.getRemainingRooms(), product.getPrice()));
+        }
+        return res;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FindMinCostBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.search.dto.SearchRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.sql.Date;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SearchAnalyticsTest {
+
+    private static final int WIDTH = 4096;
+
+    private SearchAnalytics searchAnalytics;
+
+    @BeforeEach
+    void setUp() {
+        searchAnalytics = new SearchAnalytics(mock(StringRedisTemplate.class, Answers.RETURNS_DEEP_STUBS));
+    }
+
+    @Test
+    void estimatesNeverUndercountAndStayWithinBound() {
+        // Zipf 分佈的目的地, 種類遠多於熱門排行的容量
+        Random random = new Random(17);
+        int kinds = 5000;
+        double[] cumulative = new double[kinds];
+        double total = 0;
+        for (int i = 0; i < kinds; i++) {
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+
+        Map<String, Long> truth = new HashMap<>();
+        int searches = 200000;
+        for (int n = 0; n < searches; n++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            String destination = "city-" + (index < 0 ? -index - 1 : index);
+            truth.merge(destination, 1L, Long::sum);
+            searchAnalytics.recordSearch(request(destination, "2026-12-01"));
+        }
+
+        List<Map<String, Object>> top = destinations(100);
+        assertEquals(100, top.size());
+        double bound = Math.E * searches / WIDTH;
+        long previous = Long.MAX_VALUE;
+        for (Map<String, Object> item : top) {
+            long estimate = (Long) item.get("count");
+            long actual = truth.get((String) item.get("key"));
+            assertTrue(estimate >= actual, item.toString());
+            assertTrue(estimate - actual <= bound, item + " truth " + actual);
+            assertTrue(estimate <= previous);
+            previous = estimate;
+        }
+
+        List<String> expectedTop = truth.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(5).map(Map.Entry::getKey).toList();
+        assertEquals(expectedTop, top.subList(0, 5).stream().map(item -> (String) item.get("key")).toList());
+    }
+
+    @Test
+    void destinationsAreNormalizedAndCombinedWithDate() {
+        searchAnalytics.recordSearch(request(" Taipei ", "2026-12-01"));
+        searchAnalytics.recordSearch(request("TAIPEI", "2026-12-01"));
+        searchAnalytics.recordSearch(request("taipei", "2026-12-02"));
+        searchAnalytics.recordSearch(request(null, "2026-12-02"));
+
+        assertEquals(List.of(Map.of("key", "taipei", "count", 3L)), destinations(10));
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> dates = (List<Map<String, Object>>) searchAnalytics.snapshot(10).get("destinationDates");
+        assertEquals(List.of(Map.of("key", "taipei|2026-12-01", "count", 2L), Map.of("key", "taipei|2026-12-02", "count", 1L)), dates);
+    }
+
+    @Test
+    void rotateKeepsLastWindow() {
+        searchAnalytics.recordSearch(request("Kyoto", "2026-12-01"));
+        searchAnalytics.rotate();
+
+        assertTrue(destinations(10).isEmpty());
+        assertEquals(List.of(Map.of("key", "kyoto", "count", 1L)), searchAnalytics.snapshot(10).get("lastWindowDestinations"));
+        assertEquals(List.of(), searchAnalytics.snapshot(0).get("lastWindowDestinations"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> destinations(int top) {
+        return (List<Map<String, Object>>) searchAnalytics.snapshot(top).get("destinations");
+    }
+
+    private static SearchRequest request(String destination, String startDate) {
+        SearchRequest request = new SearchRequest();
+        request.setDestination(destination);
+        request.setStartDate(Date.valueOf(startDate));
+        return request;
+    }
+}
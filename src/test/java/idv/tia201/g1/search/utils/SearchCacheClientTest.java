@@ -0,0 +1,222 @@
+package idv.tia201.g1.search.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import idv.tia201.g1.search.dto.SearchFacet;
+import idv.tia201.g1.search.dto.SearchResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SearchCacheClientTest {
+
+    private static final String KEY = "search:台北:2:1:2026-12-01:2026-12-03";
+
+    private RedisTemplate<String, byte[]> redisTemplateForImage;
+    private ValueOperations<String, byte[]> valueOperations;
+    private RedisConnection connection;
+    private SearchCacheClient searchCacheClient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplateForImage = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        connection = mock(RedisConnection.class, Answers.RETURNS_DEEP_STUBS);
+        when(redisTemplateForImage.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplateForImage.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return Collections.emptyList();
+        });
+
+        searchCacheClient = new SearchCacheClient(redisTemplateForImage, mock(StringRedisTemplate.class),
+                mock(TaskScheduler.class), new ObjectMapper());
+    }
+
+    @Test
+    void pagesMatchTheOriginalSortForEveryOrder() {
+        List<SearchResponse> responses = randomResponses(new Random(7), 157);
+        SearchCacheClient.CachedSearchResult cached = searchCacheClient.set(KEY, responses, List.of(1, 2), 1800);
+
+        for (String orderBy : new String[]{null, "price", "score", "unknown"}) {
+            for (Boolean isDesc : new Boolean[]{null, false, true}) {
+                List<Integer> expected = companyIds(baselineSort(responses, orderBy, isDesc));
+                for (int pageSize : new int[]{1, 10, 20, 200}) {
+                    List<Integer> actual = new ArrayList<>();
+                    for (int page = 0; page * pageSize < responses.size(); page++) {
+                        actual.addAll(companyIds(cached.getPage(orderBy, isDesc, page, pageSize, null)));
+                    }
+                    assertEquals(expected, actual, orderBy + "/" + isDesc + "/" + pageSize);
+                }
+                assertEquals(expected, companyIds(orderIndexes(cached, orderBy, isDesc)));
+                assertTrue(cached.getPage(orderBy, isDesc, 100, 20, null).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    void facetFiltersMatchFilteringTheList() {
+        Random random = new Random(11);
+        List<SearchResponse> responses = randomResponses(random, 130);
+        SearchCacheClient.CachedSearchResult cached = searchCacheClient.set(KEY, responses, List.of(1), 1800);
+        SearchFacet[] facets = SearchFacet.values();
+
+        for (int round = 0; round < 200; round++) {
+            Set<SearchFacet> required = new HashSet<>();
+            Set<SearchFacet> anyOf = new HashSet<>();
+            for (SearchFacet facet : facets) {
+                int pick = random.nextInt(8);
+                if (pick == 0) required.add(facet);
+                else if (pick == 1) anyOf.add(facet);
+            }
+            Predicate<SearchResponse> predicate = response ->
+                    required.stream().allMatch(facet -> facet.getPredicate().test(response))
+                            && (anyOf.isEmpty() || anyOf.stream().anyMatch(facet -> facet.getPredicate().test(response)));
+
+            List<SearchResponse> filtered = responses.stream().filter(predicate).toList();
+            long[] mask = cached.filter(required, anyOf);
+            assertEquals(filtered.size(), cached.count(mask));
+
+            Map<String, Integer> counts = cached.facetCounts(mask);
+            for (SearchFacet facet : facets) {
+                long expected = filtered.stream().filter(facet.getPredicate()).count();
+                assertEquals(expected, (long) counts.get(facet.getKey()), facet.getKey());
+            }
+
+            String orderBy = random.nextBoolean() ? "price" : "score";
+            Boolean isDesc = random.nextBoolean();
+            List<Integer> expected = companyIds(baselineSort(filtered, orderBy, isDesc));
+            List<Integer> actual = new ArrayList<>();
+            for (int page = 0; page * 20 < filtered.size(); page++) {
+                actual.addAll(companyIds(cached.getPage(orderBy, isDesc, page, 20, mask)));
+            }
+            assertEquals(expected, actual);
+        }
+
+        assertNull(cached.filter(Set.of(), Set.of()));
+    }
+
+    @Test
+    void storedBlobDecodesToTheSameResult() {
+        List<SearchResponse> responses = randomResponses(new Random(3), 64);
+        searchCacheClient.set(KEY, responses, List.of(1, 2, 3), 1800);
+        byte[] blob = capturedBlob();
+
+        when(valueOperations.get(KEY)).thenReturn(blob);
+        SearchCacheClient.CachedSearchResult cached = searchCacheClient.get(KEY);
+        assertNotNull(cached);
+        assertEquals(responses, cached.toList());
+
+        // 版本不符或內容損毀時視為沒有緩存
+        byte[] oldVersion = blob.clone();
+        oldVersion[0] = 3;
+        when(valueOperations.get(KEY)).thenReturn(oldVersion);
+        assertNull(searchCacheClient.get(KEY));
+
+        byte[] corrupted = Arrays.copyOf(blob, blob.length / 2);
+        when(valueOperations.get(KEY)).thenReturn(corrupted);
+        assertNull(searchCacheClient.get(KEY));
+    }
+
+    @Test
+    void emptyResultIsCached() {
+        SearchCacheClient.CachedSearchResult cached = searchCacheClient.set(KEY, List.of(), List.of(), 1800);
+        assertEquals(0, cached.size());
+        assertTrue(cached.getPage("price", false, 0, 20, null).isEmpty());
+
+        byte[] blob = capturedBlob();
+        when(valueOperations.get(KEY)).thenReturn(blob);
+        assertEquals(0, searchCacheClient.get(KEY).size());
+    }
+
+    @Test
+    void setRegistersDestinationAndCompaniesInOnePipeline() {
+        searchCacheClient.set(KEY, randomResponses(new Random(1), 5), List.of(7, 8), 1800);
+
+        verify(redisTemplateForImage, times(1)).executePipelined(any(RedisCallback.class));
+        verify(connection.zSetCommands()).zAdd(eq(bytes("search-dest:台北")), anyDouble(), eq(bytes(KEY)));
+        verify(connection.zSetCommands()).zAdd(eq(bytes("search-dests")), anyDouble(), eq(bytes("台北")));
+        verify(connection.setCommands()).sAdd(bytes("search-idx:7"), bytes(KEY));
+        verify(connection.setCommands()).sAdd(bytes("search-idx:8"), bytes(KEY));
+    }
+
+    private byte[] capturedBlob() {
+        ArgumentCaptor<byte[]> captor = ArgumentCaptor.forClass(byte[].class);
+        verify(connection.stringCommands(), atLeastOnce()).set(eq(bytes(KEY)), captor.capture(), any(), any());
+        return captor.getValue();
+    }
+
+    // 改版前的排序方式 (穩定排序, 反向時使用 Comparator.reversed())
+    private static List<SearchResponse> baselineSort(List<SearchResponse> responses, String orderBy, Boolean isDesc) {
+        if (orderBy == null) orderBy = "price";
+        Comparator<SearchResponse> comparator;
+        switch (orderBy) {
+            case "score":
+                comparator = Comparator.comparingDouble(SearchResponse::getScore).reversed();
+                break;
+            case "price":
+            default:
+                comparator = Comparator.comparingDouble(SearchResponse::getPrice);
+                break;
+        }
+        if (isDesc != null && isDesc) {
+            comparator = comparator.reversed();
+        }
+        List<SearchResponse> sorted = new ArrayList<>(responses);
+        sorted.sort(comparator);
+        return sorted;
+    }
+
+    private static List<SearchResponse> orderIndexes(SearchCacheClient.CachedSearchResult cached, String orderBy, Boolean isDesc) {
+        List<SearchResponse> res = new ArrayList<>();
+        for (int index : cached.order(orderBy, isDesc)) {
+            res.add(cached.get(index));
+        }
+        return res;
+    }
+
+    private static List<Integer> companyIds(List<SearchResponse> responses) {
+        return responses.stream().map(SearchResponse::getCompanyId).toList();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 價格與評分的種類很少, 一定會有同分的資料
+    private static List<SearchResponse> randomResponses(Random random, int count) {
+        List<SearchResponse> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SearchResponse response = new SearchResponse();
+            response.setCompanyId(1000 + i);
+            response.setCompanyName("旅館" + i);
+            response.setCity("台北");
+            response.setCountry("台灣");
+            response.setScore((float) (5 + random.nextInt(10) * 0.5));
+            response.setCommentCount(random.nextInt(100));
+            response.setProducts(List.of("雙人房"));
+            response.setPrice(1000 + random.nextInt(12) * 1000);
+            response.setIsPromotion(random.nextBoolean());
+            response.setIncludesBreakfast(random.nextBoolean());
+            response.setAllowDateChanges(random.nextBoolean());
+            response.setAllowFreeCancellation(random.nextBoolean());
+            response.setIsRefundable(random.nextBoolean());
+            responses.add(response);
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,70 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.search.dto.ProductCalculation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 依候選商家數量比較逐一計算與平行計算最低價格組合的時間 (search.parallel.threshold 的依據)
+ * 執行: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=idv.tia201.g1.search.utils.SearchParallelBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchParallelBenchmark {
+
+    @Param({"16", "64", "256", "1024"})
+    private int companyCount;
+
+    @Param({"2", "6"})
+    private int adultCount;
+
+    private static final int ROOM_COUNT = 2;
+    private static final int THREADS = 4;
+
+    private List<List<ProductCalculation>> companies;
+    private ThreadPoolExecutor executor;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        companies = new ArrayList<>(companyCount);
+        for (int i = 0; i < companyCount; i++) {
+            companies.add(SearchUtilsTest.randomCompany(random, 3 + random.nextInt(10)));
+        }
+        // 與 SearchServiceImpl 相同的有界執行緒池
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(THREADS * 16), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public SearchUtils.ProductSet[] sequential() {
+        return SearchUtils.evaluateCompanies(companies, adultCount, ROOM_COUNT, null, 1);
+    }
+
+    @Benchmark
+    public SearchUtils.ProductSet[] parallel() {
+        return SearchUtils.evaluateCompanies(companies, adultCount, ROOM_COUNT, executor, THREADS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SearchParallelBenchmark.class.getSimpleName()).build()).run();
+    }
+}
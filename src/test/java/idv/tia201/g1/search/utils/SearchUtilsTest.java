@@ -0,0 +1,210 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.search.dto.ProductCalculation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchUtilsTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void findMinCostMatchesExhaustiveSearchOnSmallInputs() {
+        Random random = new Random(3);
+        for (int round = 0; round < 2000; round++) {
+            int roomTypes = 5 + random.nextInt(4);
+            int rooms = 1 + random.nextInt(4);
+            List<ProductCalculation> products = randomCompany(random, roomTypes);
+            int adults = random.nextInt(rooms * 4 + 3);
+
+            SearchUtils.ProductSet minCost = SearchUtils.findMinCost(products, adults, rooms);
+            int expected = exhaustive(products, 0, rooms, adults);
+            assertEquals(expected, minCost.getMinCost(), () -> describe(products, adults, rooms));
+            assertValidSelection(products, adults, rooms, minCost);
+        }
+    }
+
+    @Test
+    void findMinCostMatchesBruteForceUpToFiftyRoomTypesAndTenRooms() {
+        Random random = new Random(3);
+        for (int roomTypes = 5; roomTypes <= 50; roomTypes += 5) {
+            for (int rooms = 1; rooms <= 10; rooms++) {
+                for (int round = 0; round < 20; round++) {
+                    List<ProductCalculation> products = randomCompany(random, roomTypes);
+                    int adults = random.nextInt(rooms * 4 + 3);
+                    int requiredRooms = rooms;
+
+                    SearchUtils.ProductSet minCost = SearchUtils.findMinCost(products, adults, requiredRooms);
+                    assertEquals(bruteForceByOccupancy(products, adults, requiredRooms), minCost.getMinCost(),
+                            () -> describe(products, adults, requiredRooms));
+                    assertValidSelection(products, adults, requiredRooms, minCost);
+                }
+            }
+        }
+    }
+
+    @Test
+    void findMinCostDoesNotModifyProducts() {
+        Random random = new Random(5);
+        List<ProductCalculation> products = randomCompany(random, 20);
+        List<ProductCalculation> copy = products.stream()
+                .map(p -> new ProductCalculation(p.getProductId(), p.getProductName(), p.getMaxOccupancy(), p.getRemainingRooms(), p.getPrice()))
+                .toList();
+
+        SearchUtils.findMinCost(products, 6, 3);
+        assertEquals(copy, products);
+    }
+
+    @Test
+    void evaluateCompaniesKeepsCandidateOrderInParallel() {
+        Random random = new Random(10);
+        List<List<ProductCalculation>> companies = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            companies.add(randomCompany(random, 1 + random.nextInt(8)));
+        }
+
+        SearchUtils.ProductSet[] sequential = SearchUtils.evaluateCompanies(companies, 4, 2, null, 1);
+        for (int chunks : new int[]{2, 3, 4, 7, 64, 1000}) {
+            SearchUtils.ProductSet[] parallel = SearchUtils.evaluateCompanies(companies, 4, 2, executor, chunks);
+            assertArrayEquals(sequential, parallel, "chunks=" + chunks);
+        }
+    }
+
+    @Test
+    void evaluateCompanySkipsCompaniesThatCannotFit() {
+        List<ProductCalculation> products = List.of(
+                new ProductCalculation(1, "雙人房", 2, 1, 2000),
+                new ProductCalculation(2, "單人房", 1, 1, 1000));
+
+        assertNull(SearchUtils.evaluateCompany(products, 2, 3));   // 房間不足
+        assertNull(SearchUtils.evaluateCompany(products, 4, 2));   // 人數不足
+
+        SearchUtils.ProductSet minCost = SearchUtils.evaluateCompany(products, 3, 2);
+        assertNotNull(minCost);
+        assertEquals(3000, minCost.getMinCost());
+    }
+
+    @Test
+    void evaluateCompaniesRethrowsFailures() {
+        List<List<ProductCalculation>> companies = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            companies.add(List.of(new ProductCalculation(i, "房型" + i, 2, 1, 1000)));
+        }
+        companies.add(null);
+
+        assertThrows(NullPointerException.class, () -> SearchUtils.evaluateCompanies(companies, 2, 1, executor, 4));
+    }
+
+    // 逐一列舉每個房型選幾間 (剛好 rooms 間), 無法滿足時回傳 -1
+    private static int exhaustive(List<ProductCalculation> products, int index, int rooms, int adults) {
+        if (rooms == 0) return adults <= 0 ? 0 : -1;
+        if (index == products.size()) return -1;
+
+        ProductCalculation product = products.get(index);
+        int best = -1;
+        for (int count = 0; count <= Math.min(product.getRemainingRooms(), rooms); count++) {
+            int rest = exhaustive(products, index + 1, rooms - count, adults - count * product.getMaxOccupancy());
+            if (rest < 0) continue;
+            int cost = rest + count * product.getPrice();
+            if (best < 0 || cost < best) best = cost;
+        }
+        return best;
+    }
+
+    // 同樣入住人數的房間只會選最便宜的幾間, 因此列舉 "每種入住人數選幾間" 就涵蓋所有可能的最佳解
+    private static int bruteForceByOccupancy(List<ProductCalculation> products, int adults, int rooms) {
+        Map<Integer, List<Integer>> pricesByOccupancy = new HashMap<>();
+        for (ProductCalculation product : products) {
+            for (int i = 0; i < product.getRemainingRooms(); i++) {
+                pricesByOccupancy.computeIfAbsent(product.getMaxOccupancy(), k -> new ArrayList<>()).add(product.getPrice());
+            }
+        }
+        List<Integer> occupancies = new ArrayList<>(pricesByOccupancy.keySet());
+        List<int[]> prefixSums = new ArrayList<>();
+        for (Integer occupancy : occupancies) {
+            List<Integer> prices = pricesByOccupancy.get(occupancy);
+            prices.sort(Comparator.naturalOrder());
+            int[] prefix = new int[prices.size() + 1];
+            for (int i = 0; i < prices.size(); i++) {
+                prefix[i + 1] = prefix[i] + prices.get(i);
+            }
+            prefixSums.add(prefix);
+        }
+        return bruteForceByOccupancy(occupancies, prefixSums, 0, rooms, adults);
+    }
+
+    private static int bruteForceByOccupancy(List<Integer> occupancies, List<int[]> prefixSums, int index, int rooms, int adults) {
+        if (rooms == 0) return adults <= 0 ? 0 : -1;
+        if (index == occupancies.size()) return -1;
+
+        int[] prefix = prefixSums.get(index);
+        int best = -1;
+        for (int count = 0; count <= Math.min(prefix.length - 1, rooms); count++) {
+            int rest = bruteForceByOccupancy(occupancies, prefixSums, index + 1, rooms - count,
+                    adults - count * occupancies.get(index));
+            if (rest < 0) continue;
+            int cost = rest + prefix[count];
+            if (best < 0 || cost < best) best = cost;
+        }
+        return best;
+    }
+
+    // 選擇的房型: 剛好 rooms 間, 不超過剩餘房間, 可容納人數足夠, 價格總和等於回傳的最低價格
+    private static void assertValidSelection(List<ProductCalculation> products, int adults, int rooms, SearchUtils.ProductSet minCost) {
+        if (minCost.getMinCost() < 0) {
+            assertTrue(minCost.getProductIds().isEmpty());
+            return;
+        }
+        assertEquals(rooms, minCost.getProductIds().size());
+
+        Map<Integer, ProductCalculation> byId = new HashMap<>();
+        products.forEach(product -> byId.put(product.getProductId(), product));
+        Map<Integer, Integer> counts = new HashMap<>();
+        int occupancy = 0;
+        int price = 0;
+        for (Integer productId : minCost.getProductIds()) {
+            ProductCalculation product = byId.get(productId);
+            counts.merge(productId, 1, Integer::sum);
+            occupancy += product.getMaxOccupancy();
+            price += product.getPrice();
+        }
+        counts.forEach((productId, count) -> assertTrue(count <= byId.get(productId).getRemainingRooms()));
+        assertTrue(occupancy >= adults);
+        assertEquals(minCost.getMinCost(), price);
+    }
+
+    private static String describe(List<ProductCalculation> products, int adults, int rooms) {
+        return "adults=" + adults + ", rooms=" + rooms + ", products=" + products;
+    }
+
+    static List<ProductCalculation> randomCompany(Random random, int roomTypes) {
+        List<ProductCalculation> products = new ArrayList<>(roomTypes);
+        for (int i = 0; i < roomTypes; i++) {
+            products.add(new ProductCalculation(i + 1, "房型" + (i + 1),
+                    1 + random.nextInt(4), random.nextInt(5), 500 + random.nextInt(50) * 100));
+        }
+        return products;
+    }
+}
@@ -0,0 +1,102 @@
+package idv.tia201.g1.search.utils;
+
+import idv.tia201.g1.member.dao.CompanyDao;
+import idv.tia201.g1.member.entity.Company;
+import idv.tia201.g1.search.dto.SuggestResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SuggestIndexTest {
+
+    private static final String[] CITIES = {"Taipei", "Tainan", "Taichung", " taipei ", "Tokyo", "Toyama", "台北", "台南", "台中", "東京"};
+    private static final String[] COUNTRIES = {"Taiwan", "Japan", "台灣", "日本", "Thailand"};
+    private static final String[] NAMES = {"Taipei Grand", "Tainan Inn", "Tokyo Hostel", "台北旅館", "台灣民宿", "TAIPEI GRAND", "Toyama Bay", "東京飯店"};
+
+    private CompanyDao companyDao;
+    private List<Company> companies;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(21);
+        companies = new ArrayList<>();
+        for (int i = 1; i <= 200; i++) {
+            Company company = new Company();
+            company.setCompanyId(i);
+            company.setCity(CITIES[random.nextInt(CITIES.length)]);
+            company.setCountry(COUNTRIES[random.nextInt(COUNTRIES.length)]);
+            company.setCompanyName(NAMES[random.nextInt(NAMES.length)] + (random.nextInt(3) == 0 ? " " + i : ""));
+            companies.add(company);
+        }
+        companyDao = mock(CompanyDao.class);
+        when(companyDao.findAll()).thenReturn(companies);
+    }
+
+    @Test
+    void suggestMatchesPrefixScan() {
+        SuggestIndex index = new SuggestIndex(companyDao);
+        index.recordSearch("Tokyo");
+        index.recordSearch(" TOKYO ");
+        for (int i = 0; i < 40; i++) index.recordSearch("台南");
+        index.rebuild();
+
+        Map<String, Double> popularity = Map.of("tokyo", 2.0, "台南", 40.0);
+        for (String prefix : new String[]{"t", "T", "ta", "tai", "TAIP", " taipei ", "to", "th", "台", "台北", "東", "j", "x", "taipei grand 1"}) {
+            assertEquals(scan(prefix, popularity, 10), index.suggest(prefix, 10), prefix);
+            assertEquals(scan(prefix, popularity, 3), index.suggest(prefix, 3), prefix);
+        }
+        assertEquals(10, index.suggest("t", 50).size());
+    }
+
+    @Test
+    void popularityDecaysBetweenRebuilds() {
+        SuggestIndex index = new SuggestIndex(companyDao);
+        for (int i = 0; i < 40; i++) index.recordSearch("台南");
+        index.rebuild();
+        index.recordSearch("台中");
+        index.rebuild();
+
+        assertEquals(scan("台", Map.of("台南", 20.0, "台中", 1.0), 10), index.suggest("台", 10));
+    }
+
+    @Test
+    void blankOrUnknownPrefixReturnsNothing() {
+        SuggestIndex index = new SuggestIndex(companyDao);
+        assertTrue(index.suggest("t", 10).isEmpty());   // 尚未建立
+
+        index.rebuild();
+        assertTrue(index.suggest(null, 10).isEmpty());
+        assertTrue(index.suggest("  ", 10).isEmpty());
+        assertTrue(index.suggest("zz", 10).isEmpty());
+        assertTrue(index.suggest("t", 0).isEmpty());
+    }
+
+    // 逐一比對所有目的地文字 (同一個文字以第一次出現的寫法與類型為準, 同分時維持出現順序)
+    private List<SuggestResponse> scan(String prefix, Map<String, Double> popularity, int size) {
+        Map<String, SuggestResponse> terms = new LinkedHashMap<>();
+        for (Company company : companies) {
+            addTerm(terms, company.getCity(), "city");
+            addTerm(terms, company.getCountry(), "country");
+            addTerm(terms, company.getCompanyName(), "company");
+        }
+
+        String keyword = prefix.trim().toLowerCase(Locale.ROOT);
+        List<Map.Entry<String, SuggestResponse>> matched = new ArrayList<>();
+        for (Map.Entry<String, SuggestResponse> entry : terms.entrySet()) {
+            if (entry.getKey().startsWith(keyword)) matched.add(entry);
+        }
+        matched.sort(Comparator.comparingDouble((Map.Entry<String, SuggestResponse> entry) ->
+                entry.getValue().getCompanyCount() + 0.5 * popularity.getOrDefault(entry.getKey(), 0.0)).reversed());
+        return matched.stream().limit(Math.min(size, 10)).map(Map.Entry::getValue).toList();
+    }
+
+    private static void addTerm(Map<String, SuggestResponse> terms, String text, String type) {
+        String trimmed = text.trim();
+        SuggestResponse term = terms.computeIfAbsent(trimmed.toLowerCase(Locale.ROOT), k -> new SuggestResponse(trimmed, type, 0));
+        term.setCompanyCount(term.getCompanyCount() + 1);
+    }
+}